@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.tcus.chess.solver;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks for attack generation: building piece states versus looking them up in the attack
+ * table, for every position of a board.
+ * @author Andres Rodriguez
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class AttackBenchmark {
+	/** Board size. */
+	@Param({ "4x4", "7x7", "8x8", "12x12" })
+	public String size;
+	/** Piece kind. */
+	@Param({ "KING", "QUEEN", "BISHOP", "ROOK", "KNIGHT" })
+	public Piece piece;
+
+	private Size board;
+	private AttackTable table;
+
+	@Setup
+	public void setup() {
+		final String[] rc = size.split("x");
+		board = Size.of(Integer.parseInt(rc[0]), Integer.parseInt(rc[1]));
+		table = AttackTable.of(board);
+	}
+
+	/** Builds the state of the piece in every position. */
+	@Benchmark
+	public void getState(Blackhole bh) {
+		for (Position p : board) {
+			bh.consume(piece.getState(p));
+		}
+	}
+
+	/** Looks up the state of the piece in every position. */
+	@Benchmark
+	public void tableState(Blackhole bh) {
+		for (int i = 0; i < board.getPositions(); i++) {
+			bh.consume(table.getState(piece, i));
+		}
+	}
+
+	/** Looks up the first mask word of the piece in every position. */
+	@Benchmark
+	public void tableMask(Blackhole bh) {
+		for (int i = 0; i < board.getPositions(); i++) {
+			bh.consume(table.getMask(piece, i, 0));
+		}
+	}
+}
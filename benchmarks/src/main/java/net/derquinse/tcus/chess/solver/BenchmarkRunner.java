@@ -0,0 +1,52 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.tcus.chess.solver;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Benchmarks entry point. Accepts the standard JMH command line options, but results are written by
+ * default in JSON format to a file named after the benchmarked version, so that results of different
+ * versions can be compared.
+ * @author Andres Rodriguez
+ */
+public final class BenchmarkRunner {
+	/** Not instantiable. */
+	private BenchmarkRunner() {
+		throw new AssertionError();
+	}
+
+	/** Entry point. */
+	public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+		final CommandLineOptions cmd = new CommandLineOptions(args);
+		final OptionsBuilder b = new OptionsBuilder();
+		if (!cmd.getResultFormat().hasValue()) {
+			b.resultFormat(ResultFormatType.JSON);
+		}
+		if (!cmd.getResult().hasValue()) {
+			final String version = BenchmarkRunner.class.getPackage().getImplementationVersion();
+			b.result(String.format("jmh-result-%s.json", version != null ? version : "dev"));
+		}
+		final Options options = b.parent(cmd).build();
+		new Runner(options).run();
+	}
+}
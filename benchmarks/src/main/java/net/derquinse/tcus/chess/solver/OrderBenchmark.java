@@ -0,0 +1,58 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.tcus.chess.solver;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Single-threaded comparison of the piece orders of the bitboard engine on the problems of the test
+ * suite and on rook-heavy and knight-heavy mixes.
+ * @author Andres Rodriguez
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class OrderBenchmark {
+	/** Problem specification. */
+	@Param({ "3x3:K2R1", "4x4:R2N4", "8x8:Q8", "7x7:K2Q3B2N1", Problems.CHALLENGE, "8x8:R5N3", "6x6:K4N4",
+			"6x6:K3R2N3", "6x6:B2N6" })
+	public String problem;
+	/** Piece order. */
+	@Param({ "FIXED", "ATTACKS", "MOST_CONSTRAINED" })
+	public PieceOrder order;
+
+	private Problem p;
+
+	@Setup
+	public void setup() {
+		p = Problems.parse(problem);
+	}
+
+	/** Counts the solutions. */
+	@Benchmark
+	public long count() {
+		return BitboardSearch.of(p, order).count();
+	}
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.tcus.chess.solver;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Problem specifications used in benchmarks. A specification has the form
+ * {@code <rows>x<columns>:<pieces>}, where pieces are a sequence of piece representations followed
+ * by the number of copies, e.g. {@code 7x7:K2Q2B2N1} for the challenge.
+ * @author Andres Rodriguez
+ */
+final class Problems {
+	/** The challenge. */
+	static final String CHALLENGE = "7x7:K2Q2B2N1";
+
+	/** Specification pattern. */
+	private static final Pattern SPEC = Pattern.compile("(\\d+)x(\\d+):((?:[KQBRN]\\d+)+)");
+	/** Pieces pattern. */
+	private static final Pattern PIECES = Pattern.compile("([KQBRN])(\\d+)");
+
+	/** Not instantiable. */
+	private Problems() {
+		throw new AssertionError();
+	}
+
+	/** Parses a problem specification. */
+	static Problem parse(String spec) {
+		final Matcher m = SPEC.matcher(spec);
+		checkArgument(m.matches(), "Invalid problem specification %s", spec);
+		final Problem.Builder b = Problem.builder(Size.of(Integer.parseInt(m.group(1)), Integer.parseInt(m.group(2))));
+		final Matcher pm = PIECES.matcher(m.group(3));
+		while (pm.find()) {
+			b.addPieces(piece(pm.group(1).charAt(0)), Integer.parseInt(pm.group(2)));
+		}
+		return b.build();
+	}
+
+	private static Piece piece(char representation) {
+		for (Piece p : Piece.values()) {
+			if (p.getRepresentation() == representation) {
+				return p;
+			}
+		}
+		throw new IllegalArgumentException("Unknown piece " + representation);
+	}
+}
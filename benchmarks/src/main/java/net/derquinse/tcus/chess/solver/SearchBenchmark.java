@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.tcus.chess.solver;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Single-threaded benchmarks of the search engines, without the solver machinery: the immutable
+ * {@link Step} recursion and the mutable {@link BitboardSearch}.
+ * @author Andres Rodriguez
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SearchBenchmark {
+	/** Problem specification. */
+	@Param({ Problems.CHALLENGE, "7x7:K2Q3B2N1", "6x6:K2R2N3", "8x8:Q8", "10x10:Q10" })
+	public String problem;
+
+	private Problem p;
+
+	@Setup
+	public void setup() {
+		p = Problems.parse(problem);
+	}
+
+	/** Recursion through steps. */
+	@Benchmark
+	public long stepRecurse() {
+		final Counter counter = new Counter();
+		for (Step first : Step.initial(p).nextSteps(counter, null)) {
+			first.nextSteps(counter, null);
+		}
+		return counter.getCount();
+	}
+
+	/** Bitboard engine. */
+	@Benchmark
+	public long bitboard() {
+		return BitboardSearch.of(p).count();
+	}
+
+	/** Single-threaded counter. */
+	private static final class Counter implements SolutionCounter {
+		private long count = 0L;
+
+		@Override
+		public void accept(long value) {
+			count += value;
+		}
+
+		@Override
+		public long getCount() {
+			return count;
+		}
+	}
+}
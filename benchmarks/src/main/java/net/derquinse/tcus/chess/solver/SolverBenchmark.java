@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.tcus.chess.solver;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * End-to-end benchmarks of the public solvers on a matrix of problems, including the challenge and
+ * the N-queens problem from 8 to 12.
+ * @author Andres Rodriguez
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SolverBenchmark {
+	/** Problem specification. */
+	@Param({ Problems.CHALLENGE, "6x6:K2R2N3", "8x8:Q8", "9x9:Q9", "10x10:Q10", "11x11:Q11", "12x12:Q12" })
+	public String problem;
+	/** Solver kind. */
+	@Param({ "DEFAULT", "BITBOARD", "FORKJOIN", "SYMMETRIC", "MEMOIZING" })
+	public String solver;
+	/** Number of threads (ignored by the single-threaded bitboard solver). */
+	@Param({ "1", "4", "8" })
+	public int threads;
+
+	private Problem p;
+	private Solver s;
+
+	@Setup
+	public void setup() {
+		p = Problems.parse(problem);
+		switch (solver) {
+		case "DEFAULT":
+			s = Solvers.defaultSolver(threads);
+			break;
+		case "BITBOARD":
+			s = Solvers.bitboardSolver();
+			break;
+		case "FORKJOIN":
+			s = Solvers.forkJoinSolver(threads);
+			break;
+		case "SYMMETRIC":
+			s = Solvers.symmetricSolver(threads);
+			break;
+		case "MEMOIZING":
+			s = Solvers.memoizingSolver(threads, TranspositionTable.create(1 << 20, threads));
+			break;
+		default:
+			throw new IllegalArgumentException("Unknown solver " + solver);
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		s.close();
+	}
+
+	/** Counts the solutions. */
+	@Benchmark
+	public long solve() {
+		return s.solve(p);
+	}
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.tcus.chess.solver;
+
+import java.util.BitSet;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks for board state merge and iteration, for the different state implementations (boards
+ * up to 64, up to 128 and more than 128 positions).
+ * @author Andres Rodriguez
+ */
+@org.openjdk.jmh.annotations.State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class StateBenchmark {
+	/** Number of sample states. */
+	private static final int SAMPLES = 64;
+
+	/** Board size. */
+	@Param({ "7x7", "8x8", "10x10", "12x12" })
+	public String size;
+	/** Fraction of unavailable positions (percentage). */
+	@Param({ "25" })
+	public int density;
+
+	private State[] states;
+
+	@Setup
+	public void setup() {
+		final String[] rc = size.split("x");
+		final Size board = Size.of(Integer.parseInt(rc[0]), Integer.parseInt(rc[1]));
+		final Random random = new Random(42L);
+		states = new State[SAMPLES];
+		for (int i = 0; i < SAMPLES; i++) {
+			final BitSet set = new BitSet();
+			for (int j = 0; j < board.getPositions(); j++) {
+				if (random.nextInt(100) < density) {
+					set.set(j);
+				}
+			}
+			set.set(random.nextInt(board.getPositions()));
+			states[i] = State.of(board, set);
+		}
+	}
+
+	/** Merges pairs of states. */
+	@Benchmark
+	public void merge(Blackhole bh) {
+		for (int i = 1; i < SAMPLES; i++) {
+			bh.consume(states[i - 1].merge(states[i]));
+		}
+	}
+
+	/** Iterates through available position indexes. */
+	@Benchmark
+	public int nextAvailable() {
+		int sum = 0;
+		for (State s : states) {
+			final int n = s.getSize().getPositions();
+			for (int i = s.nextAvailable(0); i < n; i = s.nextAvailable(i + 1)) {
+				sum += i;
+			}
+		}
+		return sum;
+	}
+
+	/** Iterates through available positions. */
+	@Benchmark
+	public void iterator(Blackhole bh) {
+		for (State s : states) {
+			for (Position p : s) {
+				bh.consume(p);
+			}
+		}
+	}
+
+	/** Counts available positions. */
+	@Benchmark
+	public int availablePositions() {
+		int sum = 0;
+		for (State s : states) {
+			sum += s.getAvailablePositions();
+		}
+		return sum;
+	}
+}
@@ -17,15 +17,33 @@ package net.derquinse.tcus.chess;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.io.Writer;
+import java.net.InetSocketAddress;
 import java.util.List;
+import java.util.OptionalLong;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
+import net.derquinse.tcus.chess.solver.Checkpoint;
+import net.derquinse.tcus.chess.solver.JmxSolverMetrics;
 import net.derquinse.tcus.chess.solver.Piece;
+import net.derquinse.tcus.chess.solver.PieceOrder;
 import net.derquinse.tcus.chess.solver.Problem;
+import net.derquinse.tcus.chess.solver.Progress;
+import net.derquinse.tcus.chess.solver.ResultCache;
+import net.derquinse.tcus.chess.solver.SearchStatistics;
 import net.derquinse.tcus.chess.solver.Size;
 import net.derquinse.tcus.chess.solver.Solution;
+import net.derquinse.tcus.chess.solver.SolutionFile;
+import net.derquinse.tcus.chess.solver.SolutionGenerator;
 import net.derquinse.tcus.chess.solver.Solver;
+import net.derquinse.tcus.chess.solver.SolverWorker;
 import net.derquinse.tcus.chess.solver.Solvers;
+import net.derquinse.tcus.chess.solver.TranspositionTable;
 
 import com.beust.jcommander.IParameterValidator;
 import com.beust.jcommander.JCommander;
@@ -35,14 +53,19 @@ import com.beust.jcommander.converters.FileConverter;
 import com.beust.jcommander.validators.PositiveInteger;
 import com.google.common.base.Charsets;
 import com.google.common.base.Stopwatch;
-import com.google.common.collect.ImmutableList;
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
 import com.google.common.io.Files;
+import com.google.common.net.HostAndPort;
 
 /**
  * Chess Challenge main class.
  * @author Andres Rodriguez
  */
 public final class ChessChallenge {
+	/** Maximum number of solution counts cached in memory. */
+	private static final int CACHE_SIZE = 1024;
+
 	/** Number of rows. */
 	@Parameter(names = "-rows", description = "Number of rows", validateWith = GreaterThanZero.class)
 	private int rows = 8;
@@ -67,9 +90,56 @@ public final class ChessChallenge {
 	/** Number of threads to use. */
 	@Parameter(names = "-threads", description = "Number of threads to use", validateWith = GreaterThanZero.class)
 	private int threads = 1;
+	/** Solver to use. */
+	@Parameter(names = "-solver", description = "Solver to use (DEFAULT, BITBOARD, FORKJOIN, SYMMETRIC, MEMOIZING or PROFILE, only for kings and knights)")
+	private SolverKind solver = SolverKind.DEFAULT;
+	/** Piece order. */
+	@Parameter(names = "-order", description = "Piece order (FIXED, ATTACKS or MOST_CONSTRAINED), not used by the DEFAULT and SYMMETRIC solvers")
+	private PieceOrder order = PieceOrder.FIXED;
+	/** Maximum number of entries of the transposition table. */
+	@Parameter(names = "-memo", description = "Maximum number of entries of the transposition table (MEMOIZING solver)", validateWith = GreaterThanZero.class)
+	private int memoEntries = SolverKind.MEMO_ENTRIES;
+	/** Transposition table used by the MEMOIZING solver. */
+	private TranspositionTable memo = null;
+	/** Whether to expose the metrics of the solver through JMX. */
+	@Parameter(names = "-jmx", description = "Expose the metrics of the DEFAULT solver through JMX")
+	private boolean jmx = false;
 	/** Output file (solution boards). */
 	@Parameter(names = "-output", description = "Output file (solution boards)", converter = FileConverter.class)
 	private File output = null;
+	/** Whether to write the output file in binary format. */
+	@Parameter(names = "-binary", description = "Write the output file in compact binary format")
+	private boolean binary = false;
+	/** Number of random solutions to draw. */
+	@Parameter(names = "-random", description = "Draw the given number of uniformly random solutions (written to the output file if any)", validateWith = PositiveInteger.class)
+	private int random = 0;
+	/** Maximum time to spend counting solutions (seconds). */
+	@Parameter(names = "-timeout", description = "Maximum time to spend counting solutions (seconds, 0 for no limit)", validateWith = PositiveInteger.class)
+	private int timeout = 0;
+	/** Time between progress reports (seconds). */
+	@Parameter(names = "-progress", description = "Time between progress reports while counting solutions (seconds, 0 for none)", validateWith = PositiveInteger.class)
+	private int progress = 0;
+	/** Whether to use the specialized counting engines. */
+	@Parameter(names = "-specialized", description = "Count the solutions of rook only, queen only and king and knight only problems with specialized engines")
+	private boolean specialized = false;
+	/** Result cache directory. */
+	@Parameter(names = "-cache", description = "Directory of the solution count cache", converter = FileConverter.class)
+	private File cache = null;
+	/** Checkpoint file. */
+	@Parameter(names = "-checkpoint", description = "Checkpoint file, where the progress of the count is periodically recorded", converter = FileConverter.class)
+	private File checkpoint = null;
+	/** Whether to resume the count recorded in the checkpoint file. */
+	@Parameter(names = "-resume", description = "Resume the count recorded in the checkpoint file, if it exists")
+	private boolean resume = false;
+	/** Port to listen on as a cluster worker. */
+	@Parameter(names = "-worker", description = "Run as a cluster worker listening on the given port of the loopback address (the problem is ignored)", validateWith = GreaterThanZero.class)
+	private int worker = 0;
+	/** Address the cluster worker listens on. */
+	@Parameter(names = "-bind", description = "Address the cluster worker listens on, to accept connections from other hosts (the protocol is not authenticated, so it should only be reachable from trusted hosts)")
+	private String bind = null;
+	/** Cluster worker addresses. */
+	@Parameter(names = "-workers", description = "Count solutions in a cluster of workers (comma separated host:port addresses, repeat an address to use several of its cores)")
+	private List<String> workers = Lists.newArrayList();
 
 	/** Constructor. */
 	private ChessChallenge() {
@@ -92,6 +162,10 @@ public final class ChessChallenge {
 	}
 
 	private void run() {
+		if (worker > 0) {
+			runWorker();
+			return;
+		}
 		final Problem p = Problem.builder(Size.of(rows, columns)).addPieces(Piece.KING, kings)
 				.addPieces(Piece.QUEEN, queens).addPieces(Piece.BISHOP, bishops).addPieces(Piece.ROOK, rooks)
 				.addPieces(Piece.KNIGHT, knights).build();
@@ -99,29 +173,234 @@ public final class ChessChallenge {
 				.printf(
 						"Solving for %d king(s), %d queen(s), %d bishop(s), %d rook(s) and %d knight(s) in a %d row(s) by %d column(s) board\n",
 						kings, queens, bishops, rooks, knights, rows, columns);
-		final Solver solver = Solvers.defaultSolver(threads);
-		final int count;
-		final List<Solution> solutions;
-		final Stopwatch w = Stopwatch.createStarted();
-		if (output != null) {
-			solutions = solver.solveAndGet(p);
-			count = solutions.size();
+		try (Solver solver = getSolver()) {
+			run(solver, p);
+		} catch (IOException e) {
+			System.err.printf("Error opening the cache directory [%s]: %s\n", cache, e.getMessage());
+		}
+	}
+
+	/** Runs a cluster worker until the process is killed. */
+	private void runWorker() {
+		try (SolverWorker w = bind != null ? SolverWorker.start(new InetSocketAddress(bind, worker)) : SolverWorker
+				.start(worker)) {
+			System.out.printf("Worker listening on %s\n", w.getAddress());
+			Thread.currentThread().join();
+		} catch (IOException e) {
+			System.err.printf("Error starting the worker on port %d: %s\n", worker, e.getMessage());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/** Returns the worker addresses. */
+	private List<InetSocketAddress> getWorkers() {
+		final List<InetSocketAddress> addresses = Lists.newArrayList();
+		for (String w : workers) {
+			try {
+				final HostAndPort hp = HostAndPort.fromString(w.trim());
+				addresses.add(new InetSocketAddress(hp.getHostText(), hp.getPort()));
+			} catch (IllegalArgumentException | IllegalStateException e) {
+				throw new ParameterException("Invalid worker address " + w + " (host:port expected)");
+			}
+		}
+		return addresses;
+	}
+
+	/** Returns the solver to use, using the specialized engines and the result cache if requested. */
+	private Solver getSolver() throws IOException {
+		Solver s;
+		if (!workers.isEmpty()) {
+			s = Solvers.clusterSolver(getWorkers());
+		} else if (solver == SolverKind.MEMOIZING) {
+			memo = TranspositionTable.create(memoEntries, threads);
+			s = Solvers.memoizingSolver(threads, memo, order);
+		} else if (jmx && solver == SolverKind.DEFAULT) {
+			final JmxSolverMetrics metrics = JmxSolverMetrics.create().register("ChessChallenge");
+			System.out.printf("Solver metrics registered as %s\n", metrics.getName());
+			s = Solvers.defaultSolver(threads, metrics);
 		} else {
-			count = solver.solve(p);
-			solutions = ImmutableList.of();
+			s = solver.get(threads, order);
+		}
+		if (specialized) {
+			s = Solvers.specializedSolver(s);
+		}
+		if (cache == null) {
+			return s;
 		}
-		System.out.printf("Found % d solutions in %s using %d thread(s)\n", count, w, threads);
-		if (output != null && !solutions.isEmpty()) {
+		try {
+			return Solvers.cachingSolver(s, ResultCache.persistent(CACHE_SIZE, cache.toPath()));
+		} catch (IOException e) {
+			s.close();
+			throw e;
+		}
+	}
+
+	private void run(Solver solver, Problem p) {
+		final Stopwatch w = Stopwatch.createStarted();
+		if (random > 0) {
+			draw(solver, p, w);
+		} else if (output != null && binary) {
+			try (SolutionFile.Writer writer = SolutionFile.create(output.toPath(), p)) {
+				final long count = solver.solve(p, writer);
+				System.out.printf("Found % d solutions in %s using %d thread(s)\n", count, w, threads);
+			} catch (IOException | UncheckedIOException e) {
+				System.err.printf("Error writing output file [%s]: %s\n", output, e.getMessage());
+			}
+		} else if (output != null) {
+			// Solutions are written as they are found
 			try (Writer writer = Files.newWriter(output, Charsets.UTF_8)) {
-				for (Solution s : solutions) {
-					s.draw(writer);
-					writer.append('\n');
-				}
-			} catch (IOException e) {
+				final long count = solver.solve(p, s -> draw(writer, s));
+				System.out.printf("Found % d solutions in %s using %d thread(s)\n", count, w, threads);
+			} catch (IOException | UncheckedIOException e) {
 				System.err.printf("Error writing output file [%s]: %s\n", output, e.getMessage());
 			}
+		} else if (checkpoint != null) {
+			try {
+				final Checkpoint c = resume ? Checkpoint.resume(checkpoint.toPath(), p) : Checkpoint.create(
+						checkpoint.toPath(), p);
+				if (c.getCompleted() > 0) {
+					System.out.printf("Resuming with %d subtree(s) and %d solution(s) already found\n", c.getCompleted(),
+							c.getCount());
+				}
+				final long count = solver.solve(p, c);
+				System.out.printf("Found % d solutions in %s using %d thread(s)\n", count, w, threads);
+			} catch (IOException | UncheckedIOException | IllegalArgumentException e) {
+				System.err.printf("Error using the checkpoint file [%s]: %s\n", checkpoint, e.getMessage());
+			}
+		} else if (progress > 0) {
+			final Future<Long> result = solver.submit(p, ChessChallenge::report, progress, TimeUnit.SECONDS);
+			try {
+				final long count = timeout > 0 ? result.get(timeout, TimeUnit.SECONDS) : result.get();
+				System.out.printf("Found % d solutions in %s using %d thread(s)\n", count, w, threads);
+			} catch (TimeoutException e) {
+				result.cancel(true);
+				System.err.printf("Search abandoned after %d second(s)\n", timeout);
+			} catch (InterruptedException e) {
+				result.cancel(true);
+				Thread.currentThread().interrupt();
+			} catch (ExecutionException e) {
+				throw Throwables.propagate(e.getCause());
+			}
+		} else if (timeout > 0) {
+			try {
+				final long count = solver.solve(p, timeout, TimeUnit.SECONDS);
+				System.out.printf("Found % d solutions in %s using %d thread(s)\n", count, w, threads);
+			} catch (TimeoutException e) {
+				System.err.printf("Search abandoned after %d second(s)\n", timeout);
+			}
+		} else {
+			final long count = solver.solve(p);
+			System.out.printf("Found % d solutions in %s using %d thread(s)\n", count, w, threads);
+		}
+		if (memo != null) {
+			System.out.printf("Transposition table: %d entries (~%d KiB), %d hits, %d misses (%.1f%% hit rate)\n",
+					memo.getEntries(), memo.getEstimatedBytes() / 1024, memo.getHits(), memo.getMisses(),
+					100.0 * memo.getHitRate());
 		}
+		if (SearchStatistics.isEnabled()) {
+			System.out.print(SearchStatistics.get());
+		}
+	}
+
+	/** Draws random solutions, into the output file if any. */
+	private void draw(Solver solver, Problem p, Stopwatch w) {
+		final SolutionGenerator g = solver.generator(p);
+		System.out.printf("Found % d solutions in %s using %d thread(s)\n", g.getCount(), w, threads);
+		if (g.getCount() == 0) {
+			return;
+		}
+		final Random r = new Random();
+		if (output == null) {
+			for (int i = 0; i < random; i++) {
+				System.out.println(g.next(r).draw());
+			}
+			return;
+		}
+		try (Writer writer = Files.newWriter(output, Charsets.UTF_8)) {
+			for (int i = 0; i < random; i++) {
+				draw(writer, g.next(r));
+			}
+			System.out.printf("Drew %d random solution(s) in %s\n", random, w);
+		} catch (IOException | UncheckedIOException e) {
+			System.err.printf("Error writing output file [%s]: %s\n", output, e.getMessage());
+		}
+	}
+
+	/** Prints a progress line, unless the solve is finished. */
+	private static void report(Progress p) {
+		if (p.isDone()) {
+			return;
+		}
+		final StringBuilder b = new StringBuilder("Progress: ");
+		if (p.getTotal() > 0) {
+			b.append(String.format("%d/%d subtrees, %,d nodes (%,.0f/s), %,d solutions, ", p.getCompleted(), p.getTotal(),
+					p.getNodes(), p.getNodesPerSecond(), p.getSolutions()));
+		}
+		b.append(String.format("%d s elapsed", p.getElapsed(TimeUnit.SECONDS)));
+		final OptionalLong remaining = p.getRemaining(TimeUnit.SECONDS);
+		if (remaining.isPresent()) {
+			b.append(String.format(", ~%d s left", remaining.getAsLong()));
+		}
+		System.out.println(b);
+	}
+
+	/** Draws a solution into the output file. */
+	private static void draw(Writer writer, Solution s) {
+		try {
+			s.draw(writer);
+			writer.append('\n');
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Available solvers.
+	 */
+	public enum SolverKind {
+		DEFAULT {
+			@Override
+			Solver get(int threads, PieceOrder order) {
+				return Solvers.defaultSolver(threads);
+			}
+		},
+		BITBOARD {
+			@Override
+			Solver get(int threads, PieceOrder order) {
+				return Solvers.bitboardSolver(order);
+			}
+		},
+		FORKJOIN {
+			@Override
+			Solver get(int threads, PieceOrder order) {
+				return Solvers.forkJoinSolver(threads, order);
+			}
+		},
+		SYMMETRIC {
+			@Override
+			Solver get(int threads, PieceOrder order) {
+				return Solvers.symmetricSolver(threads);
+			}
+		},
+		MEMOIZING {
+			@Override
+			Solver get(int threads, PieceOrder order) {
+				return Solvers.memoizingSolver(threads, TranspositionTable.create(MEMO_ENTRIES, threads), order);
+			}
+		},
+		PROFILE {
+			@Override
+			Solver get(int threads, PieceOrder order) {
+				return Solvers.profileSolver();
+			}
+		};
+
+		/** Default maximum number of entries of the transposition table. */
+		static final int MEMO_ENTRIES = 1 << 20;
 
+		/** Returns a solver of this kind. */
+		abstract Solver get(int threads, PieceOrder order);
 	}
 
 	/**
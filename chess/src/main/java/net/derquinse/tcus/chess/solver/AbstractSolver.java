@@ -0,0 +1,217 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.tcus.chess.solver;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+
+/**
+ * Base class for solvers, implementing the blocking and time-bounded operations on top of the
+ * asynchronous ones.
+ * @author Andres Rodriguez
+ */
+abstract class AbstractSolver implements Solver {
+	/** Constructor. */
+	AbstractSolver() {
+	}
+
+	/** Returns whether the problem has no solutions for trivial reasons. */
+	static boolean isDegenerate(Problem problem) {
+		checkNotNull(problem, "The problem must be provided");
+		final int n = problem.getPieces().size();
+		return n == 0 || n > problem.getSize().getPositions();
+	}
+
+	/**
+	 * Returns a future that cancels the provided job when completed in any way, so that the tasks of
+	 * a cancelled or failed solve stop working.
+	 */
+	static <T> CompletableFuture<T> bind(CompletableFuture<T> future, Job job) {
+		future.whenComplete((v, t) -> job.cancel());
+		return future;
+	}
+
+	/**
+	 * Waits for a result, cancelling the computation if the waiting thread is interrupted.
+	 * @throws CancellationException if the computation was cancelled or the thread interrupted.
+	 */
+	static <T> T await(Future<T> future) {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			future.cancel(true);
+			Thread.currentThread().interrupt();
+			throw new CancellationException("Interrupted while waiting for the solution");
+		} catch (ExecutionException e) {
+			throw Throwables.propagate(e.getCause());
+		}
+	}
+
+	/**
+	 * Checks a checkpoint belongs to a problem.
+	 * @throws IllegalArgumentException if the checkpoint belongs to another problem.
+	 */
+	static Checkpoint check(Problem problem, Checkpoint checkpoint) {
+		checkNotNull(problem, "The problem must be provided");
+		checkNotNull(checkpoint, "The checkpoint must be provided");
+		checkArgument(problem.equals(checkpoint.getProblem()), "The checkpoint belongs to %s", checkpoint.getProblem());
+		return checkpoint;
+	}
+
+	@Override
+	public abstract CompletableFuture<Long> submit(Problem problem);
+
+	/** {@inheritDoc} This implementation does not track the search. */
+	@Override
+	public CompletableFuture<Long> submit(Problem problem, ProgressListener listener, long period, TimeUnit unit) {
+		ProgressTracker.check(listener, period, unit);
+		return ProgressTracker.untracked().report(submit(problem), listener, period, unit);
+	}
+
+	/**
+	 * {@inheritDoc} This implementation searches the subtrees in turn in the calling thread, with the
+	 * {@link BitboardSearch} engine.
+	 */
+	@Override
+	public long solve(Problem problem, Checkpoint checkpoint) {
+		check(problem, checkpoint);
+		if (isDegenerate(problem)) {
+			return 0L;
+		}
+		final BitboardSearch search = BitboardSearch.of(problem);
+		try {
+			for (int i = 0; i < search.getPositions(); i++) {
+				if (!checkpoint.isCompleted(i) && search.push(i)) {
+					final long count = search.count();
+					search.pop();
+					checkpoint.complete(i, count);
+				}
+			}
+		} finally {
+			checkpoint.flush();
+		}
+		return checkpoint.getCount();
+	}
+
+	/**
+	 * {@inheritDoc} This implementation streams the solutions, stopping the search with an exception
+	 * thrown from the sink.
+	 */
+	@Override
+	public boolean exists(Problem problem) {
+		return !first(problem, 1).isEmpty();
+	}
+
+	/**
+	 * {@inheritDoc} This implementation streams the solutions, stopping the search with an exception
+	 * thrown from the sink.
+	 */
+	@Override
+	public List<Solution> first(Problem problem, int k) {
+		checkArgument(k >= 0, "The number of solutions must be >= 0");
+		final List<Solution> solutions = Lists.newArrayListWithCapacity(Math.min(k, 1024));
+		if (k == 0 || isDegenerate(problem)) {
+			return solutions;
+		}
+		try {
+			solve(problem, s -> {
+				solutions.add(s);
+				if (solutions.size() == k) {
+					throw Enough.INSTANCE;
+				}
+			});
+		} catch (Enough e) {
+			// Enough solutions
+		}
+		return solutions;
+	}
+
+	/** {@inheritDoc} This implementation streams the solutions into a {@link Reservoir}. */
+	@Override
+	public List<Solution> sample(Problem problem, int k, long seed) {
+		final Reservoir reservoir = new Reservoir(k, seed);
+		if (k > 0 && !isDegenerate(problem)) {
+			solve(problem, reservoir);
+		}
+		return reservoir.getSolutions();
+	}
+
+	/**
+	 * {@inheritDoc} This implementation counts the subtrees in turn in the calling thread, with the
+	 * {@link BitboardSearch} engine.
+	 */
+	@Override
+	public SolutionGenerator generator(Problem problem) {
+		checkNotNull(problem, "The problem must be provided");
+		final long[] counts = new long[problem.getSize().getPositions()];
+		if (!isDegenerate(problem)) {
+			final BitboardSearch search = BitboardSearch.of(problem);
+			for (int i = 0; i < counts.length; i++) {
+				if (search.push(i)) {
+					counts[i] = search.count();
+					search.pop();
+				}
+			}
+		}
+		return new SolutionGenerator(problem, counts);
+	}
+
+	@Override
+	public long solve(Problem problem) {
+		return await(submit(problem));
+	}
+
+	@Override
+	public long solve(Problem problem, long timeout, TimeUnit unit) throws TimeoutException {
+		checkNotNull(unit, "The time unit must be provided");
+		final Future<Long> future = submit(problem);
+		try {
+			return future.get(timeout, unit);
+		} catch (TimeoutException e) {
+			future.cancel(true);
+			throw e;
+		} catch (InterruptedException e) {
+			future.cancel(true);
+			Thread.currentThread().interrupt();
+			throw new CancellationException("Interrupted while waiting for the solution");
+		} catch (ExecutionException e) {
+			throw Throwables.propagate(e.getCause());
+		}
+	}
+
+	/** Exception thrown by a sink to stop a search when it has enough solutions. */
+	@SuppressWarnings("serial")
+	private static final class Enough extends RuntimeException {
+		/** Shared instance, as it does not need a stack trace. */
+		static final Enough INSTANCE = new Enough();
+
+		private Enough() {
+			super("Enough solutions", null, false, false);
+		}
+	}
+
+}
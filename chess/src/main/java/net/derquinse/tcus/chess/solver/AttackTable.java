@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.tcus.chess.solver;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+
+/**
+ * Immutable table with the state generated by every piece in every position of a board size. It is
+ * computed once per board size and shared among searches, so that states are not rebuilt in the
+ * inner loop of the search.
+ * @author Andres Rodriguez
+ */
+final class AttackTable {
+	/** Maximum number of cached tables. */
+	private static final int CACHE_SIZE = 32;
+	/** Table cache. */
+	private static final LoadingCache<Size, AttackTable> CACHE = CacheBuilder.newBuilder().maximumSize(CACHE_SIZE)
+			.build(CacheLoader.from(AttackTable::new));
+
+	/** Returns the attack table for the provided board size. */
+	static AttackTable of(Size size) {
+		return CACHE.getUnchecked(checkNotNull(size, "The board size must be provided"));
+	}
+
+	/** Board size. */
+	private final Size size;
+	/** Board positions, by index. */
+	private final Position[] positions;
+	/** Piece states, indexed by piece ordinal and position index. */
+	private final State[] states;
+	/** Number of words needed to represent a board mask. */
+	private final int words;
+	/** Piece masks, indexed by piece ordinal, position index and word. Set bits are unavailable. */
+	private final long[] masks;
+
+	/** Constructor. */
+	private AttackTable(Size size) {
+		this.size = size;
+		final int n = size.getPositions();
+		final Piece[] pieces = Piece.values();
+		this.positions = new Position[n];
+		for (int i = 0; i < n; i++) {
+			positions[i] = size.getPosition(i);
+		}
+		this.states = new State[pieces.length * n];
+		this.words = (n + Long.SIZE - 1) / Long.SIZE;
+		this.masks = new long[pieces.length * n * words];
+		for (Piece piece : pieces) {
+			final int base = piece.ordinal() * n;
+			for (int i = 0; i < n; i++) {
+				final State state = piece.getState(positions[i]);
+				states[base + i] = state;
+				final int offset = (base + i) * words;
+				for (int j = 0; j < n; j++) {
+					if (!state.isAvailable(j)) {
+						masks[offset + (j >>> 6)] |= 1L << j;
+					}
+				}
+			}
+		}
+	}
+
+	/** Returns the board size. */
+	Size getSize() {
+		return size;
+	}
+
+	/**
+	 * Returns the position with the provided index. The index is not checked as it is used in the
+	 * inner loop of the search.
+	 * @throws ArrayIndexOutOfBoundsException if the index is not valid.
+	 */
+	Position getPosition(int index) {
+		return positions[index];
+	}
+
+	/**
+	 * Returns the state of a piece placed in the position with the provided index. The index is not
+	 * checked as it is used in the inner loop of the search.
+	 */
+	State getState(Piece piece, int index) {
+		return states[piece.ordinal() * positions.length + index];
+	}
+
+	/** Returns the number of words needed to represent a board mask. */
+	int getWords() {
+		return words;
+	}
+
+	/**
+	 * Returns a word of the mask of positions made unavailable by a piece placed in the position with
+	 * the provided index, including the position itself. Arguments are not checked as it is used in
+	 * the inner loop of the search.
+	 */
+	long getMask(Piece piece, int index, int word) {
+		return masks[(piece.ordinal() * positions.length + index) * words + word];
+	}
+
+	/**
+	 * Returns the number of positions threatened by a piece over all the positions of the board, not
+	 * including the positions themselves, which measures how much the piece constrains the search.
+	 */
+	int getAttacks(Piece piece) {
+		final int n = positions.length;
+		final int from = piece.ordinal() * n * words;
+		int attacks = -n;
+		for (int i = from; i < from + n * words; i++) {
+			attacks += Long.bitCount(masks[i]);
+		}
+		return attacks;
+	}
+
+	/** Returns the state of a piece placed in the provided position. */
+	State getState(Piece piece, Position p) {
+		checkArgument(size.equals(checkNotNull(p, "The position must be provided").getSize()),
+				"The position must be of the table size");
+		return states[piece.ordinal() * positions.length + p.getIndex()];
+	}
+
+	@Override
+	public String toString() {
+		return String.format("AttackTable[%s]", size);
+	}
+
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.tcus.chess.solver;
+
+/**
+ * Interface for a destination of the solution counts of a batch of problems as they are solved.
+ * Batch solvers always call the sink from the thread that requested the solutions, so
+ * implementations need not be thread-safe.
+ * @author Andres Rodriguez
+ */
+@FunctionalInterface
+public interface BatchSink {
+	/**
+	 * Receives the solution count of a problem of the batch. If an unchecked exception is thrown the
+	 * batch is abandoned and the exception is propagated to the caller of the solver.
+	 * @param index Index of the problem in the batch.
+	 * @param problem Solved problem.
+	 * @param count Number of solutions of the problem.
+	 */
+	void accept(int index, Problem problem, long count);
+}
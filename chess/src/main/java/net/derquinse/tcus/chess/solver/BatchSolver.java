@@ -0,0 +1,39 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.tcus.chess.solver;
+
+/**
+ * Interface for a solver of batches of problems. The problems of a batch are solved concurrently in
+ * a single pool of threads owned by the solver, that are released when the solver is closed.
+ * Once closed, a solver cannot be used anymore.
+ * @author Andres Rodriguez
+ */
+public interface BatchSolver extends AutoCloseable {
+	/**
+	 * Solves a batch of problems, feeding their solution counts to the provided sink as they are
+	 * solved, which may be in any order.
+	 * @param problems Problems to solve.
+	 * @param sink Solution count sink.
+	 * @return The total number of found solutions.
+	 */
+	long solve(Iterable<Problem> problems, BatchSink sink);
+
+	/**
+	 * Closes the solver, stopping any search in progress and releasing its threads.
+	 */
+	@Override
+	void close();
+}
@@ -0,0 +1,620 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.tcus.chess.solver;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkElementIndex;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.function.Consumer;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * Mutable depth-first search engine. Unlike {@link Step}, it works on preallocated per-depth stacks
+ * of board masks and placed indexes, so no object is allocated during the search unless solutions
+ * are requested. Not thread-safe: each thread must use its own instance.
+ * <p>
+ * Per-depth masks of the positions where each kind left to place would threaten a placed piece are
+ * maintained, so only legal positions are tried and, before descending, the branch is abandoned if
+ * any kind has fewer legal positions left than pieces to place (forward checking).
+ * <p>
+ * Pieces are usually placed in a fixed order. In dynamic mode the kind placed at every node is the
+ * most constrained one, found using the same masks.
+ * @author Andres Rodriguez
+ */
+final class BitboardSearch {
+	/** Number of search nodes between cancellation polls. */
+	private static final int POLL_INTERVAL = 1 << 12;
+	/** Minimum number of pieces left to place for a subproblem to be looked up in the memo. */
+	private static final int MEMO_PIECES = 3;
+	/**
+	 * Minimum number of pieces left to place for forward checking. With a single piece the check is
+	 * the search itself.
+	 */
+	private static final int FORWARD_PIECES = 2;
+
+	/** Attack table. */
+	private final AttackTable table;
+	/** Number of positions. */
+	private final int n;
+	/** Number of words per mask. */
+	private final int words;
+	/** Pieces to place, in search order. */
+	private final Piece[] pieces;
+	/** Placed pieces, by depth (the pieces array unless in dynamic mode). */
+	private final Piece[] path;
+	/** Whether each piece is of the same kind as the previous one. */
+	private final boolean[] samePiece;
+	/** Valid positions mask, by word. */
+	private final long[] valid;
+	/** Unavailable (occupied or threatened) positions, by depth and word. */
+	private final long[] unavailable;
+	/** Occupied positions, by depth and word. */
+	private final long[] occupied;
+	/** Placed position indexes, by depth. */
+	private final int[] placed;
+	/** Current depth. */
+	private int depth = 0;
+	/** Solution sink (may be {@code null}). */
+	private PlacementSink sink = null;
+	/** Job the search belongs to. */
+	private Job job = new Job();
+	/** Nodes left until the next cancellation poll. */
+	private int poll = POLL_INTERVAL;
+	/** Subtree counts memo for counting searches (may be {@code null}). */
+	private TranspositionTable memo = null;
+	/** Pieces left to place, by depth, identifying the subproblems in the memo keys. */
+	private ImmutableList<ImmutableList<Piece>> memoPieces = null;
+	/** Whether the engine is in dynamic mode. */
+	private final boolean dynamic;
+	/** Distinct kinds, in search order. */
+	private final Piece[] kinds;
+	/** Kind of each piece, by depth (not used in dynamic mode). */
+	private final int[] kindOf;
+	/** Depth after the last piece of each kind (not used in dynamic mode). */
+	private final int[] end;
+	/** Pieces left to place, by kind (dynamic mode). */
+	private final int[] remaining;
+	/** Index of the last placed piece, by kind, or -1 (dynamic mode). */
+	private final int[] last;
+	/** Placed kind, by depth (dynamic mode). */
+	private final int[] chosen;
+	/** Index of the last placed piece of the placed kind before placing it, by depth (dynamic mode). */
+	private final int[] previous;
+	/**
+	 * Positions where each kind would threaten a placed piece, by depth, kind and word (only for kinds
+	 * left to place). As threats are symmetric, they are the positions threatened by the kind from the
+	 * occupied ones.
+	 */
+	private final long[] forbidden;
+
+	/** Creates a new search engine for a problem. */
+	static BitboardSearch of(Problem problem) {
+		checkNotNull(problem, "The problem must be provided");
+		final Piece[] pieces = problem.getPieces().stream().sorted(Comparator.comparing(p -> p.getSearchOrder()))
+				.toArray(Piece[]::new);
+		return new BitboardSearch(AttackTable.of(problem.getSize()), pieces, false);
+	}
+
+	/** Creates a new search engine for a problem, placing the pieces in the provided order. */
+	static BitboardSearch of(Problem problem, PieceOrder order) {
+		checkNotNull(order, "The piece order must be provided");
+		switch (order) {
+		case ATTACKS:
+			final AttackTable table = AttackTable.of(checkNotNull(problem, "The problem must be provided").getSize());
+			final Piece[] pieces = problem.getPieces().stream()
+					.sorted(Comparator.comparing((Piece p) -> -table.getAttacks(p)).thenComparing(p -> p.getSearchOrder()))
+					.toArray(Piece[]::new);
+			return new BitboardSearch(table, pieces, false);
+		case MOST_CONSTRAINED:
+			final BitboardSearch search = of(problem);
+			return new BitboardSearch(search.table, search.pieces, true);
+		default:
+			return of(problem);
+		}
+	}
+
+	/**
+	 * Creates a new search engine placing the pieces in the provided order.
+	 * @throws IllegalArgumentException if pieces of the same kind are not contiguous.
+	 */
+	static BitboardSearch of(Size size, List<Piece> pieces) {
+		checkNotNull(pieces, "The pieces must be provided");
+		final Set<Piece> seen = EnumSet.noneOf(Piece.class);
+		for (int i = 0; i < pieces.size(); i++) {
+			final Piece p = checkNotNull(pieces.get(i), "The pieces cannot be null");
+			checkArgument(seen.add(p) || p == pieces.get(i - 1), "Pieces of the same kind must be contiguous");
+		}
+		return new BitboardSearch(AttackTable.of(size), pieces.toArray(new Piece[pieces.size()]), false);
+	}
+
+	/** Constructor. */
+	private BitboardSearch(AttackTable table, Piece[] pieces, boolean dynamic) {
+		this.table = table;
+		this.n = table.getSize().getPositions();
+		this.words = table.getWords();
+		this.pieces = pieces;
+		this.samePiece = new boolean[pieces.length];
+		for (int i = 1; i < pieces.length; i++) {
+			samePiece[i] = pieces[i] == pieces[i - 1];
+		}
+		this.valid = new long[words];
+		Arrays.fill(valid, -1L);
+		if (n % Long.SIZE != 0) {
+			valid[words - 1] = (1L << n) - 1;
+		}
+		this.unavailable = new long[(pieces.length + 1) * words];
+		this.occupied = new long[(pieces.length + 1) * words];
+		this.placed = new int[pieces.length];
+		this.dynamic = dynamic;
+		this.kinds = Arrays.stream(pieces).distinct().toArray(Piece[]::new);
+		this.kindOf = new int[pieces.length];
+		this.end = new int[kinds.length];
+		for (int i = 0, k = -1; i < pieces.length; i++) {
+			if (!samePiece[i]) {
+				k++;
+			}
+			kindOf[i] = k;
+			end[k] = i + 1;
+		}
+		this.forbidden = new long[(pieces.length + 1) * kinds.length * words];
+		if (dynamic) {
+			this.path = new Piece[pieces.length];
+			this.remaining = new int[kinds.length];
+			for (int k = 0; k < kinds.length; k++) {
+				remaining[k] = end[k] - (k > 0 ? end[k - 1] : 0);
+			}
+			this.last = new int[kinds.length];
+			Arrays.fill(last, -1);
+			this.chosen = new int[pieces.length];
+			this.previous = new int[pieces.length];
+		} else {
+			this.path = pieces;
+			this.remaining = null;
+			this.last = null;
+			this.chosen = null;
+			this.previous = null;
+		}
+	}
+
+	/** Copy constructor. The new engine starts at the same depth of the provided one. */
+	private BitboardSearch(BitboardSearch other) {
+		this(other.table, other.pieces, other.isDynamic());
+		this.job = other.job;
+		this.memo = other.memo;
+		this.memoPieces = other.memoPieces;
+		this.depth = other.depth;
+		final int length = (depth + 1) * words;
+		System.arraycopy(other.unavailable, 0, unavailable, 0, length);
+		System.arraycopy(other.occupied, 0, occupied, 0, length);
+		System.arraycopy(other.placed, 0, placed, 0, depth);
+		System.arraycopy(other.forbidden, 0, forbidden, 0, (depth + 1) * kinds.length * words);
+		if (dynamic) {
+			System.arraycopy(other.path, 0, path, 0, depth);
+			System.arraycopy(other.remaining, 0, remaining, 0, kinds.length);
+			System.arraycopy(other.last, 0, last, 0, kinds.length);
+			System.arraycopy(other.chosen, 0, chosen, 0, depth);
+			System.arraycopy(other.previous, 0, previous, 0, depth);
+		}
+	}
+
+	/** Returns whether the engine is in dynamic mode. */
+	boolean isDynamic() {
+		return dynamic;
+	}
+
+	/**
+	 * Sets the job the search belongs to. The job is polled during the search, which is aborted if it
+	 * is cancelled. Copies inherit the job.
+	 */
+	BitboardSearch setJob(Job job) {
+		this.job = checkNotNull(job, "The job must be provided");
+		return this;
+	}
+
+	/**
+	 * Sets the table used to memoize subtree counts when counting. Keys are made of the board size,
+	 * the pieces left to place and the positions where they may be placed, so a table shared by
+	 * several solves finds the subproblems of previous ones. Copies inherit the table. Ignored in
+	 * dynamic mode, as the depth does not determine the remaining pieces.
+	 */
+	BitboardSearch setMemo(TranspositionTable memo) {
+		this.memo = memo;
+		if (memo != null && memoPieces == null) {
+			final ImmutableList.Builder<ImmutableList<Piece>> b = ImmutableList.builder();
+			for (int d = 0; d < pieces.length; d++) {
+				b.add(ImmutableList.copyOf(Arrays.asList(pieces).subList(d, pieces.length)));
+			}
+			this.memoPieces = b.build();
+		}
+		return this;
+	}
+
+	/** Returns a new engine with the same placed pieces, to be used in a different thread. */
+	BitboardSearch copy() {
+		return new BitboardSearch(this);
+	}
+
+	/** Returns the number of pieces to place. */
+	int getPieces() {
+		return pieces.length;
+	}
+
+	/** Returns the current depth (number of placed pieces). */
+	int getDepth() {
+		return depth;
+	}
+
+	/** Returns the index of the position of the piece placed at the provided depth. */
+	int getPlaced(int d) {
+		checkElementIndex(d, depth);
+		return placed[d];
+	}
+
+	/** Returns the number of positions of the board. */
+	int getPositions() {
+		return n;
+	}
+
+	/**
+	 * Places the next piece in the position with the provided index, if possible.
+	 * @return Whether the piece has been placed.
+	 * @throws IllegalStateException if all pieces are already placed.
+	 */
+	boolean push(int index) {
+		checkState(depth < pieces.length, "All pieces are already placed");
+		final int base = depth * words;
+		if (index < 0 || index >= n || (unavailable[base + (index >>> 6)] & (1L << index)) != 0) {
+			return false;
+		}
+		if (dynamic) {
+			final int k = choose(depth);
+			if (k < 0 || index <= last[k] || isForbidden(depth, k, index)) {
+				return false;
+			}
+			remaining[k]--;
+			placeDynamic(depth, k, index);
+			depth++;
+			return true;
+		}
+		if ((samePiece[depth] && index <= placed[depth - 1]) || isForbidden(depth, kindOf[depth], index)) {
+			return false;
+		}
+		place(depth, index);
+		depth++;
+		return true;
+	}
+
+	/** Returns whether the provided kind would threaten a placed piece from the provided position. */
+	private boolean isForbidden(int d, int k, int index) {
+		return (forbidden[(d * kinds.length + k) * words + (index >>> 6)] & (1L << index)) != 0L;
+	}
+
+	/**
+	 * Removes the last placed piece.
+	 * @throws IllegalStateException if no piece is placed.
+	 */
+	void pop() {
+		checkState(depth > 0, "No piece is placed");
+		depth--;
+		if (dynamic) {
+			final int k = chosen[depth];
+			remaining[k]++;
+			last[k] = previous[depth];
+		}
+	}
+
+	/** Counts the solutions reachable from the current depth. */
+	long count() {
+		job.checkNotCancelled();
+		return dynamic ? searchDynamic(depth) : search(depth);
+	}
+
+	/**
+	 * Counts the solutions reachable from the current depth, feeding them to the provided consumer.
+	 */
+	long collect(Consumer<? super Solution> consumer) {
+		checkNotNull(consumer, "The solution consumer must be provided");
+		return collectPlacements((p, i) -> consumer.accept(solution()));
+	}
+
+	/**
+	 * Counts the solutions reachable from the current depth, feeding them in raw form to the provided
+	 * sink.
+	 */
+	long collectPlacements(PlacementSink sink) {
+		this.sink = checkNotNull(sink, "The solution sink must be provided");
+		job.checkNotCancelled();
+		try {
+			return dynamic ? searchDynamic(depth) : search(depth);
+		} finally {
+			this.sink = null;
+		}
+	}
+
+	/**
+	 * Recursive search.
+	 * @throws CancellationException if the job is cancelled during the search.
+	 */
+	private long search(int d) {
+		if (--poll == 0) {
+			poll = POLL_INTERVAL;
+			job.checkNotCancelled();
+		}
+		if (d == pieces.length) {
+			if (sink != null) {
+				sink.accept(path, placed);
+			}
+			return 1L;
+		}
+		final int base = d * words;
+		// No room left for remaining pieces
+		int free = n;
+		for (int w = 0; w < words; w++) {
+			free -= Long.bitCount(unavailable[base + w]);
+		}
+		if (free < pieces.length - d) {
+			return 0L;
+		}
+		// If two pieces are the same kind, only look forward
+		final int first = samePiece[d] ? placed[d - 1] + 1 : 0;
+		final int k = kindOf[d];
+		if (pieces.length - d >= FORWARD_PIECES) {
+			for (int kk = k; kk < kinds.length; kk++) {
+				// Pieces of the kind left to place
+				final int left = kk == k ? end[kk] - d : end[kk] - end[kk - 1];
+				if (legal(d, kk, kk == k ? first : 0, left) < left) {
+					return 0L;
+				}
+			}
+		}
+		final TranspositionTable.Key key;
+		if (memo != null && sink == null && pieces.length - d >= MEMO_PIECES) {
+			key = memoKey(d, first);
+			final Long cached = memo.get(key);
+			if (cached != null) {
+				return cached;
+			}
+		} else {
+			key = null;
+		}
+		final int fb = (d * kinds.length + k) * words;
+		long count = 0L;
+		for (int w = first >>> 6; w < words; w++) {
+			long candidates = ~unavailable[base + w] & ~forbidden[fb + w] & valid[w];
+			if (w == first >>> 6) {
+				candidates &= -1L << first;
+			}
+			while (candidates != 0L) {
+				final int index = (w << 6) + Long.numberOfTrailingZeros(candidates);
+				candidates &= candidates - 1L;
+				place(d, index);
+				count += search(d + 1);
+			}
+		}
+		if (key != null) {
+			memo.put(key, count);
+		}
+		return count;
+	}
+
+	/**
+	 * Recursive search in dynamic mode.
+	 * @throws CancellationException if the job is cancelled during the search.
+	 */
+	private long searchDynamic(int d) {
+		if (--poll == 0) {
+			poll = POLL_INTERVAL;
+			job.checkNotCancelled();
+		}
+		if (d == pieces.length) {
+			if (sink != null) {
+				sink.accept(path, placed);
+			}
+			return 1L;
+		}
+		final int base = d * words;
+		// No room left for remaining pieces
+		int free = n;
+		for (int w = 0; w < words; w++) {
+			free -= Long.bitCount(unavailable[base + w]);
+		}
+		if (free < pieces.length - d) {
+			return 0L;
+		}
+		final int k = choose(d);
+		if (k < 0) {
+			return 0L;
+		}
+		final int fb = (d * kinds.length + k) * words;
+		// Pieces of the same kind in increasing order
+		final int first = last[k] + 1;
+		remaining[k]--;
+		long count = 0L;
+		for (int w = first >>> 6; w < words; w++) {
+			long candidates = ~unavailable[base + w] & ~forbidden[fb + w] & valid[w];
+			if (w == first >>> 6) {
+				candidates &= -1L << first;
+			}
+			while (candidates != 0L) {
+				final int index = (w << 6) + Long.numberOfTrailingZeros(candidates);
+				candidates &= candidates - 1L;
+				placeDynamic(d, k, index);
+				count += searchDynamic(d + 1);
+				last[k] = previous[d];
+			}
+		}
+		remaining[k]++;
+		return count;
+	}
+
+	/**
+	 * Returns the remaining kind with fewer positions where it may be placed at the provided depth
+	 * (ties are broken by search order), or -1 if any kind has fewer positions than pieces left.
+	 */
+	private int choose(int d) {
+		int best = -1;
+		int bestCount = Integer.MAX_VALUE;
+		for (int k = 0; k < kinds.length; k++) {
+			if (remaining[k] == 0) {
+				continue;
+			}
+			final int count = legal(d, k, last[k] + 1, Integer.MAX_VALUE);
+			if (count < remaining[k]) {
+				return -1;
+			}
+			if (count < bestCount) {
+				best = k;
+				bestCount = count;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Counts the positions from the provided one where the provided kind may be placed at the provided
+	 * depth, stopping as soon as the provided limit is reached.
+	 */
+	private int legal(int d, int k, int first, int limit) {
+		final int base = d * words;
+		final int fb = (d * kinds.length + k) * words;
+		int count = 0;
+		for (int w = first >>> 6; w < words && count < limit; w++) {
+			long candidates = ~unavailable[base + w] & ~forbidden[fb + w] & valid[w];
+			if (w == first >>> 6) {
+				candidates &= -1L << first;
+			}
+			count += Long.bitCount(candidates);
+		}
+		return count;
+	}
+
+	/**
+	 * Places a piece of the provided kind at the provided depth in a legal position, filling the masks
+	 * of the next depth. The remaining count must have already been updated.
+	 */
+	private void placeDynamic(int d, int k, int index) {
+		final Piece piece = kinds[k];
+		final int base = d * words;
+		final int next = base + words;
+		for (int w = 0; w < words; w++) {
+			unavailable[next + w] = unavailable[base + w] | table.getMask(piece, index, w);
+			occupied[next + w] = occupied[base + w];
+		}
+		occupied[next + (index >>> 6)] |= 1L << index;
+		// Only kinds left to place are needed in the subtree
+		final int fb = d * kinds.length * words;
+		final int fn = fb + kinds.length * words;
+		for (int kk = 0; kk < kinds.length; kk++) {
+			if (remaining[kk] > 0) {
+				final int offset = kk * words;
+				for (int w = 0; w < words; w++) {
+					forbidden[fn + offset + w] = forbidden[fb + offset + w] | table.getMask(kinds[kk], index, w);
+				}
+			}
+		}
+		path[d] = piece;
+		placed[d] = index;
+		chosen[d] = k;
+		previous[d] = last[k];
+		last[k] = index;
+	}
+
+	/**
+	 * Returns the memo key of the subproblem at the provided depth. The remaining search only depends
+	 * on the positions where each remaining kind may be placed: available positions from which the
+	 * kind does not threaten any placed piece, and, for the next kind, not before the provided first
+	 * position. Using these masks instead of the board masks, subproblems reached through placements
+	 * that differ in irrelevant positions share the same key.
+	 */
+	private TranspositionTable.Key memoKey(int d, int first) {
+		final int from = kindOf[d];
+		final long[] masks = new long[(kinds.length - from) * words];
+		final int base = d * words;
+		for (int k = from; k < kinds.length; k++) {
+			final int offset = (k - from) * words;
+			final int fb = (d * kinds.length + k) * words;
+			for (int w = 0; w < words; w++) {
+				masks[offset + w] = ~unavailable[base + w] & ~forbidden[fb + w] & valid[w];
+			}
+		}
+		for (int w = 0; w < first >>> 6; w++) {
+			masks[w] = 0L;
+		}
+		if (first >>> 6 < words) {
+			masks[first >>> 6] &= -1L << first;
+		}
+		return new TranspositionTable.Key(table.getSize(), memoPieces.get(d), masks);
+	}
+
+	/**
+	 * Places the piece at the provided depth in a legal position, filling the masks of the next depth.
+	 */
+	private void place(int d, int index) {
+		final Piece piece = pieces[d];
+		final int base = d * words;
+		final int next = base + words;
+		for (int w = 0; w < words; w++) {
+			unavailable[next + w] = unavailable[base + w] | table.getMask(piece, index, w);
+			occupied[next + w] = occupied[base + w];
+		}
+		occupied[next + (index >>> 6)] |= 1L << index;
+		// Only kinds left to place are needed in the subtree
+		final int from = d + 1 < pieces.length && samePiece[d + 1] ? kindOf[d] : kindOf[d] + 1;
+		final int fb = d * kinds.length * words;
+		final int fn = fb + kinds.length * words;
+		for (int k = from; k < kinds.length; k++) {
+			final int offset = k * words;
+			for (int w = 0; w < words; w++) {
+				forbidden[fn + offset + w] = forbidden[fb + offset + w] | table.getMask(kinds[k], index, w);
+			}
+		}
+		placed[d] = index;
+	}
+
+	/**
+	 * Returns the solution represented by the placed pieces.
+	 * @throws IllegalStateException if not all pieces are placed.
+	 */
+	Solution getSolution() {
+		checkState(depth == pieces.length, "Not all pieces are placed");
+		return solution();
+	}
+
+	/** Returns the solution represented by the placed pieces. Assumes all pieces are placed. */
+	private Solution solution() {
+		ImmutableMap.Builder<Position, Piece> b = ImmutableMap.builder();
+		for (int i = 0; i < pieces.length; i++) {
+			b.put(table.getPosition(placed[i]), path[i]);
+		}
+		return Solution.of(table.getSize(), b.build());
+	}
+
+	@Override
+	public String toString() {
+		return String.format("BitboardSearch[%s]%s%s", table.getSize(), Arrays.toString(Arrays.copyOf(placed, depth)),
+				Arrays.toString(Arrays.copyOfRange(pieces, depth, pieces.length)));
+	}
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.tcus.chess.solver;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Single-threaded solver based on the allocation-free {@link BitboardSearch} engine. Blocking
+ * solves run in the calling thread, and background ones in a single thread owned by the solver.
+ * @author Andres Rodriguez
+ */
+final class BitboardSolver extends AbstractSolver {
+	/** Executor for background solves. Its thread is only started when needed. */
+	private final ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+			.setDaemon(true).build());
+
+	/** Piece order. */
+	private final PieceOrder order;
+
+	/** Constructor. */
+	BitboardSolver() {
+		this(PieceOrder.FIXED);
+	}
+
+	/** Constructor. */
+	BitboardSolver(PieceOrder order) {
+		this.order = checkNotNull(order, "The piece order must be provided");
+	}
+
+	@Override
+	public List<Solution> solveAndGet(Problem problem) {
+		if (isDegenerate(problem)) {
+			return ImmutableList.of();
+		}
+		final List<Solution> solutions = Lists.newArrayList();
+		BitboardSearch.of(problem, order).collect(solutions::add);
+		return solutions;
+	}
+
+	@Override
+	public long solve(Problem problem) {
+		if (isDegenerate(problem)) {
+			return 0L;
+		}
+		return BitboardSearch.of(problem, order).count();
+	}
+
+	@Override
+	public CompletableFuture<Long> submit(Problem problem) {
+		if (isDegenerate(problem)) {
+			return CompletableFuture.completedFuture(0L);
+		}
+		final Job job = new Job();
+		final BitboardSearch search = BitboardSearch.of(problem, order).setJob(job);
+		return bind(CompletableFuture.supplyAsync(search::count, executor), job);
+	}
+
+	@Override
+	public long solve(Problem problem, SolutionSink sink) {
+		checkNotNull(sink, "The solution sink must be provided");
+		if (isDegenerate(problem)) {
+			return 0L;
+		}
+		// Single-threaded: the sink is fed directly, with no intermediate objects for solution files.
+		if (sink instanceof SolutionFile.Writer) {
+			return BitboardSearch.of(problem, order).collectPlacements(((SolutionFile.Writer) sink)::accept);
+		}
+		return BitboardSearch.of(problem, order).collect(sink::accept);
+	}
+
+	@Override
+	public void close() {
+		executor.shutdownNow();
+	}
+
+}
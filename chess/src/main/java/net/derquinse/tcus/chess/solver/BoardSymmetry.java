@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.tcus.chess.solver;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Arrays;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+
+/**
+ * Immutable value representing the symmetry group of a board: the dihedral group of order 8 for
+ * square boards and the group of order 4 generated by the horizontal and vertical reflections for
+ * rectangular ones. As every piece threatens the same positions in a transformed board, the number
+ * of solutions extending a set of positions is the same for every set in its orbit. It is computed
+ * only once per board size, as long as the size is used often.
+ * @author Andres Rodriguez
+ */
+final class BoardSymmetry {
+	/** Maximum number of cached groups. */
+	private static final int CACHE_SIZE = 32;
+	/** Group cache. */
+	private static final LoadingCache<Size, BoardSymmetry> CACHE = CacheBuilder.newBuilder().maximumSize(CACHE_SIZE)
+			.build(CacheLoader.from(BoardSymmetry::new));
+
+	/** Board size. */
+	private final Size size;
+	/** Position mappings, by symmetry and position index. */
+	private final int[][] maps;
+
+	/** Returns the symmetry group of the provided board size. */
+	static BoardSymmetry of(Size size) {
+		return CACHE.getUnchecked(checkNotNull(size, "The board size must be provided"));
+	}
+
+	/** Constructor. */
+	private BoardSymmetry(Size size) {
+		this.size = size;
+		final int order = size.isSquare() ? 8 : 4;
+		final int rows = size.getRows();
+		final int columns = size.getColumns();
+		this.maps = new int[order][size.getPositions()];
+		for (Position p : size) {
+			final int r = p.getRow();
+			final int c = p.getColumn();
+			final int rr = rows - 1 - r;
+			final int rc = columns - 1 - c;
+			final int i = p.getIndex();
+			maps[0][i] = index(r, c);
+			maps[1][i] = index(r, rc);
+			maps[2][i] = index(rr, c);
+			maps[3][i] = index(rr, rc);
+			if (order == 8) {
+				maps[4][i] = index(c, r);
+				maps[5][i] = index(c, rr);
+				maps[6][i] = index(rc, r);
+				maps[7][i] = index(rc, rr);
+			}
+		}
+	}
+
+	private int index(int row, int column) {
+		return row * size.getColumns() + column;
+	}
+
+	/** Returns the board size. */
+	Size getSize() {
+		return size;
+	}
+
+	/** Returns the order of the group. */
+	int getOrder() {
+		return maps.length;
+	}
+
+	/**
+	 * Returns the size of the orbit of a set of positions if it is the canonical representative of
+	 * the orbit (the lexicographically least of the sorted images). The orbit size is the order of the
+	 * group divided by the size of the stabilizer of the set (Burnside).
+	 * @param indexes Sorted position indexes.
+	 * @return The orbit size, or 0 if the set is not the canonical representative.
+	 */
+	int getCanonicalOrbitSize(int[] indexes) {
+		final int[] image = new int[indexes.length];
+		int stabilizer = 0;
+		for (int[] map : maps) {
+			for (int i = 0; i < indexes.length; i++) {
+				image[i] = map[indexes[i]];
+			}
+			Arrays.sort(image);
+			final int cmp = compare(image, indexes);
+			if (cmp < 0) {
+				return 0;
+			} else if (cmp == 0) {
+				stabilizer++;
+			}
+		}
+		return maps.length / stabilizer;
+	}
+
+	/** Lexicographical comparison of arrays of the same length. */
+	private static int compare(int[] a, int[] b) {
+		for (int i = 0; i < a.length; i++) {
+			if (a[i] != b[i]) {
+				return a[i] < b[i] ? -1 : 1;
+			}
+		}
+		return 0;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("BoardSymmetry[%s](%d)", size, maps.length);
+	}
+
+}
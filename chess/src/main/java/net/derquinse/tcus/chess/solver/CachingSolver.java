@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.tcus.chess.solver;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Solver decorator that looks up solution counts in a result cache before searching, and stores
+ * the counts of every completed search, including those that enumerate solutions.
+ * @author Andres Rodriguez
+ */
+final class CachingSolver extends AbstractSolver {
+	/** Underlying solver. */
+	private final AbstractSolver solver;
+	/** Result cache. */
+	private final ResultCache cache;
+
+	/** Constructor. */
+	CachingSolver(AbstractSolver solver, ResultCache cache) {
+		this.solver = checkNotNull(solver, "The solver must be provided");
+		this.cache = checkNotNull(cache, "The result cache must be provided");
+	}
+
+	@Override
+	public long solve(Problem problem) {
+		final OptionalLong cached = cache.get(problem);
+		if (cached.isPresent()) {
+			return cached.getAsLong();
+		}
+		final long count = solver.solve(problem);
+		cache.put(problem, count);
+		return count;
+	}
+
+	@Override
+	public CompletableFuture<Long> submit(Problem problem) {
+		final OptionalLong cached = cache.get(problem);
+		if (cached.isPresent()) {
+			return CompletableFuture.completedFuture(cached.getAsLong());
+		}
+		return store(problem, solver.submit(problem));
+	}
+
+	@Override
+	public CompletableFuture<Long> submit(Problem problem, ProgressListener listener, long period, TimeUnit unit) {
+		if (cache.get(problem).isPresent()) {
+			return super.submit(problem, listener, period, unit);
+		}
+		return store(problem, solver.submit(problem, listener, period, unit));
+	}
+
+	/** Returns a future that stores the result of a search in the cache. */
+	private CompletableFuture<Long> store(Problem problem, CompletableFuture<Long> search) {
+		final CompletableFuture<Long> result = search.thenApply(count -> {
+			cache.put(problem, count);
+			return count;
+		});
+		// Cancelling the result cancels the search (no-op if already completed)
+		result.whenComplete((c, t) -> search.cancel(true));
+		return result;
+	}
+
+	@Override
+	public long solve(Problem problem, Checkpoint checkpoint) {
+		final OptionalLong cached = cache.get(problem);
+		if (cached.isPresent()) {
+			return cached.getAsLong();
+		}
+		final long count = solver.solve(problem, checkpoint);
+		cache.put(problem, count);
+		return count;
+	}
+
+	@Override
+	public List<Solution> solveAndGet(Problem problem) {
+		final List<Solution> solutions = solver.solveAndGet(problem);
+		cache.put(problem, solutions.size());
+		return solutions;
+	}
+
+	@Override
+	public long solve(Problem problem, SolutionSink sink) {
+		final long count = solver.solve(problem, sink);
+		cache.put(problem, count);
+		return count;
+	}
+
+	@Override
+	public boolean exists(Problem problem) {
+		final OptionalLong cached = cache.get(problem);
+		if (cached.isPresent()) {
+			return cached.getAsLong() > 0L;
+		}
+		return solver.exists(problem);
+	}
+
+	@Override
+	public List<Solution> first(Problem problem, int k) {
+		return solver.first(problem, k);
+	}
+
+	@Override
+	public List<Solution> sample(Problem problem, int k, long seed) {
+		return solver.sample(problem, k, seed);
+	}
+
+	@Override
+	public SolutionGenerator generator(Problem problem) {
+		return solver.generator(problem);
+	}
+
+	@Override
+	public void close() {
+		solver.close();
+	}
+
+}
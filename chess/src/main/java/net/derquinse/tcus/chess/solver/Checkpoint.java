@@ -0,0 +1,217 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.tcus.chess.solver;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Thread-safe record of the progress of a solve, kept in a local file, so that it can be resumed
+ * after a crash or a restart. The search tree is split into the subtrees rooted at each placement
+ * of the first piece (in search order), and the solution counts of the completed subtrees are
+ * recorded. Completions only update memory, and the file is written when a subtree is completed if
+ * enough time has elapsed since the last write, and when the solve finishes.
+ * <p>
+ * The file is a small text file, with a header line naming the problem and a line per completed
+ * subtree with the index of the position of the first piece and the solution count. It is written
+ * to a temporary file first, so that a crash never leaves a partial checkpoint.
+ * @author Andres Rodriguez
+ */
+public final class Checkpoint {
+	/** Header line prefix. */
+	private static final String HEADER = "checkpoint ";
+	/** Default minimum time between writes (seconds). */
+	private static final long DEFAULT_INTERVAL = 30L;
+
+	/** Checkpoint file. */
+	private final Path file;
+	/** Problem. */
+	private final Problem problem;
+	/** Minimum time between writes (ns). */
+	private final long interval;
+	/** Solution counts of the completed subtrees, by position index of the first piece. */
+	private final Map<Integer, Long> completed = Maps.newTreeMap();
+	/** Sum of the counts of the completed subtrees. */
+	private long count = 0L;
+	/** Whether there are completions not written yet. */
+	private boolean dirty = false;
+	/** Time of the last write (ns). */
+	private long written = System.nanoTime();
+
+	/**
+	 * Creates a new empty checkpoint, written every 30 seconds at most. An existing file is replaced on
+	 * the first write.
+	 * @param file Checkpoint file.
+	 * @param problem Problem to solve.
+	 */
+	public static Checkpoint create(Path file, Problem problem) {
+		return create(file, problem, DEFAULT_INTERVAL, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Creates a new empty checkpoint. An existing file is replaced on the first write.
+	 * @param file Checkpoint file.
+	 * @param problem Problem to solve.
+	 * @param interval Minimum time between writes.
+	 * @param unit Time unit of the interval.
+	 * @throws IllegalArgumentException if the interval is negative.
+	 */
+	public static Checkpoint create(Path file, Problem problem, long interval, TimeUnit unit) {
+		return new Checkpoint(file, problem, interval, unit);
+	}
+
+	/**
+	 * Resumes a checkpoint, written every 30 seconds at most. If the file does not exist the
+	 * checkpoint is empty.
+	 * @param file Checkpoint file.
+	 * @param problem Problem to solve.
+	 * @throws IllegalArgumentException if the file belongs to another problem or is not valid.
+	 * @throws IOException if the file cannot be read.
+	 */
+	public static Checkpoint resume(Path file, Problem problem) throws IOException {
+		return resume(file, problem, DEFAULT_INTERVAL, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Resumes a checkpoint. If the file does not exist the checkpoint is empty.
+	 * @param file Checkpoint file.
+	 * @param problem Problem to solve.
+	 * @param interval Minimum time between writes.
+	 * @param unit Time unit of the interval.
+	 * @throws IllegalArgumentException if the file belongs to another problem or is not valid, or if
+	 *           the interval is negative.
+	 * @throws IOException if the file cannot be read.
+	 */
+	public static Checkpoint resume(Path file, Problem problem, long interval, TimeUnit unit) throws IOException {
+		final Checkpoint c = new Checkpoint(file, problem, interval, unit);
+		final List<String> lines;
+		try {
+			lines = Files.readAllLines(file, StandardCharsets.US_ASCII);
+		} catch (NoSuchFileException e) {
+			return c;
+		}
+		checkArgument(!lines.isEmpty() && lines.get(0).equals(HEADER + problem.getKey()),
+				"The checkpoint file %s does not belong to %s", file, problem);
+		final int positions = problem.getSize().getPositions();
+		for (String line : lines.subList(1, lines.size())) {
+			final String[] fields = line.split(" ");
+			try {
+				checkArgument(fields.length == 2);
+				final int index = Integer.parseInt(fields[0]);
+				final long n = Long.parseLong(fields[1]);
+				checkArgument(index >= 0 && index < positions && n >= 0 && !c.completed.containsKey(index));
+				c.completed.put(index, n);
+				c.count += n;
+			} catch (IllegalArgumentException e) {
+				throw new IllegalArgumentException(String.format("Invalid line [%s] in checkpoint file %s", line, file));
+			}
+		}
+		return c;
+	}
+
+	/** Constructor. */
+	private Checkpoint(Path file, Problem problem, long interval, TimeUnit unit) {
+		this.file = checkNotNull(file, "The checkpoint file must be provided");
+		this.problem = checkNotNull(problem, "The problem must be provided");
+		checkArgument(interval >= 0, "The interval must be >= 0");
+		this.interval = checkNotNull(unit, "The time unit must be provided").toNanos(interval);
+	}
+
+	/** Returns the checkpoint file. */
+	public Path getFile() {
+		return file;
+	}
+
+	/** Returns the problem. */
+	public Problem getProblem() {
+		return problem;
+	}
+
+	/** Returns the number of completed subtrees. */
+	public synchronized int getCompleted() {
+		return completed.size();
+	}
+
+	/** Returns the number of solutions in the completed subtrees. */
+	public synchronized long getCount() {
+		return count;
+	}
+
+	/** Returns whether the subtree with the first piece in the provided position is completed. */
+	synchronized boolean isCompleted(int index) {
+		return completed.containsKey(index);
+	}
+
+	/**
+	 * Records a completed subtree, writing the file if enough time has elapsed since the last write.
+	 * @param index Index of the position of the first piece.
+	 * @param n Solution count of the subtree.
+	 * @throws UncheckedIOException if the file cannot be written.
+	 */
+	synchronized void complete(int index, long n) {
+		if (completed.put(index, n) == null) {
+			count += n;
+			dirty = true;
+			if (System.nanoTime() - written >= interval) {
+				flush();
+			}
+		}
+	}
+
+	/**
+	 * Writes the completed subtrees not written yet, if any.
+	 * @throws UncheckedIOException if the file cannot be written.
+	 */
+	public synchronized void flush() {
+		if (!dirty) {
+			return;
+		}
+		final List<String> lines = Lists.newArrayListWithCapacity(completed.size() + 1);
+		lines.add(HEADER + problem.getKey());
+		for (Map.Entry<Integer, Long> e : completed.entrySet()) {
+			lines.add(e.getKey() + " " + e.getValue());
+		}
+		try {
+			final Path dir = file.toAbsolutePath().getParent();
+			final Path tmp = Files.createTempFile(dir, "checkpoint", ".tmp");
+			Files.write(tmp, lines, StandardCharsets.US_ASCII);
+			Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		dirty = false;
+		written = System.nanoTime();
+	}
+
+	@Override
+	public synchronized String toString() {
+		return String.format("Checkpoint[%s, %s, %d subtrees completed]", file, problem, completed.size());
+	}
+}
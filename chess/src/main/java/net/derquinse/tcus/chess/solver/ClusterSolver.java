@@ -0,0 +1,360 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.tcus.chess.solver;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Coordinator of a cluster of {@link SolverWorker} processes. Solution counts are computed splitting
+ * the problem into shards (see {@link Shard}) that are sent to the workers, adding up their counts.
+ * Each worker address gets a connection, served by a thread of the solver that takes shards from a
+ * shared queue, so faster workers solve more shards. An address may be repeated to open several
+ * connections to the same worker.
+ * <p>
+ * Workers send keep-alives while solving a shard, so the read timeout bounds the silence of a
+ * worker, not the time a shard may take. If a connection fails, or its worker is silent for too
+ * long, the shard is queued again and the connection is opened again after a delay. A connection
+ * failing too many times in a row is abandoned for the rest of the solve. A shard failing too many
+ * times, or the loss of every connection, fails the solve.
+ * <p>
+ * Checkpointed solves only send the shards of the subtrees not completed yet, and record a subtree
+ * when all of its shards are solved. Problems with a single piece are not split, so they are
+ * searched locally.
+ * Solution lists are obtained by local enumeration with the {@link BitboardSearch} engine.
+ * @author Andres Rodriguez
+ */
+final class ClusterSolver extends AbstractSolver {
+	/** Number of shards to generate per connection, so that the load is balanced. */
+	private static final int SHARDS_PER_CONNECTION = 16;
+	/** Maximum number of attempts to solve a shard, and of consecutive failures of a connection. */
+	private static final int MAX_ATTEMPTS = 3;
+	/** Connection timeout (ms). */
+	private static final int CONNECT_TIMEOUT = 5000;
+	/** Delay before opening a failed connection again (ms). */
+	private static final long RECONNECT_DELAY = 500L;
+	/** Default maximum time to wait for a worker solving a shard to send anything (seconds). */
+	static final long DEFAULT_READ_TIMEOUT = 60L;
+	/** Number of keep-alives requested per read timeout. */
+	private static final int KEEP_ALIVES = 4;
+	/** Time to wait for a shard to be queued again while others are in flight (ms). */
+	private static final long POLL_TIMEOUT = 100L;
+
+	/** Worker addresses, one per connection. */
+	private final ImmutableList<InetSocketAddress> workers;
+	/** Executor for the connection threads. */
+	private final ExecutorService executor = Executors.newCachedThreadPool(new ThreadFactoryBuilder().setDaemon(true)
+			.build());
+	/** Distributed solves in progress. */
+	private final Set<Distribution> distributions = Sets.newConcurrentHashSet();
+	/** Maximum time to wait for a worker solving a shard to send anything (ms). */
+	private final int readTimeout;
+
+	/** Constructor. */
+	ClusterSolver(List<InetSocketAddress> workers) {
+		this(workers, DEFAULT_READ_TIMEOUT, TimeUnit.SECONDS);
+	}
+
+	/** Constructor. */
+	ClusterSolver(List<InetSocketAddress> workers, long readTimeout, TimeUnit unit) {
+		this.workers = ImmutableList.copyOf(checkNotNull(workers, "The worker addresses must be provided"));
+		checkArgument(!this.workers.isEmpty(), "At least a worker address must be provided");
+		checkArgument(readTimeout > 0, "The read timeout must be > 0");
+		final long millis = checkNotNull(unit, "The time unit must be provided").toMillis(readTimeout);
+		this.readTimeout = (int) Math.max(1L, Math.min(Integer.MAX_VALUE, millis));
+	}
+
+	@Override
+	public CompletableFuture<Long> submit(Problem problem) {
+		if (isDegenerate(problem)) {
+			return CompletableFuture.completedFuture(0L);
+		}
+		// Completing the result in any way closes the connections, abandoning the searches of the workers.
+		return new Distribution(Shard.partition(problem, workers.size() * SHARDS_PER_CONNECTION), null).start();
+	}
+
+	@Override
+	public long solve(Problem problem, Checkpoint checkpoint) {
+		check(problem, checkpoint);
+		if (isDegenerate(problem) || problem.getPieces().size() == 1) {
+			return super.solve(problem, checkpoint);
+		}
+		try {
+			final List<Shard> shards = Lists.newArrayList();
+			final Set<Integer> firsts = Sets.newHashSet();
+			for (Shard shard : Shard.partition(problem, workers.size() * SHARDS_PER_CONNECTION)) {
+				if (!checkpoint.isCompleted(shard.getFirst())) {
+					shards.add(shard);
+					firsts.add(shard.getFirst());
+				}
+			}
+			// Subtrees whose prefixes were all discarded have no solutions
+			final BitboardSearch search = BitboardSearch.of(problem);
+			for (int i = 0; i < search.getPositions(); i++) {
+				if (!checkpoint.isCompleted(i) && !firsts.contains(i) && search.push(i)) {
+					search.pop();
+					checkpoint.complete(i, 0L);
+				}
+			}
+			await(new Distribution(shards, checkpoint).start());
+		} finally {
+			checkpoint.flush();
+		}
+		return checkpoint.getCount();
+	}
+
+	@Override
+	public List<Solution> solveAndGet(Problem problem) {
+		if (isDegenerate(problem)) {
+			return ImmutableList.of();
+		}
+		final List<Solution> solutions = Lists.newArrayList();
+		BitboardSearch.of(problem).collect(solutions::add);
+		return solutions;
+	}
+
+	@Override
+	public long solve(Problem problem, SolutionSink sink) {
+		checkNotNull(sink, "The solution sink must be provided");
+		if (isDegenerate(problem)) {
+			return 0L;
+		}
+		if (sink instanceof SolutionFile.Writer) {
+			return BitboardSearch.of(problem).collectPlacements(((SolutionFile.Writer) sink)::accept);
+		}
+		return BitboardSearch.of(problem).collect(sink::accept);
+	}
+
+	@Override
+	public void close() {
+		for (Distribution d : distributions) {
+			d.result.cancel(true);
+		}
+		executor.shutdownNow();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("ClusterSolver%s", workers);
+	}
+
+	/** State of a distributed solve. */
+	private final class Distribution {
+		/** Result. */
+		final CompletableFuture<Long> result = new CompletableFuture<>();
+		/** Shards to solve. */
+		private final BlockingQueue<Shard> pending;
+		/** Number of shards not solved yet. */
+		private final AtomicInteger remaining;
+		/** Number of live connections. */
+		private final AtomicInteger connections = new AtomicInteger(workers.size());
+		/** Count of the solved shards. */
+		private final AtomicLong count = new AtomicLong();
+		/** Number of failed attempts by shard. */
+		private final ConcurrentMap<Shard, Integer> failures = Maps.newConcurrentMap();
+		/** Open sockets. */
+		private final Set<Socket> sockets = Sets.newConcurrentHashSet();
+		/** Checkpoint to record the completed subtrees in (may be {@code null}). */
+		private final Checkpoint checkpoint;
+		/** Number of shards not solved yet by subtree (empty if there is no checkpoint). */
+		private final Map<Integer, AtomicInteger> subtreeShards = Maps.newHashMap();
+		/** Count of the solved shards by subtree (empty if there is no checkpoint). */
+		private final Map<Integer, AtomicLong> subtreeCounts = Maps.newHashMap();
+
+		/** Constructor. */
+		Distribution(List<Shard> shards, Checkpoint checkpoint) {
+			this.pending = new LinkedBlockingQueue<>(shards);
+			this.remaining = new AtomicInteger(shards.size());
+			this.checkpoint = checkpoint;
+			if (checkpoint != null) {
+				for (Shard shard : shards) {
+					subtreeShards.computeIfAbsent(shard.getFirst(), k -> new AtomicInteger()).incrementAndGet();
+					subtreeCounts.putIfAbsent(shard.getFirst(), new AtomicLong());
+				}
+			}
+		}
+
+		/** Starts the connection threads, returning the result. */
+		CompletableFuture<Long> start() {
+			if (remaining.get() == 0) {
+				result.complete(0L);
+				return result;
+			}
+			distributions.add(this);
+			result.whenComplete((v, t) -> {
+				distributions.remove(this);
+				for (Socket socket : sockets) {
+					close(socket);
+				}
+			});
+			for (InetSocketAddress address : workers) {
+				executor.execute(() -> run(address));
+			}
+			return result;
+		}
+
+		/**
+		 * Serves the connections to a worker until the solve is completed or they fail too many times in
+		 * a row.
+		 */
+		private void run(InetSocketAddress address) {
+			int failures = 0;
+			try {
+				while (!result.isDone()) {
+					final Socket socket = new Socket();
+					sockets.add(socket);
+					try {
+						if (result.isDone()) {
+							return;
+						}
+						socket.connect(address, CONNECT_TIMEOUT);
+						socket.setTcpNoDelay(true);
+						// A worker that hangs fails the connection, so its shard is retried
+						socket.setSoTimeout(readTimeout);
+						final DataInputStream in = new DataInputStream(new BufferedInputStream(
+								socket.getInputStream()));
+						final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+								socket.getOutputStream()));
+						out.writeInt(SolverWorker.MAGIC);
+						out.writeInt(SolverWorker.VERSION);
+						out.writeInt(Math.max(1, readTimeout / KEEP_ALIVES));
+						while (!result.isDone()) {
+							final Shard shard = pending.poll(POLL_TIMEOUT, TimeUnit.MILLISECONDS);
+							if (shard != null) {
+								solve(shard, address, in, out);
+								failures = 0;
+							}
+						}
+					} catch (IOException e) {
+						if (++failures >= MAX_ATTEMPTS) {
+							if (connections.decrementAndGet() == 0) {
+								result.completeExceptionally(new UncheckedIOException("No worker left", e));
+							}
+							return;
+						}
+					} finally {
+						sockets.remove(socket);
+						close(socket);
+					}
+					if (!result.isDone()) {
+						Thread.sleep(RECONNECT_DELAY);
+					}
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		/**
+		 * Solves a shard in a worker.
+		 * @throws IOException if the connection fails, after queuing the shard again.
+		 */
+		private void solve(Shard shard, InetSocketAddress address, DataInputStream in, DataOutputStream out)
+				throws IOException {
+			int tag;
+			try {
+				out.writeByte(SolverWorker.REQUEST);
+				shard.write(out);
+				out.flush();
+				// Keep-alives only tell that the worker is still solving the shard
+				do {
+					tag = in.readUnsignedByte();
+				} while (tag == SolverWorker.KEEP_ALIVE);
+				if (tag == SolverWorker.RESULT) {
+					final long n = in.readLong();
+					count.addAndGet(n);
+					if (checkpoint != null) {
+						record(shard, n);
+					}
+					if (remaining.decrementAndGet() == 0) {
+						result.complete(count.get());
+					}
+					return;
+				}
+				if (tag != SolverWorker.ERROR) {
+					throw new IOException(String.format("Unexpected response %d from %s", tag, address));
+				}
+				retry(shard, new IOException(String.format("Error in %s: %s", address, in.readUTF())));
+			} catch (IOException e) {
+				retry(shard, e);
+				throw e;
+			}
+		}
+
+		/**
+		 * Adds the count of a solved shard to its subtree, recording the subtree if it is completed. A
+		 * checkpoint that cannot be written fails the solve.
+		 */
+		private void record(Shard shard, long n) {
+			final int first = shard.getFirst();
+			subtreeCounts.get(first).addAndGet(n);
+			// The last shard of the subtree sees the counts of the others
+			if (subtreeShards.get(first).decrementAndGet() == 0) {
+				try {
+					checkpoint.complete(first, subtreeCounts.get(first).get());
+				} catch (UncheckedIOException e) {
+					result.completeExceptionally(e);
+				}
+			}
+		}
+
+		/** Queues a failed shard again, failing the solve if it has been attempted too many times. */
+		private void retry(Shard shard, IOException cause) {
+			if (failures.merge(shard, 1, Integer::sum) < MAX_ATTEMPTS) {
+				pending.add(shard);
+			} else {
+				result.completeExceptionally(new UncheckedIOException(String.format("%s failed %d times", shard,
+						MAX_ATTEMPTS), cause));
+			}
+		}
+	}
+
+	/** Closes a socket, ignoring failures. */
+	private static void close(Socket socket) {
+		try {
+			socket.close();
+		} catch (IOException e) {
+			// Nothing to do
+		}
+	}
+}
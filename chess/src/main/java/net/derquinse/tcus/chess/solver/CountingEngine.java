@@ -0,0 +1,39 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.tcus.chess.solver;
+
+import java.util.concurrent.CancellationException;
+
+/**
+ * Specialized engine that counts the solutions of a restricted class of problems without searching
+ * the placements one by one. Implementations must be thread-safe.
+ * @author Andres Rodriguez
+ */
+interface CountingEngine {
+	/** Returns whether the engine can count the solutions of the provided problem. */
+	boolean supports(Problem problem);
+
+	/**
+	 * Counts the solutions of a supported problem.
+	 * @param problem Problem to solve.
+	 * @param job Job the count belongs to, polled if the count may take long.
+	 * @return The number of solutions.
+	 * @throws IllegalArgumentException if the problem is not supported.
+	 * @throws CancellationException if the job is cancelled.
+	 * @throws ArithmeticException if the number of solutions does not fit in a long.
+	 */
+	long count(Problem problem, Job job);
+}
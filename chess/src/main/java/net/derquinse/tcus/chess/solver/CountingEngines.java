@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.tcus.chess.solver;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Optional;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Immutable registry of specialized counting engines, consulted in order.
+ * @author Andres Rodriguez
+ */
+final class CountingEngines {
+	/** Default registry: rooks only, queens only and kings and knights only. */
+	static final CountingEngines DEFAULT = of(new RookEngine(), new QueenEngine(), new ShortRangeEngine());
+
+	/** Registered engines. */
+	private final ImmutableList<CountingEngine> engines;
+
+	/** Creates a new registry with the provided engines, that will be consulted in order. */
+	static CountingEngines of(CountingEngine... engines) {
+		return new CountingEngines(ImmutableList.copyOf(engines));
+	}
+
+	/** Constructor. */
+	private CountingEngines(ImmutableList<CountingEngine> engines) {
+		this.engines = engines;
+	}
+
+	/** Returns a new registry with an additional engine, consulted after the existing ones. */
+	CountingEngines with(CountingEngine engine) {
+		checkNotNull(engine, "The engine must be provided");
+		return new CountingEngines(ImmutableList.<CountingEngine> builder().addAll(engines).add(engine).build());
+	}
+
+	/** Returns the first engine supporting the provided problem, if any. */
+	Optional<CountingEngine> find(Problem problem) {
+		checkNotNull(problem, "The problem must be provided");
+		return engines.stream().filter(e -> e.supports(problem)).findFirst();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("CountingEngines%s", engines);
+	}
+}
@@ -19,116 +19,267 @@ import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 import java.util.List;
-import java.util.concurrent.Callable;
-import java.util.concurrent.CompletionService;
-import java.util.concurrent.ExecutorCompletionService;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
 
 import com.beust.jcommander.internal.Lists;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Sets;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 /**
- * Default challenge solver.
+ * Default challenge solver. If metrics are provided, the nodes visited by each subtree of the
+ * first placements are counted, and the task searching it is timed. Closing the solver cancels the
+ * searches in progress.
  * @author Andres Rodriguez
  */
-final class DefaultSolver implements Solver {
+final class DefaultSolver extends AbstractSolver {
 	/** Executor service. */
-	private final ExecutorService executor;
+	private final ThreadPoolExecutor executor;
+	/** Metrics. */
+	private final SolverMetrics metrics;
+	/** Results of the searches in progress, cancelled when the solver is closed. */
+	private final Set<CompletableFuture<?>> running = Sets.newConcurrentHashSet();
 
 	/** Constructor. */
 	DefaultSolver(int numThreads) {
+		this(numThreads, SolverMetrics.NONE);
+	}
+
+	/** Constructor. */
+	DefaultSolver(int numThreads, SolverMetrics metrics) {
 		checkArgument(numThreads > 0, "The number of threads must be at least 1");
-		// As we don't provide a way to stop the solver and we wait for the solutions, we use daemon
-		// threads.
-		this.executor = Executors.newFixedThreadPool(numThreads, new ThreadFactoryBuilder().setDaemon(true).build());
+		this.metrics = checkNotNull(metrics, "The metrics must be provided");
+		// Daemon threads, so that a solver that is not closed does not prevent the JVM from exiting.
+		this.executor = new ThreadPoolExecutor(numThreads, numThreads, 0L, TimeUnit.MILLISECONDS,
+				new LinkedBlockingQueue<Runnable>(), new ThreadFactoryBuilder().setDaemon(true).build());
+		try {
+			metrics.attach(new SolverMetrics.Pool() {
+				@Override
+				public int getPoolSize() {
+					return executor.getMaximumPoolSize();
+				}
+
+				@Override
+				public int getActiveThreads() {
+					return executor.getActiveCount();
+				}
+
+				@Override
+				public int getQueuedTasks() {
+					return executor.getQueue().size();
+				}
+			});
+		} catch (RuntimeException e) {
+			executor.shutdownNow();
+			throw e;
+		}
 	}
 
 	@Override
 	public List<Solution> solveAndGet(Problem problem) {
-		final Search s = solve(problem, true);
+		final Search s = start(problem, true, null);
 		if (s == null) {
 			return ImmutableList.of();
 		}
+		await(s.result);
 		return s.getSolutions();
 	}
 
 	@Override
-	public int solve(Problem problem) {
-		final Search s = solve(problem, false);
+	public CompletableFuture<Long> submit(Problem problem) {
+		final Search s = start(problem, false, null);
 		if (s == null) {
-			return 0;
+			return CompletableFuture.completedFuture(0L);
+		}
+		return s.result;
+	}
+
+	@Override
+	public long solve(Problem problem, SolutionSink sink) {
+		checkNotNull(sink, "The solution sink must be provided");
+		final SolutionPipe pipe = new SolutionPipe();
+		final Search s = start(problem, false, pipe);
+		if (s == null) {
+			return 0L;
+		}
+		try {
+			pipe.drain(s.result::isDone, sink);
+		} catch (RuntimeException e) {
+			s.result.cancel(true);
+			throw e;
+		}
+		return await(s.result);
+	}
+
+	@Override
+	public CompletableFuture<Long> submit(Problem problem, ProgressListener listener, long period, TimeUnit unit) {
+		ProgressTracker.check(listener, period, unit);
+		if (isDegenerate(problem)) {
+			return super.submit(problem, listener, period, unit);
+		}
+		final ProgressTracker tracker = ProgressTracker.of(problem);
+		final Search search = new Search(false, null, null, tracker);
+		tracker.report(search.result, listener, period, unit);
+		search.newTask(Step.initial(problem, search.job));
+		return search.result;
+	}
+
+	@Override
+	public long solve(Problem problem, Checkpoint checkpoint) {
+		check(problem, checkpoint);
+		if (isDegenerate(problem)) {
+			return 0L;
+		}
+		final Search search = new Search(false, null, checkpoint, tracker(problem));
+		search.newTask(Step.initial(problem, search.job));
+		try {
+			return await(search.result);
+		} finally {
+			checkpoint.flush();
+		}
+	}
+
+	/** {@inheritDoc} This implementation counts the subtrees in parallel, each one in a single task. */
+	@Override
+	public SolutionGenerator generator(Problem problem) {
+		if (isDegenerate(problem)) {
+			return super.generator(problem);
+		}
+		final Job job = new Job();
+		final CompletableFuture<Void> done = track(bind(new CompletableFuture<>(), job));
+		final BitboardSearch search = BitboardSearch.of(problem).setJob(job);
+		final long[] counts = new long[search.getPositions()];
+		final List<CompletableFuture<Void>> tasks = Lists.newArrayList();
+		for (int i = 0; i < counts.length; i++) {
+			if (search.push(i)) {
+				final int index = i;
+				final BitboardSearch subtree = search.copy();
+				try {
+					tasks.add(CompletableFuture.runAsync(() -> counts[index] = subtree.count(), executor));
+				} catch (RejectedExecutionException e) {
+					done.cancel(false);
+					throw e;
+				}
+				search.pop();
+			}
+		}
+		CompletableFuture.allOf(tasks.toArray(new CompletableFuture<?>[tasks.size()])).whenComplete((v, t) -> {
+			if (t != null) {
+				done.completeExceptionally(t);
+			} else {
+				done.complete(null);
+			}
+		});
+		// Completing the tasks publishes their counts
+		await(done);
+		return new SolutionGenerator(problem, counts);
+	}
+
+	/**
+	 * {@inheritDoc} The tasks already running stop at their next cancellation poll, and those still
+	 * queued are dropped, so the searches in progress are completed here with a
+	 * {@link java.util.concurrent.CancellationException}.
+	 */
+	@Override
+	public void close() {
+		executor.shutdownNow();
+		for (CompletableFuture<?> result : running) {
+			result.cancel(false);
 		}
-		return s.getCount();
 	}
 
-	private Search solve(Problem problem, boolean save) {
-		checkNotNull(problem, "The problem must be provided");
-		// Degenerate cases
-		final int n = problem.getPieces().size();
-		if (n == 0 || n > problem.getSize().getPositions()) {
+	/**
+	 * Tracks the result of a search in progress until it is completed. If the solver is already closed
+	 * the result is cancelled.
+	 */
+	private <T> CompletableFuture<T> track(CompletableFuture<T> result) {
+		running.add(result);
+		result.whenComplete((v, t) -> running.remove(result));
+		// Checked after adding the result, so that it is cancelled either here or by close
+		if (executor.isShutdown()) {
+			result.cancel(false);
+		}
+		return result;
+	}
+
+	/** Returns the tracker needed to count the nodes of a search ({@code null} if not needed). */
+	private ProgressTracker tracker(Problem problem) {
+		return metrics != SolverMetrics.NONE ? ProgressTracker.of(problem) : null;
+	}
+
+	/** Starts a search, returning {@code null} for degenerate cases. */
+	private Search start(Problem problem, boolean save, Consumer<Solution> pipe) {
+		if (isDegenerate(problem)) {
 			return null;
 		}
-		final Step initial = Step.initial(problem);
-		final Search search = new Search(save);
-		search.newTask(initial);
-		search.await();
+		final Search search = new Search(save, pipe, null, tracker(problem));
+		search.newTask(Step.initial(problem, search.job));
 		return search;
 	}
 
 	private final class Search {
+		/** Job shared by the tasks of the search. */
+		private final Job job = new Job();
 		/** Solution count. */
 		private final GlobalCounter counter = new GlobalCounter();
 		/** Solution aggregator. */
 		private final GlobalAggregator solutions;
-		/** Completion service. */
-		private final CompletionService<Integer> tasks;
-		/** Task count. */
-		private final AtomicInteger count = new AtomicInteger(0);
+		/** Solution pipe for streaming searches. */
+		private final Consumer<Solution> pipe;
+		/** Checkpoint of the first placement subtrees (may be {@code null}). */
+		private final Checkpoint checkpoint;
+		/** Progress tracker (may be {@code null}). */
+		private final ProgressTracker tracker;
+		/** Number of tasks submitted and not finished yet. */
+		private final AtomicInteger pending = new AtomicInteger(0);
+		/** Search result, completed when the last task finishes. Cancelling it cancels the job. */
+		private final CompletableFuture<Long> result = track(bind(new CompletableFuture<>(), job));
+		/** Start time (ns). */
+		private final long start = System.nanoTime();
 
-		Search(boolean save) {
-			this.tasks = new ExecutorCompletionService<Integer>(executor);
+		Search(boolean save, Consumer<Solution> pipe, Checkpoint checkpoint, ProgressTracker tracker) {
 			this.solutions = save ? new GlobalAggregator() : null;
+			this.pipe = pipe;
+			this.checkpoint = checkpoint;
+			this.tracker = tracker;
+			if (checkpoint != null) {
+				counter.accept(checkpoint.getCount());
+			}
+			metrics.solveStarted();
+			result.whenComplete((count, t) -> metrics.solveFinished(System.nanoTime() - start,
+					tracker != null ? tracker.getNodes() : 0L, t == null ? count : counter.getCount(), t == null));
 		}
 
 		/** Generate a new task to process a non-final step. */
 		void newTask(final Step step) {
-			final Task task = new Task(step);
-			tasks.submit(task);
-		}
-
-		/** Awaits for the solution. */
-		void await() {
-			int taken = 0;
+			// Tasks are counted when created, before their parent is finished.
+			pending.incrementAndGet();
 			try {
-				while (taken < count.get()) {
-					@SuppressWarnings("unused")
-					final Future<Integer> id = tasks.take();
-					taken++;
-				}
-			} catch (Exception e) {
-				throw new RuntimeException(e);
+				executor.execute(new Task(step));
+			} catch (RejectedExecutionException e) {
+				// The solver has been closed
+				pending.decrementAndGet();
+				result.cancel(false);
+				throw e;
 			}
 		}
 
-		/** Returns the solution count. */
-		int getCount() {
-			return counter.getCount();
-		}
-
 		/** Returns the solution through a method that safely publishes the mutable list. */
 		List<Solution> getSolutions() {
 			return solutions != null ? solutions.getSolutions() : ImmutableList.of();
 		}
 
-		private final class Task implements Callable<Integer> {
-			/** Task id. */
-			private final int id = count.incrementAndGet();
+		private final class Task implements Runnable {
 			/** Step to process. */
 			private final Step step;
 
@@ -137,30 +288,79 @@ final class DefaultSolver implements Solver {
 			}
 
 			@Override
-			public Integer call() throws Exception {
-				for (Step next : step.nextSteps(counter, solutions)) {
-					newTask(next);
+			public void run() {
+				try {
+					job.checkNotCancelled();
+					// Solutions are aggregated into the global ones once per task.
+					final List<Solution> local = solutions != null ? Lists.newLinkedList() : null;
+					// The subtrees of the first placements are searched in a single task each
+					final SolutionCounter subtree = checkpoint != null && step.getDepth() == 1 ? new LocalCounter()
+							: counter;
+					// Nodes are only counted below the first placement, in a single task each
+					final ProgressTracker.Meter meter = tracker != null && step.getDepth() == 1 ? tracker.meter() : null;
+					final long nodes = meter != null ? meter.getNodes() : 0L;
+					final long started = meter != null ? System.nanoTime() : 0L;
+					for (Step next : step.nextSteps(subtree, local != null ? local::add : pipe, meter)) {
+						if (checkpoint == null || !checkpoint.isCompleted(next.getFirstPlaced())) {
+							newTask(next);
+						}
+					}
+					if (local != null) {
+						solutions.accept(local);
+					}
+					if (subtree != counter) {
+						counter.accept(subtree.getCount());
+						checkpoint.complete(step.getFirstPlaced(), subtree.getCount());
+					}
+					if (meter != null) {
+						meter.publish();
+						tracker.complete(step.getFirstPlaced(), meter.getNodes() - nodes);
+						metrics.taskFinished(System.nanoTime() - started, meter.getNodes() - nodes);
+					}
+				} catch (Throwable t) {
+					result.completeExceptionally(t);
+				} finally {
+					if (StatsRecorder.ENABLED) {
+						StatsRecorder.flush();
+					}
+					if (pending.decrementAndGet() == 0) {
+						result.complete(counter.getCount());
+					}
 				}
-				return id;
 			}
 		}
 	}
 
 	/** Global solution count consumer. */
 	private static final class GlobalCounter implements SolutionCounter {
-		private final AtomicInteger count = new AtomicInteger(0);
+		private final AtomicLong count = new AtomicLong(0L);
 
 		@Override
-		public void accept(Integer t) {
+		public void accept(long t) {
 			count.addAndGet(t);
 		}
 
 		@Override
-		public int getCount() {
+		public long getCount() {
 			return count.get();
 		}
 	}
 
+	/** Solution count consumer of a single task. */
+	private static final class LocalCounter implements SolutionCounter {
+		private long count = 0L;
+
+		@Override
+		public void accept(long t) {
+			count += t;
+		}
+
+		@Override
+		public long getCount() {
+			return count;
+		}
+	}
+
 	/** Global solution aggregator. */
 	private static final class GlobalAggregator implements SolutionAggregator {
 		/** Solutions so far. */
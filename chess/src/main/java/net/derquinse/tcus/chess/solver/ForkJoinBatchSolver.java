@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.tcus.chess.solver;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import com.google.common.collect.Maps;
+
+/**
+ * Batch solver based on the work-stealing solver. A bounded number of problems of the batch are
+ * searched at the same time in the shared pool, so workers are kept busy with whole problems
+ * instead of splitting uneven searches, and the search tasks stay few regardless of the batch size.
+ * Problems of the same board size share the cached attack tables and symmetry groups. Counting uses
+ * the board symmetries, unless the problem is supported by a specialized counting engine, in which
+ * case the engine runs in the same pool, so the batch never uses more threads than requested.
+ * @author Andres Rodriguez
+ */
+final class ForkJoinBatchSolver implements BatchSolver {
+	/** Problems searched at the same time, per thread. */
+	private static final int PROBLEMS_PER_THREAD = 2;
+
+	/** Underlying solver, owning the pool. */
+	private final AbstractSolver solver;
+	/** Maximum number of problems searched at the same time. */
+	private final int maxProblems;
+
+	/** Constructor. */
+	ForkJoinBatchSolver(int numThreads) {
+		this(numThreads, CountingEngines.DEFAULT);
+	}
+
+	/** Constructor. */
+	ForkJoinBatchSolver(int numThreads, CountingEngines engines) {
+		checkArgument(numThreads > 0, "The number of threads must be at least 1");
+		final ForkJoinSolver search = new ForkJoinSolver(numThreads, true);
+		// Specialized counts run in the same pool as the searches
+		this.solver = new SpecializedSolver(search, engines, search.getPool());
+		this.maxProblems = numThreads * PROBLEMS_PER_THREAD;
+	}
+
+	@Override
+	public long solve(Iterable<Problem> problems, BatchSink sink) {
+		checkNotNull(problems, "The problems must be provided");
+		checkNotNull(sink, "The solution count sink must be provided");
+		final BlockingQueue<Item> solved = new LinkedBlockingQueue<>();
+		final Map<Integer, CompletableFuture<Long>> searching = Maps.newHashMap();
+		final Iterator<Problem> it = problems.iterator();
+		int index = 0;
+		long total = 0L;
+		try {
+			while (it.hasNext() || !searching.isEmpty()) {
+				while (searching.size() < maxProblems && it.hasNext()) {
+					final Item s = new Item(index++, checkNotNull(it.next(), "The problems cannot be null"));
+					searching.put(s.index, s.result);
+					s.result.whenComplete((c, t) -> solved.add(s));
+				}
+				final Item s = solved.take();
+				searching.remove(s.index);
+				final long count = AbstractSolver.await(s.result);
+				total += count;
+				sink.accept(s.index, s.problem, count);
+			}
+			return total;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new CancellationException("Interrupted while waiting for the solutions");
+		} finally {
+			// Only non-empty if the batch has been abandoned
+			for (CompletableFuture<Long> f : searching.values()) {
+				f.cancel(true);
+			}
+		}
+	}
+
+	@Override
+	public void close() {
+		solver.close();
+	}
+
+	/** Problem of the batch being searched. */
+	private final class Item {
+		/** Index in the batch. */
+		private final int index;
+		/** Problem. */
+		private final Problem problem;
+		/** Search result. */
+		private final CompletableFuture<Long> result;
+
+		/** Constructor. */
+		Item(int index, Problem problem) {
+			this.index = index;
+			this.problem = problem;
+			this.result = solver.submit(problem);
+		}
+	}
+
+}
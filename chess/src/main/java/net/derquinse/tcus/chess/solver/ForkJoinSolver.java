@@ -0,0 +1,350 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.tcus.chess.solver;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Multiset;
+
+/**
+ * Work-stealing solver. The search is split into fork-join tasks at any depth, but only while the
+ * worker has few queued tasks (so idle workers have something to steal); otherwise subtrees are
+ * searched sequentially with the {@link BitboardSearch} engine. Counts and solutions are reduced
+ * through task joins, so workers do not share any mutable state.
+ * <p>
+ * In symmetric mode, solution counts are computed placing first the pieces of the kind with fewer
+ * copies (the anchor), and only the sets of anchor positions that are canonical representatives of
+ * their orbits under the board symmetries are searched, weighting their counts by the orbit size.
+ * If the anchor kind has too many copies the regular search is used.
+ * No solution needs to be kept, and the search is reduced up to the order of the symmetry group.
+ * Solution lists are always obtained by full enumeration.
+ * <p>
+ * If a transposition table is provided, counting searches memoize subtree counts in it. The order of
+ * the pieces is selectable, except for the anchor pieces in symmetric mode.
+ * <p>
+ * Checkpointed solves get a task per subtree not completed yet, recorded when the task finishes.
+ * They always use the {@link BitboardSearch} default order and no symmetry reduction, as subtrees
+ * are identified by the placements of the first piece in that order.
+ * @author Andres Rodriguez
+ */
+final class ForkJoinSolver extends AbstractSolver {
+	/** Maximum number of surplus queued tasks of a worker for a task to be split. */
+	private static final int SURPLUS_THRESHOLD = 2;
+	/** Tasks with this number of pieces left or less are never split. */
+	private static final int SEQUENTIAL_PIECES = 2;
+	/**
+	 * Maximum number of anchor pieces for symmetry reduction. With more, enumerating and checking the
+	 * anchor placements costs more than the search it saves.
+	 */
+	private static final int MAX_ANCHOR_PIECES = 2;
+
+	/** Fork-join pool. */
+	private final ForkJoinPool pool;
+	/** Whether to use symmetry reduction when counting. */
+	private final boolean symmetric;
+	/** Transposition table for counting searches (may be {@code null}). */
+	private final TranspositionTable memo;
+	/** Piece order. */
+	private final PieceOrder order;
+
+	/** Constructor. */
+	ForkJoinSolver(int numThreads, boolean symmetric) {
+		this(numThreads, symmetric, null, PieceOrder.FIXED);
+	}
+
+	/** Constructor. */
+	ForkJoinSolver(int numThreads, boolean symmetric, TranspositionTable memo, PieceOrder order) {
+		checkArgument(numThreads > 0, "The number of threads must be at least 1");
+		this.pool = new ForkJoinPool(numThreads);
+		this.symmetric = symmetric;
+		this.memo = memo;
+		this.order = checkNotNull(order, "The piece order must be provided");
+	}
+
+	@Override
+	public List<Solution> solveAndGet(Problem problem) {
+		if (isDegenerate(problem)) {
+			return ImmutableList.of();
+		}
+		final Job job = new Job();
+		final SearchTask task = new SearchTask(BitboardSearch.of(problem, order).setJob(job), true, null);
+		await(start(task, job));
+		return task.solutions;
+	}
+
+	@Override
+	public long solve(Problem problem, SolutionSink sink) {
+		checkNotNull(sink, "The solution sink must be provided");
+		if (isDegenerate(problem)) {
+			return 0L;
+		}
+		final Job job = new Job();
+		final SolutionPipe pipe = new SolutionPipe();
+		final Future<Long> result = start(new SearchTask(BitboardSearch.of(problem, order).setJob(job), false, pipe), job);
+		try {
+			pipe.drain(result::isDone, sink);
+		} catch (RuntimeException e) {
+			result.cancel(true);
+			throw e;
+		}
+		return await(result);
+	}
+
+	@Override
+	public CompletableFuture<Long> submit(Problem problem) {
+		if (isDegenerate(problem)) {
+			return CompletableFuture.completedFuture(0L);
+		}
+		final Job job = new Job();
+		if (symmetric) {
+			return start(new SymmetricTask(problem, job, memo, order), job);
+		}
+		return start(new SearchTask(BitboardSearch.of(problem, order).setJob(job).setMemo(memo), false, null), job);
+	}
+
+	@Override
+	public long solve(Problem problem, Checkpoint checkpoint) {
+		check(problem, checkpoint);
+		if (isDegenerate(problem)) {
+			return 0L;
+		}
+		final Job job = new Job();
+		try {
+			await(start(new CheckpointTask(BitboardSearch.of(problem).setJob(job).setMemo(memo), checkpoint), job));
+		} finally {
+			checkpoint.flush();
+		}
+		return checkpoint.getCount();
+	}
+
+	/** Returns the fork-join pool, so that other work of the same solver can share its threads. */
+	ForkJoinPool getPool() {
+		return pool;
+	}
+
+	@Override
+	public void close() {
+		pool.shutdownNow();
+	}
+
+	/** Starts a root task in the pool, returning a future for its count bound to the provided job. */
+	private CompletableFuture<Long> start(CountingTask task, Job job) {
+		return bind(CompletableFuture.supplyAsync(() -> {
+			task.invoke();
+			return task.count;
+		}, pool), job);
+	}
+
+	/** Base class for tasks that count solutions. */
+	@SuppressWarnings("serial")
+	private static abstract class CountingTask extends RecursiveAction {
+		/** Solution count. */
+		long count = 0L;
+	}
+
+	/** Root task for symmetric mode counting. */
+	@SuppressWarnings("serial")
+	private static final class SymmetricTask extends CountingTask {
+		/** Problem to solve. */
+		private final Problem problem;
+		/** Job the task belongs to. */
+		private final Job job;
+		/** Transposition table (may be {@code null}). */
+		private final TranspositionTable memo;
+		/** Piece order for the fallback search. */
+		private final PieceOrder order;
+
+		/** Constructor. */
+		SymmetricTask(Problem problem, Job job, TranspositionTable memo, PieceOrder order) {
+			this.problem = problem;
+			this.job = job;
+			this.memo = memo;
+			this.order = order;
+		}
+
+		@Override
+		protected void compute() {
+			final Multiset<Piece> pieces = problem.getPieces();
+			final Piece anchor = pieces.elementSet().stream()
+					.min(Comparator.comparing((Piece p) -> pieces.count(p)).thenComparing(p -> p.getSearchOrder())).get();
+			final int k = pieces.count(anchor);
+			if (k > MAX_ANCHOR_PIECES) {
+				final SearchTask task = new SearchTask(BitboardSearch.of(problem, order).setJob(job).setMemo(memo), false, null);
+				task.invoke();
+				count = task.count;
+				return;
+			}
+			final List<Piece> order = Lists.newArrayList(Collections.nCopies(k, anchor));
+			pieces.stream().filter(p -> p != anchor).sorted(Comparator.comparing(p -> p.getSearchOrder()))
+					.forEachOrdered(order::add);
+			final BitboardSearch search = BitboardSearch.of(problem.getSize(), order).setJob(job).setMemo(memo);
+			final BoardSymmetry symmetry = BoardSymmetry.of(problem.getSize());
+			final List<SearchTask> subtasks = Lists.newArrayList();
+			final List<Integer> weights = Lists.newArrayList();
+			enumerate(search, k, symmetry, subtasks, weights);
+			invokeAll(subtasks);
+			for (int i = 0; i < subtasks.size(); i++) {
+				count += weights.get(i) * subtasks.get(i).count;
+			}
+		}
+
+		/** Enumerates the canonical anchor placements, creating a weighted task for each. */
+		private void enumerate(BitboardSearch search, int k, BoardSymmetry symmetry, List<SearchTask> subtasks,
+				List<Integer> weights) {
+			job.checkNotCancelled();
+			if (search.getDepth() == k) {
+				final int[] indexes = new int[k];
+				for (int i = 0; i < k; i++) {
+					indexes[i] = search.getPlaced(i);
+				}
+				final int weight = symmetry.getCanonicalOrbitSize(indexes);
+				if (weight > 0) {
+					subtasks.add(new SearchTask(search.copy(), false, null));
+					weights.add(weight);
+				}
+				return;
+			}
+			for (int i = 0; i < search.getPositions(); i++) {
+				if (search.push(i)) {
+					enumerate(search, k, symmetry, subtasks, weights);
+					search.pop();
+				}
+			}
+		}
+	}
+
+	/** Root task for checkpointed counting, with a subtask per subtree not completed yet. */
+	@SuppressWarnings("serial")
+	private static final class CheckpointTask extends CountingTask {
+		/** Search engine with no pieces placed. */
+		private final BitboardSearch search;
+		/** Checkpoint. */
+		private final Checkpoint checkpoint;
+
+		/** Constructor. */
+		CheckpointTask(BitboardSearch search, Checkpoint checkpoint) {
+			this.search = search;
+			this.checkpoint = checkpoint;
+		}
+
+		@Override
+		protected void compute() {
+			final List<SubtreeTask> subtasks = Lists.newArrayList();
+			for (int i = 0; i < search.getPositions(); i++) {
+				if (!checkpoint.isCompleted(i) && search.push(i)) {
+					subtasks.add(new SubtreeTask(i, search.copy(), checkpoint));
+					search.pop();
+				}
+			}
+			invokeAll(subtasks);
+			for (SubtreeTask t : subtasks) {
+				count += t.count;
+			}
+		}
+	}
+
+	/** Task that searches a subtree of a checkpoint, recording it when completed. */
+	@SuppressWarnings("serial")
+	private static final class SubtreeTask extends CountingTask {
+		/** Index of the position of the first piece. */
+		private final int index;
+		/** Search engine with the first piece placed, owned by the task. */
+		private final BitboardSearch search;
+		/** Checkpoint. */
+		private final Checkpoint checkpoint;
+
+		/** Constructor. */
+		SubtreeTask(int index, BitboardSearch search, Checkpoint checkpoint) {
+			this.index = index;
+			this.search = search;
+			this.checkpoint = checkpoint;
+		}
+
+		@Override
+		protected void compute() {
+			final SearchTask task = new SearchTask(search, false, null);
+			task.invoke();
+			count = task.count;
+			checkpoint.complete(index, count);
+		}
+	}
+
+	/** Task that searches the subtree of the placed pieces of its own engine. */
+	@SuppressWarnings("serial")
+	private static final class SearchTask extends CountingTask {
+		/** Search engine, owned by the task. */
+		private final BitboardSearch search;
+		/** Found solutions ({@code null} if not requested). */
+		private final List<Solution> solutions;
+		/** Solution pipe for streaming searches ({@code null} if not requested). */
+		private final Consumer<Solution> pipe;
+
+		/** Constructor. */
+		SearchTask(BitboardSearch search, boolean save, Consumer<Solution> pipe) {
+			this.search = search;
+			this.solutions = save ? Lists.newArrayList() : null;
+			this.pipe = pipe;
+		}
+
+		/** Returns whether the task should be split. */
+		private boolean split() {
+			return search.getPieces() - search.getDepth() > SEQUENTIAL_PIECES
+					&& getSurplusQueuedTaskCount() <= SURPLUS_THRESHOLD;
+		}
+
+		@Override
+		protected void compute() {
+			if (!split()) {
+				if (solutions != null) {
+					count = search.collect(solutions::add);
+				} else if (pipe != null) {
+					count = search.collect(pipe);
+				} else {
+					count = search.count();
+				}
+				return;
+			}
+			final List<SearchTask> subtasks = Lists.newArrayList();
+			final boolean save = solutions != null;
+			for (int i = 0; i < search.getPositions(); i++) {
+				if (search.push(i)) {
+					subtasks.add(new SearchTask(search.copy(), save, pipe));
+					search.pop();
+				}
+			}
+			invokeAll(subtasks);
+			for (SearchTask t : subtasks) {
+				count += t.count;
+				if (save) {
+					solutions.addAll(t.solutions);
+				}
+			}
+		}
+	}
+
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.tcus.chess.solver;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Thread-safe histogram with a bucket per power of two, that does not allocate memory when
+ * recording values.
+ * @author Andres Rodriguez
+ */
+final class Histogram {
+	/** Buckets. */
+	private final AtomicLongArray buckets = new AtomicLongArray(Long.SIZE);
+
+	/** Constructor. */
+	Histogram() {
+	}
+
+	/** Records a value. */
+	void record(long value) {
+		buckets.incrementAndGet(value < 1L ? 0 : Long.SIZE - Long.numberOfLeadingZeros(value));
+	}
+
+	/** Returns the number of recorded values. */
+	long getCount() {
+		long count = 0L;
+		for (int i = 0; i < buckets.length(); i++) {
+			count += buckets.get(i);
+		}
+		return count;
+	}
+
+	/** Returns a copy of the buckets, up to the last non-empty one. */
+	long[] getBuckets() {
+		int n = buckets.length();
+		while (n > 0 && buckets.get(n - 1) == 0L) {
+			n--;
+		}
+		final long[] copy = new long[n];
+		for (int i = 0; i < n; i++) {
+			copy[i] = buckets.get(i);
+		}
+		return copy;
+	}
+
+	/** Clears the histogram. */
+	void reset() {
+		for (int i = 0; i < buckets.length(); i++) {
+			buckets.set(i, 0L);
+		}
+	}
+}
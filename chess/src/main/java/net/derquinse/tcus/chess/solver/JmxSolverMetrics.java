@@ -0,0 +1,215 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.tcus.chess.solver;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Solver metrics exposed as a platform MXBean. Counters are atomic and histograms have fixed
+ * buckets, so recording does not allocate memory.
+ * @author Andres Rodriguez
+ */
+public final class JmxSolverMetrics implements SolverMetrics, SolverMXBean {
+	/** Domain of the object names. */
+	public static final String DOMAIN = "net.derquinse.tcus.chess";
+
+	/** Pool of the solver ({@code null} until attached). */
+	private volatile Pool pool = null;
+	/** Solves in progress. */
+	private final AtomicInteger active = new AtomicInteger(0);
+	/** Completed solves. */
+	private final AtomicLong completed = new AtomicLong(0L);
+	/** Cancelled or failed solves. */
+	private final AtomicLong abandoned = new AtomicLong(0L);
+	/** Nodes per second of the last finished solve. */
+	private volatile double nodesPerSecond = 0.0;
+	/** Solutions per second of the last finished solve. */
+	private volatile double solutionsPerSecond = 0.0;
+	/** Nodes visited by the search tasks. */
+	private final Histogram taskNodes = new Histogram();
+	/** Duration of the search tasks (µs). */
+	private final Histogram taskTime = new Histogram();
+	/** Duration of the solves (ms). */
+	private final Histogram solveTime = new Histogram();
+	/** Name the bean is registered with ({@code null} if not registered). */
+	private ObjectName name = null;
+
+	/** Creates new metrics, not registered. */
+	public static JmxSolverMetrics create() {
+		return new JmxSolverMetrics();
+	}
+
+	/** Constructor. */
+	private JmxSolverMetrics() {
+	}
+
+	/**
+	 * Registers the metrics in the platform MBean server.
+	 * @param name Value of the name key of the object name, in the {@link #DOMAIN} domain with type
+	 *          {@code Solver}.
+	 * @return This object.
+	 * @throws IllegalStateException if the metrics are already registered or the registration fails.
+	 */
+	public synchronized JmxSolverMetrics register(String name) {
+		checkNotNull(name, "The name must be provided");
+		checkState(this.name == null, "The metrics are already registered as %s", this.name);
+		try {
+			final ObjectName named = new ObjectName(DOMAIN + ":type=Solver,name=" + ObjectName.quote(name));
+			ManagementFactory.getPlatformMBeanServer().registerMBean(this, named);
+			this.name = named;
+		} catch (JMException e) {
+			throw new IllegalStateException("Unable to register the solver metrics", e);
+		}
+		return this;
+	}
+
+	/** Unregisters the metrics from the platform MBean server, if registered. */
+	public synchronized void unregister() {
+		if (name != null) {
+			try {
+				ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+			} catch (JMException e) {
+				// Already unregistered
+			}
+			name = null;
+		}
+	}
+
+	/** Returns the name the metrics are registered with ({@code null} if not registered). */
+	public synchronized ObjectName getName() {
+		return name;
+	}
+
+	@Override
+	public void attach(Pool pool) {
+		checkState(this.pool == null, "The metrics are already attached to a solver");
+		this.pool = checkNotNull(pool, "The pool must be provided");
+	}
+
+	@Override
+	public void solveStarted() {
+		active.incrementAndGet();
+	}
+
+	@Override
+	public void taskFinished(long nanos, long nodes) {
+		taskTime.record(TimeUnit.NANOSECONDS.toMicros(nanos));
+		taskNodes.record(nodes);
+	}
+
+	@Override
+	public void solveFinished(long nanos, long nodes, long solutions, boolean completed) {
+		active.decrementAndGet();
+		(completed ? this.completed : abandoned).incrementAndGet();
+		solveTime.record(TimeUnit.NANOSECONDS.toMillis(nanos));
+		if (nanos > 0L) {
+			nodesPerSecond = nodes * 1e9 / nanos;
+			solutionsPerSecond = solutions * 1e9 / nanos;
+		}
+	}
+
+	@Override
+	public int getActiveSolves() {
+		return active.get();
+	}
+
+	@Override
+	public long getCompletedSolves() {
+		return completed.get();
+	}
+
+	@Override
+	public long getAbandonedSolves() {
+		return abandoned.get();
+	}
+
+	@Override
+	public int getPoolSize() {
+		final Pool p = pool;
+		return p != null ? p.getPoolSize() : 0;
+	}
+
+	@Override
+	public int getActiveThreads() {
+		final Pool p = pool;
+		return p != null ? p.getActiveThreads() : 0;
+	}
+
+	@Override
+	public int getQueuedTasks() {
+		final Pool p = pool;
+		return p != null ? p.getQueuedTasks() : 0;
+	}
+
+	@Override
+	public double getPoolUtilization() {
+		final Pool p = pool;
+		if (p == null || p.getPoolSize() == 0) {
+			return 0.0;
+		}
+		return Math.min(1.0, (double) p.getActiveThreads() / p.getPoolSize());
+	}
+
+	@Override
+	public double getNodesPerSecond() {
+		return nodesPerSecond;
+	}
+
+	@Override
+	public double getSolutionsPerSecond() {
+		return solutionsPerSecond;
+	}
+
+	@Override
+	public long getTasks() {
+		return taskNodes.getCount();
+	}
+
+	@Override
+	public long[] getTaskNodesHistogram() {
+		return taskNodes.getBuckets();
+	}
+
+	@Override
+	public long[] getTaskTimeHistogram() {
+		return taskTime.getBuckets();
+	}
+
+	@Override
+	public long[] getSolveTimeHistogram() {
+		return solveTime.getBuckets();
+	}
+
+	@Override
+	public void reset() {
+		completed.set(0L);
+		abandoned.set(0L);
+		nodesPerSecond = 0.0;
+		solutionsPerSecond = 0.0;
+		taskNodes.reset();
+		taskTime.reset();
+		solveTime.reset();
+	}
+}
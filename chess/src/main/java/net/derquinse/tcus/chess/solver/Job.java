@@ -0,0 +1,58 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.tcus.chess.solver;
+
+import java.util.concurrent.CancellationException;
+
+/**
+ * State shared by all the tasks of a single solve. Tasks poll it to stop working when the solve
+ * has been cancelled, has failed or is no longer needed.
+ * @author Andres Rodriguez
+ */
+final class Job {
+	/** Whether the job has been cancelled. */
+	private volatile boolean cancelled = false;
+
+	/** Constructor. */
+	Job() {
+	}
+
+	/** Cancels the job. Idempotent. */
+	void cancel() {
+		cancelled = true;
+	}
+
+	/** Returns whether the job has been cancelled. */
+	boolean isCancelled() {
+		return cancelled;
+	}
+
+	/**
+	 * Ensures the job has not been cancelled.
+	 * @throws CancellationException if the job has been cancelled.
+	 */
+	void checkNotCancelled() {
+		if (cancelled) {
+			throw new CancellationException("The solve has been cancelled");
+		}
+	}
+
+	@Override
+	public String toString() {
+		return String.format("Job[%s]", cancelled ? "cancelled" : "active");
+	}
+
+}
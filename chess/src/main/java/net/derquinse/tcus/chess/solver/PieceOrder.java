@@ -0,0 +1,37 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.tcus.chess.solver;
+
+/**
+ * Strategies for the order in which the pieces are placed by the bitboard search engine. Pieces of
+ * the same kind are always placed in increasing position order, so the order affects only the
+ * shape and size of the search tree, never the solutions.
+ * @author Andres Rodriguez
+ */
+public enum PieceOrder {
+	/** Fixed search order of the piece kinds: queens, bishops, rooks, knights and kings. */
+	FIXED,
+	/**
+	 * Kinds threatening more positions in the board of the problem first, so that the first placements
+	 * prune more.
+	 */
+	ATTACKS,
+	/**
+	 * At every node, the remaining kind with fewer positions where it may be placed (available and not
+	 * threatening any placed piece). Choosing at every node costs more, but fails earlier.
+	 */
+	MOST_CONSTRAINED;
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.tcus.chess.solver;
+
+/**
+ * Interface for a consumer of solutions in their raw form, as found by the search engine, that
+ * avoids building {@link Solution} objects.
+ * @author Andres Rodriguez
+ */
+@FunctionalInterface
+interface PlacementSink {
+	/**
+	 * Receives a found solution. Arguments are owned by the engine and must not be modified nor kept.
+	 * @param pieces Placed pieces, in placement order. Pieces of the same kind are contiguous when the engine
+	 *          uses a fixed order, but may be interleaved in dynamic mode.
+	 * @param placed Position indexes of the placed pieces (ascending for pieces of the same kind).
+	 */
+	void accept(Piece[] pieces, int[] placed);
+}
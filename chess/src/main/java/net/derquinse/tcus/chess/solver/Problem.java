@@ -18,6 +18,7 @@ package net.derquinse.tcus.chess.solver;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import com.google.common.base.Objects;
 import com.google.common.collect.ImmutableMultiset;
 
 /**
@@ -37,8 +38,13 @@ public final class Problem {
 
 	/** Constructor. */
 	private Problem(Builder builder) {
-		this.size = builder.size;
-		this.pieces = builder.pieces.build();
+		this(builder.size, builder.pieces.build());
+	}
+
+	/** Constructor. */
+	private Problem(Size size, ImmutableMultiset<Piece> pieces) {
+		this.size = size;
+		this.pieces = pieces;
 	}
 
 	/** Returns the board size. */
@@ -51,6 +57,54 @@ public final class Problem {
 		return pieces;
 	}
 
+	/**
+	 * Returns the problem with the same pieces in the transposed board. As every piece threatens the
+	 * same positions in a transposed board, both problems have the same number of solutions.
+	 */
+	public Problem transpose() {
+		return size.isSquare() ? this : new Problem(size.transpose(), pieces);
+	}
+
+	/**
+	 * Returns the canonical form of the problem, that has the same number of solutions: the problem
+	 * itself or its transposition, so that the board has no more rows than columns.
+	 */
+	public Problem getCanonical() {
+		return size.getRows() <= size.getColumns() ? this : transpose();
+	}
+
+	/** Returns a compact textual key of the problem, as in 4x6-K2N1 (pieces in enum order). */
+	String getKey() {
+		final StringBuilder b = new StringBuilder();
+		b.append(size.getRows()).append('x').append(size.getColumns()).append('-');
+		for (Piece p : Piece.values()) {
+			final int n = pieces.count(p);
+			if (n > 0) {
+				b.append(p.getRepresentation()).append(n);
+			}
+		}
+		return b.toString();
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hashCode(size, pieces);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (obj instanceof Problem) {
+			final Problem other = (Problem) obj;
+			return size.equals(other.size) && pieces.equals(other.pieces);
+		}
+		return false;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("Problem[%s]%s", size, pieces);
+	}
+
 	public static final class Builder {
 		/** Board size. */
 		private final Size size;
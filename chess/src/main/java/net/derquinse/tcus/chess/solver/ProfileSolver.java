@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.tcus.chess.solver;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Single-threaded solver for problems with only kings and knights. Solutions are counted with the
+ * line by line dynamic programming of {@link ShortRangeEngine}, so the cost is polynomial in the
+ * length of the board and the number of pieces instead of exponential in the number of pieces.
+ * Solution lists are obtained by full enumeration with the {@link BitboardSearch} engine. Blocking
+ * solves run in the calling thread, and background ones in a single thread owned by the solver.
+ * @author Andres Rodriguez
+ */
+final class ProfileSolver extends AbstractSolver {
+	/** Counting engine. */
+	private final ShortRangeEngine engine = new ShortRangeEngine();
+	/** Executor for background solves. Its thread is only started when needed. */
+	private final ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+			.setDaemon(true).build());
+
+	/** Constructor. */
+	ProfileSolver() {
+	}
+
+	/**
+	 * Checks whether the problem is degenerate or supported.
+	 * @return Whether the problem is degenerate.
+	 * @throws IllegalArgumentException if the problem is not supported.
+	 */
+	private boolean check(Problem problem) {
+		if (isDegenerate(problem)) {
+			return true;
+		}
+		checkArgument(engine.supports(problem), "Only kings and knights on boards up to %s lines wide are supported: %s",
+				ShortRangeEngine.MAX_WIDTH, problem);
+		return false;
+	}
+
+	@Override
+	public long solve(Problem problem) {
+		if (check(problem)) {
+			return 0L;
+		}
+		return engine.count(problem, new Job());
+	}
+
+	/**
+	 * {@inheritDoc} This solver does not checkpoint: the engine counts the whole problem at once, in
+	 * polynomial time, so no subtree is recorded and the checkpoint is only checked.
+	 */
+	@Override
+	public long solve(Problem problem, Checkpoint checkpoint) {
+		check(problem, checkpoint);
+		return solve(problem);
+	}
+
+	@Override
+	public CompletableFuture<Long> submit(Problem problem) {
+		if (check(problem)) {
+			return CompletableFuture.completedFuture(0L);
+		}
+		final Job job = new Job();
+		return bind(CompletableFuture.supplyAsync(() -> engine.count(problem, job), executor), job);
+	}
+
+	@Override
+	public List<Solution> solveAndGet(Problem problem) {
+		if (check(problem)) {
+			return ImmutableList.of();
+		}
+		final List<Solution> solutions = Lists.newArrayList();
+		BitboardSearch.of(problem, PieceOrder.ATTACKS).collect(solutions::add);
+		return solutions;
+	}
+
+	@Override
+	public long solve(Problem problem, SolutionSink sink) {
+		checkNotNull(sink, "The solution sink must be provided");
+		if (check(problem)) {
+			return 0L;
+		}
+		if (sink instanceof SolutionFile.Writer) {
+			return BitboardSearch.of(problem, PieceOrder.ATTACKS).collectPlacements(((SolutionFile.Writer) sink)::accept);
+		}
+		return BitboardSearch.of(problem, PieceOrder.ATTACKS).collect(sink::accept);
+	}
+
+	@Override
+	public void close() {
+		executor.shutdownNow();
+	}
+
+}
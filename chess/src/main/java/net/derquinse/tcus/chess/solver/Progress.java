@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.tcus.chess.solver;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.OptionalLong;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Immutable snapshot of the progress of a solve. The search tree is split into the subtrees rooted
+ * at each placement of the first piece. Solvers that do not track their search only report the
+ * elapsed time (with no subtrees) and, when finished, the solutions.
+ * @author Andres Rodriguez
+ */
+public final class Progress {
+	/** Number of completed subtrees. */
+	private final int completed;
+	/** Number of subtrees (0 if not tracked). */
+	private final int total;
+	/** Number of visited nodes. */
+	private final long nodes;
+	/** Number of found solutions. */
+	private final long solutions;
+	/** Elapsed time (ns). */
+	private final long elapsed;
+	/** Estimated remaining time (ns), or -1 if unknown. */
+	private final long remaining;
+	/** Whether the solve is finished. */
+	private final boolean done;
+
+	/** Constructor. */
+	Progress(int completed, int total, long nodes, long solutions, long elapsed, long remaining, boolean done) {
+		this.completed = completed;
+		this.total = total;
+		this.nodes = nodes;
+		this.solutions = solutions;
+		this.elapsed = elapsed;
+		this.remaining = remaining;
+		this.done = done;
+	}
+
+	/** Returns the number of completed subtrees. */
+	public int getCompleted() {
+		return completed;
+	}
+
+	/** Returns the number of subtrees, 0 if the solver does not track them. */
+	public int getTotal() {
+		return total;
+	}
+
+	/** Returns the number of nodes visited so far, 0 if the solver does not track them. */
+	public long getNodes() {
+		return nodes;
+	}
+
+	/**
+	 * Returns the number of solutions found so far. Solvers that do not track their search only
+	 * report them when finished.
+	 */
+	public long getSolutions() {
+		return solutions;
+	}
+
+	/** Returns the elapsed time in the provided unit. */
+	public long getElapsed(TimeUnit unit) {
+		return checkNotNull(unit, "The time unit must be provided").convert(elapsed, TimeUnit.NANOSECONDS);
+	}
+
+	/** Returns the number of nodes visited per second. */
+	public double getNodesPerSecond() {
+		return elapsed > 0 ? nodes * 1e9 / elapsed : 0.0;
+	}
+
+	/**
+	 * Returns the estimated remaining time in the provided unit, if known. It is estimated from the
+	 * sizes of the pending subtrees, sampled with random descents, and the visiting rate so far.
+	 */
+	public OptionalLong getRemaining(TimeUnit unit) {
+		checkNotNull(unit, "The time unit must be provided");
+		return remaining < 0 ? OptionalLong.empty() : OptionalLong.of(unit.convert(remaining, TimeUnit.NANOSECONDS));
+	}
+
+	/** Returns whether the solve is finished. */
+	public boolean isDone() {
+		return done;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("Progress[%d/%d subtrees, %d nodes, %d solutions, %d ms%s]", completed, total, nodes,
+				solutions, getElapsed(TimeUnit.MILLISECONDS), done ? ", done" : "");
+	}
+}
@@ -0,0 +1,27 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.tcus.chess.solver;
+
+/**
+ * Interface for a receiver of the progress of a solve. Listeners are called periodically from a
+ * thread shared by all solvers, so they should return quickly. Exceptions thrown are ignored.
+ * @author Andres Rodriguez
+ */
+@FunctionalInterface
+public interface ProgressListener {
+	/** Receives the progress of a solve. The last call is done with the final progress. */
+	void progress(Progress progress);
+}
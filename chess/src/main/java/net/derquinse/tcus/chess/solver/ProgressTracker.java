@@ -0,0 +1,290 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.tcus.chess.solver;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Tracker of the progress of a solve. Nodes and solutions are counted by each search thread in its
+ * own {@link Meter}, published every few nodes, so the search threads do not share any counter.
+ * Completed subtrees (those rooted at each placement of the first piece) are recorded once per
+ * subtree. The remaining time is estimated from the sizes of the pending subtrees, sampled with
+ * random descents (Knuth's estimator) the first time a snapshot is taken.
+ * @author Andres Rodriguez
+ */
+final class ProgressTracker {
+	/** Random descents per subtree. */
+	private static final int PROBES = 8;
+	/** Thread shared by all the solvers to report progress. Started when needed. */
+	private static final ScheduledExecutorService REPORTER = Executors.newSingleThreadScheduledExecutor(
+			new ThreadFactoryBuilder().setDaemon(true).setNameFormat("progress-reporter").build());
+
+	/** Problem ({@code null} if the search is not tracked). */
+	private final Problem problem;
+	/** Start time (ns). */
+	private final long start = System.nanoTime();
+	/** Meters of the search threads. */
+	private final List<Meter> meters = new CopyOnWriteArrayList<>();
+	/** Meter of the current thread. */
+	private final ThreadLocal<Meter> meter = ThreadLocal.withInitial(() -> {
+		final Meter m = new Meter();
+		meters.add(m);
+		return m;
+	});
+	/** Whether each subtree is completed, by index of the position of the first piece. */
+	private final boolean[] completed;
+	/** Number of completed subtrees. */
+	private int subtrees = 0;
+	/** Nodes visited in completed subtrees. */
+	private long completedNodes = 0L;
+	/** Estimated number of nodes of each subtree ({@code null} until estimated). */
+	private double[] estimates = null;
+	/** Final solution count, or -1 if not finished. */
+	private long result = -1L;
+
+	/** Creates a tracker for the search of a problem. */
+	static ProgressTracker of(Problem problem) {
+		return new ProgressTracker(checkNotNull(problem, "The problem must be provided"));
+	}
+
+	/** Creates a tracker for a solve whose search is not tracked. */
+	static ProgressTracker untracked() {
+		return new ProgressTracker(null);
+	}
+
+	/** Constructor. */
+	private ProgressTracker(Problem problem) {
+		this.problem = problem;
+		this.completed = new boolean[problem != null ? problem.getSize().getPositions() : 0];
+	}
+
+	/**
+	 * Reports the progress of a solve to a listener periodically, and when the solve is finished.
+	 * @return The provided result.
+	 */
+	CompletableFuture<Long> report(CompletableFuture<Long> result, ProgressListener listener, long period,
+			TimeUnit unit) {
+		check(listener, period, unit);
+		final ScheduledFuture<?> task = REPORTER.scheduleAtFixedRate(() -> {
+			final Progress progress = snapshot();
+			// The final progress is reported once, when the result is completed
+			if (!progress.isDone()) {
+				notify(listener, progress);
+			}
+		}, period, period, unit);
+		result.whenComplete((count, t) -> {
+			task.cancel(false);
+			if (t == null) {
+				finish(count);
+			}
+			REPORTER.execute(() -> notify(listener, snapshot()));
+		});
+		return result;
+	}
+
+	/**
+	 * Checks the arguments of a progress report.
+	 * @throws IllegalArgumentException if the period is not positive.
+	 */
+	static void check(ProgressListener listener, long period, TimeUnit unit) {
+		checkNotNull(listener, "The progress listener must be provided");
+		checkArgument(period > 0, "The period must be > 0");
+		checkNotNull(unit, "The time unit must be provided");
+	}
+
+	/** Notifies a listener, ignoring its exceptions. */
+	private static void notify(ProgressListener listener, Progress progress) {
+		try {
+			listener.progress(progress);
+		} catch (RuntimeException e) {
+			// Ignored
+		}
+	}
+
+	/** Returns the meter of the current thread. */
+	Meter meter() {
+		return meter.get();
+	}
+
+	/** Returns the number of nodes published by the search threads. */
+	long getNodes() {
+		long nodes = 0L;
+		for (Meter m : meters) {
+			nodes += m.published;
+		}
+		return nodes;
+	}
+
+	/** Records a completed subtree. */
+	synchronized void complete(int index, long nodes) {
+		if (!completed[index]) {
+			completed[index] = true;
+			subtrees++;
+			completedNodes += nodes;
+		}
+	}
+
+	/** Records the final solution count. */
+	synchronized void finish(long count) {
+		result = count;
+	}
+
+	/** Returns a snapshot of the progress. Only called from the reporting thread. */
+	private Progress snapshot() {
+		if (problem != null && estimates == null) {
+			// Not synchronized, so search threads completing subtrees are not blocked
+			final double[] sampled = estimate(problem, PROBES, new Random());
+			synchronized (this) {
+				estimates = sampled;
+			}
+		}
+		synchronized (this) {
+			return snapshot(System.nanoTime() - start);
+		}
+	}
+
+	/** Returns a snapshot of the progress with the provided elapsed time. */
+	private Progress snapshot(long elapsed) {
+		long nodes = 0L;
+		long solutions = 0L;
+		for (Meter m : meters) {
+			nodes += m.published;
+			solutions += m.publishedSolutions;
+		}
+		if (result >= 0) {
+			return new Progress(subtrees, completed.length, nodes, result, elapsed, 0L, true);
+		}
+		long remaining = -1L;
+		if (problem != null && nodes > 0) {
+			// Nodes of the pending subtrees, less those already visited in the ones in progress
+			double pending = 0.0;
+			for (int i = 0; i < completed.length; i++) {
+				if (!completed[i]) {
+					pending += estimates[i];
+				}
+			}
+			pending = Math.max(0.0, pending - (nodes - completedNodes));
+			remaining = (long) (pending * elapsed / nodes);
+		}
+		return new Progress(subtrees, completed.length, nodes, solutions, elapsed, remaining, false);
+	}
+
+	/**
+	 * Estimates the number of nodes of the subtree rooted at each placement of the first piece,
+	 * including its root, averaging random descents: the estimate of a descent is the sum, for every
+	 * depth, of the product of the number of children of the nodes visited above it.
+	 */
+	static double[] estimate(Problem problem, int probes, Random random) {
+		final BitboardSearch search = BitboardSearch.of(problem);
+		final int n = search.getPositions();
+		final double[] estimates = new double[n];
+		final int[] children = new int[n];
+		for (int i = 0; i < n; i++) {
+			if (search.push(i)) {
+				double sum = 0.0;
+				for (int p = 0; p < probes; p++) {
+					sum += probe(search, random, children);
+				}
+				estimates[i] = sum / probes;
+				search.pop();
+			}
+		}
+		return estimates;
+	}
+
+	/** Performs a random descent from the current depth, returning its estimate. */
+	private static double probe(BitboardSearch search, Random random, int[] children) {
+		final int depth = search.getDepth();
+		double estimate = 1.0;
+		double weight = 1.0;
+		while (search.getDepth() < search.getPieces()) {
+			int c = 0;
+			for (int i = 0; i < search.getPositions(); i++) {
+				if (search.push(i)) {
+					children[c++] = i;
+					search.pop();
+				}
+			}
+			if (c == 0) {
+				break;
+			}
+			weight *= c;
+			estimate += weight;
+			search.push(children[random.nextInt(c)]);
+		}
+		while (search.getDepth() > depth) {
+			search.pop();
+		}
+		return estimate;
+	}
+
+	/**
+	 * Node and solution counter of a single search thread. Counts are published every few nodes (and
+	 * explicitly), so that they can be read by the reporting thread without slowing down the search.
+	 */
+	static final class Meter {
+		/** Nodes between publications (minus one, a power of two). */
+		private static final long PUBLISH_MASK = (1L << 10) - 1L;
+
+		/** Visited nodes (owner thread only). */
+		private long nodes = 0L;
+		/** Found solutions (owner thread only). */
+		private long solutions = 0L;
+		/** Published visited nodes. */
+		private volatile long published = 0L;
+		/** Published found solutions. */
+		private volatile long publishedSolutions = 0L;
+
+		/** Constructor. */
+		private Meter() {
+		}
+
+		/** Records a visited node. */
+		void node() {
+			if ((++nodes & PUBLISH_MASK) == 0L) {
+				publish();
+			}
+		}
+
+		/** Records a found solution. */
+		void solution() {
+			solutions++;
+		}
+
+		/** Returns the number of visited nodes (owner thread only). */
+		long getNodes() {
+			return nodes;
+		}
+
+		/** Publishes the counts. */
+		void publish() {
+			publishedSolutions = solutions;
+			published = nodes;
+		}
+	}
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.tcus.chess.solver;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Bitwise engine for problems with only queens. Rows of the canonical board (not more rows than
+ * columns) are filled in turn, keeping the attacked columns and diagonals of the next row as words,
+ * so the free positions of a row are found with a few bitwise operations. Rows may be left empty if
+ * there are fewer queens than rows.
+ * @author Andres Rodriguez
+ */
+final class QueenEngine implements CountingEngine {
+	/** Maximum number of columns of the canonical board. */
+	private static final int MAX_COLUMNS = Long.SIZE - 1;
+	/** Number of search nodes between cancellation polls. */
+	private static final int POLL_INTERVAL = 1 << 12;
+
+	/** Constructor. */
+	QueenEngine() {
+	}
+
+	@Override
+	public boolean supports(Problem problem) {
+		final int k = problem.getPieces().count(Piece.QUEEN);
+		return k > 0 && k == problem.getPieces().size() && problem.getCanonical().getSize().getColumns() <= MAX_COLUMNS;
+	}
+
+	@Override
+	public long count(Problem problem, Job job) {
+		checkArgument(supports(problem), "Unsupported problem %s", problem);
+		final Size size = problem.getCanonical().getSize();
+		final int k = problem.getPieces().size();
+		if (k > size.getRows()) {
+			return 0L;
+		}
+		return new Search(size, job).count(0, k, 0L, 0L, 0L);
+	}
+
+	@Override
+	public String toString() {
+		return "QueenEngine";
+	}
+
+	/** State of a single count. */
+	private static final class Search {
+		/** Number of rows. */
+		private final int rows;
+		/** Mask of the board columns. */
+		private final long full;
+		/** Job the count belongs to. */
+		private final Job job;
+		/** Nodes left until the next cancellation poll. */
+		private int poll = POLL_INTERVAL;
+
+		/** Constructor. */
+		Search(Size size, Job job) {
+			this.rows = size.getRows();
+			this.full = (1L << size.getColumns()) - 1;
+			this.job = job;
+		}
+
+		/**
+		 * Counts the placements of the queens left from the provided row, given the columns and the
+		 * diagonals (in both directions) attacked in that row.
+		 */
+		long count(int row, int left, long columns, long down, long up) {
+			if (left == 0) {
+				return 1L;
+			}
+			if (--poll == 0) {
+				poll = POLL_INTERVAL;
+				job.checkNotCancelled();
+			}
+			long count = 0L;
+			// Leave the row empty
+			if (rows - row > left) {
+				count += count(row + 1, left, columns, (down << 1) & full, up >>> 1);
+			}
+			long free = ~(columns | down | up) & full;
+			while (free != 0L) {
+				final long bit = free & -free;
+				free ^= bit;
+				count += count(row + 1, left - 1, columns | bit, ((down | bit) << 1) & full, (up | bit) >>> 1);
+			}
+			return count;
+		}
+	}
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.tcus.chess.solver;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+/**
+ * Reservoir of a uniform random sample of solutions. Each solution gets a pseudo-random key, a hash
+ * of its placements mixed with the seed, and the reservoir keeps those with the smallest keys. As
+ * the key depends only on the solution, the sample is the same whatever the order in which the
+ * solutions are fed, so it does not depend on the solver nor on the scheduling of its threads.
+ * @author Andres Rodriguez
+ */
+final class Reservoir implements SolutionSink {
+	/** Sample size. */
+	private final int k;
+	/** Seed. */
+	private final long seed;
+	/** Sampled solutions, the one with the largest key at the head. */
+	private final PriorityQueue<Entry> sample;
+
+	/** Constructor. */
+	Reservoir(int k, long seed) {
+		checkArgument(k >= 0, "The sample size must be >= 0");
+		this.k = k;
+		this.seed = seed;
+		this.sample = new PriorityQueue<>(Math.max(1, Math.min(k, 1024)), Comparator.reverseOrder());
+	}
+
+	/** SplitMix64 finalizer. */
+	private static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+
+	/** Returns the key of a solution, independent of the order of its placements. */
+	private long key(Solution solution) {
+		long key = 0L;
+		for (Map.Entry<Position, Piece> e : solution.getPositions().entrySet()) {
+			key += mix(seed + e.getKey().getIndex() * 0x9e3779b97f4a7c15L + e.getValue().ordinal());
+		}
+		return mix(key);
+	}
+
+	@Override
+	public void accept(Solution solution) {
+		if (k == 0) {
+			return;
+		}
+		final long key = key(solution);
+		if (sample.size() < k) {
+			sample.add(new Entry(key, solution));
+		} else if (key < sample.peek().key) {
+			sample.poll();
+			sample.add(new Entry(key, solution));
+		}
+	}
+
+	/** Returns the sampled solutions, in random order. */
+	List<Solution> getSolutions() {
+		final List<Entry> entries = Lists.newArrayList(sample);
+		entries.sort(null);
+		final ImmutableList.Builder<Solution> b = ImmutableList.builder();
+		entries.forEach(e -> b.add(e.solution));
+		return b.build();
+	}
+
+	/** Sampled solution with its key. */
+	private static final class Entry implements Comparable<Entry> {
+		/** Key. */
+		private final long key;
+		/** Solution. */
+		private final Solution solution;
+
+		Entry(long key, Solution solution) {
+			this.key = key;
+			this.solution = solution;
+		}
+
+		@Override
+		public int compareTo(Entry o) {
+			return Long.compare(key, o.key);
+		}
+	}
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.tcus.chess.solver;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.OptionalLong;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Thread-safe cache of solution counts. Problems are keyed by their canonical form, so a problem and
+ * its transposition share the same entry. Counts are kept in a bounded in-memory tier, evicting the
+ * least recently used entries, and optionally in an on-disk tier in a local directory, with one
+ * small text file per problem, so that they survive the process.
+ * @author Andres Rodriguez
+ */
+public final class ResultCache {
+	/** In-memory tier. */
+	private final Cache<Problem, Long> memory;
+	/** Directory of the on-disk tier ({@code null} if none). */
+	private final Path directory;
+
+	/**
+	 * Creates a new in-memory cache.
+	 * @param maximumSize Maximum number of entries.
+	 * @throws IllegalArgumentException if the maximum size is less than 1.
+	 */
+	public static ResultCache inMemory(int maximumSize) {
+		return new ResultCache(maximumSize, null);
+	}
+
+	/**
+	 * Creates a new cache backed by a directory, that is created if it does not exist.
+	 * @param maximumSize Maximum number of entries in memory.
+	 * @param directory Directory for the on-disk tier.
+	 * @throws IllegalArgumentException if the maximum size is less than 1.
+	 * @throws IOException if the directory cannot be created.
+	 */
+	public static ResultCache persistent(int maximumSize, Path directory) throws IOException {
+		checkNotNull(directory, "The cache directory must be provided");
+		return new ResultCache(maximumSize, Files.createDirectories(directory));
+	}
+
+	/** Constructor. */
+	private ResultCache(int maximumSize, Path directory) {
+		checkArgument(maximumSize > 0, "The maximum size must be at least 1");
+		this.memory = CacheBuilder.newBuilder().maximumSize(maximumSize).build();
+		this.directory = directory;
+	}
+
+	/**
+	 * Returns the cached solution count of a problem, if any. Entries found on disk are promoted to
+	 * memory.
+	 * @throws UncheckedIOException if the on-disk tier cannot be read.
+	 */
+	public OptionalLong get(Problem problem) {
+		final Problem key = checkNotNull(problem, "The problem must be provided").getCanonical();
+		final Long count = memory.getIfPresent(key);
+		if (count != null) {
+			return OptionalLong.of(count);
+		}
+		if (directory == null) {
+			return OptionalLong.empty();
+		}
+		try {
+			final long stored = Long.parseLong(new String(Files.readAllBytes(file(key)), StandardCharsets.US_ASCII).trim());
+			memory.put(key, stored);
+			return OptionalLong.of(stored);
+		} catch (NoSuchFileException | NumberFormatException e) {
+			// Not stored or not completely written
+			return OptionalLong.empty();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Stores the solution count of a problem.
+	 * @throws IllegalArgumentException if the count is negative.
+	 * @throws UncheckedIOException if the on-disk tier cannot be written.
+	 */
+	public void put(Problem problem, long count) {
+		final Problem key = checkNotNull(problem, "The problem must be provided").getCanonical();
+		checkArgument(count >= 0L, "The solution count must be >= 0");
+		memory.put(key, count);
+		if (directory != null) {
+			// Written to a temporary file first, so that readers never see partial entries.
+			try {
+				final Path tmp = Files.createTempFile(directory, "entry", ".tmp");
+				Files.write(tmp, Long.toString(count).getBytes(StandardCharsets.US_ASCII));
+				Files.move(tmp, file(key), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+
+	/** Removes all the entries of the in-memory tier. */
+	public void invalidateMemory() {
+		memory.invalidateAll();
+	}
+
+	/** Returns the on-disk file for a canonical problem, named as in 4x6-K2N1.count. */
+	private Path file(Problem key) {
+		return directory.resolve(key.getKey() + ".count");
+	}
+
+	@Override
+	public String toString() {
+		return String.format("ResultCache[%d in memory, %s]", memory.size(), directory != null ? directory : "no disk");
+	}
+
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.tcus.chess.solver;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.math.BigInteger;
+
+import com.google.common.math.BigIntegerMath;
+
+/**
+ * Closed form count for problems with only rooks: each rook needs its own row and column, so k
+ * rooks in an r by c board are placed choosing k rows, k columns and a matching between them.
+ * @author Andres Rodriguez
+ */
+final class RookEngine implements CountingEngine {
+	/** Constructor. */
+	RookEngine() {
+	}
+
+	@Override
+	public boolean supports(Problem problem) {
+		final int k = problem.getPieces().count(Piece.ROOK);
+		return k > 0 && k == problem.getPieces().size();
+	}
+
+	@Override
+	public long count(Problem problem, Job job) {
+		checkArgument(supports(problem), "Unsupported problem %s", problem);
+		final int k = problem.getPieces().size();
+		final Size size = problem.getSize();
+		if (k > Math.min(size.getRows(), size.getColumns())) {
+			return 0L;
+		}
+		final BigInteger count = BigIntegerMath.binomial(size.getRows(), k)
+				.multiply(BigIntegerMath.binomial(size.getColumns(), k)).multiply(BigIntegerMath.factorial(k));
+		return count.longValueExact();
+	}
+
+	@Override
+	public String toString() {
+		return "RookEngine";
+	}
+}
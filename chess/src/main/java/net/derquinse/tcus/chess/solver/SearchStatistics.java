@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.tcus.chess.solver;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Arrays;
+
+/**
+ * Immutable snapshot of the statistics of the search of the default solver, by depth and piece
+ * placed at that depth: nodes expanded, candidate positions rejected because the piece would
+ * threaten a placed one, nodes pruned because there are less available positions than pieces left,
+ * and solutions found (at the depth of the last piece). Statistics are only collected if the
+ * {@value #PROPERTY} system property is {@code true} when the solver classes are loaded. Otherwise
+ * the instrumentation is removed by the JIT compiler and the statistics are always empty.
+ * <p>
+ * Statistics are global to the process, and include the searches finished since the last reset.
+ * @author Andres Rodriguez
+ */
+public final class SearchStatistics {
+	/** System property that enables statistics. */
+	public static final String PROPERTY = "net.derquinse.tcus.chess.stats";
+
+	/** Counts, by depth, piece and counter. */
+	private final long[] counts;
+
+	/** Returns whether statistics are enabled. */
+	public static boolean isEnabled() {
+		return StatsRecorder.ENABLED;
+	}
+
+	/** Returns a snapshot of the statistics of the searches finished since the last reset. */
+	public static SearchStatistics get() {
+		return new SearchStatistics(StatsRecorder.totals());
+	}
+
+	/** Clears the statistics. */
+	public static void reset() {
+		StatsRecorder.reset();
+	}
+
+	/** Constructor. Counts beyond the last depth with non-zero counts are discarded. */
+	SearchStatistics(long[] counts) {
+		int n = counts.length;
+		while (n > 0 && counts[n - 1] == 0L) {
+			n--;
+		}
+		final int depths = (n + StatsRecorder.STRIDE - 1) / StatsRecorder.STRIDE;
+		this.counts = Arrays.copyOf(counts, depths * StatsRecorder.STRIDE);
+	}
+
+	/** Returns the number of depths with statistics. */
+	public int getDepths() {
+		return counts.length / StatsRecorder.STRIDE;
+	}
+
+	/** Returns a counter. */
+	private long get(int depth, Piece piece, int counter) {
+		checkArgument(depth >= 0, "The depth must be >= 0");
+		final int i = StatsRecorder.index(depth, checkNotNull(piece, "The piece must be provided"), counter);
+		return i < counts.length ? counts[i] : 0L;
+	}
+
+	/** Returns the number of nodes expanded to place a piece at a depth. */
+	public long getNodes(int depth, Piece piece) {
+		return get(depth, piece, StatsRecorder.NODES);
+	}
+
+	/**
+	 * Returns the number of available positions for a piece at a depth rejected as it would threaten a
+	 * placed piece.
+	 */
+	public long getRejected(int depth, Piece piece) {
+		return get(depth, piece, StatsRecorder.REJECTED);
+	}
+
+	/**
+	 * Returns the number of nodes pruned before placing a piece at a depth for lack of available
+	 * positions.
+	 */
+	public long getPruned(int depth, Piece piece) {
+		return get(depth, piece, StatsRecorder.PRUNED);
+	}
+
+	/** Returns the number of solutions found placing a piece at a depth (the last one). */
+	public long getSolutions(int depth, Piece piece) {
+		return get(depth, piece, StatsRecorder.SOLUTIONS);
+	}
+
+	/** Returns a table with a line per depth and piece with any non-zero counter. */
+	@Override
+	public String toString() {
+		final StringBuilder b = new StringBuilder(String.format("%5s %-6s %15s %15s %15s %15s\n", "Depth", "Piece",
+				"Nodes", "Rejected", "Pruned", "Solutions"));
+		for (int d = 0; d < getDepths(); d++) {
+			for (Piece p : Piece.values()) {
+				final long nodes = getNodes(d, p);
+				final long rejected = getRejected(d, p);
+				final long pruned = getPruned(d, p);
+				final long solutions = getSolutions(d, p);
+				if (nodes != 0L || rejected != 0L || pruned != 0L || solutions != 0L) {
+					b.append(String.format("%5d %-6s %15d %15d %15d %15d\n", d, p, nodes, rejected, pruned, solutions));
+				}
+			}
+		}
+		return b.toString();
+	}
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.tcus.chess.solver;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+/**
+ * Independent subproblem of a problem: the placements of the first pieces, in the order of the
+ * {@link BitboardSearch} engine (the same as {@link Step}'s), are fixed. The solution count of a
+ * problem is the sum of the counts of its shards.
+ * @author Andres Rodriguez
+ */
+final class Shard {
+	/** Maximum size of a serialized shard (bytes). */
+	private static final int MAX_FRAME = 1 << 16;
+
+	/** Problem. */
+	private final Problem problem;
+	/** Positions of the first pieces. */
+	private final int[] prefix;
+
+	/**
+	 * Splits a problem into shards, fixing the placements of as many pieces as needed to obtain at
+	 * least the provided number of shards, but always leaving at least a piece to place. Prefixes
+	 * that cannot be completed with the next piece are discarded, so there may be no shards at all.
+	 */
+	static List<Shard> partition(Problem problem, int target) {
+		final BitboardSearch search = BitboardSearch.of(problem);
+		List<int[]> prefixes = ImmutableList.of(new int[0]);
+		for (int d = 1; d < search.getPieces() && !prefixes.isEmpty() && prefixes.size() < target; d++) {
+			final List<int[]> next = Lists.newArrayList();
+			for (int[] prefix : prefixes) {
+				for (int index : prefix) {
+					search.push(index);
+				}
+				for (int i = 0; i < search.getPositions(); i++) {
+					if (search.push(i)) {
+						final int[] extended = Arrays.copyOf(prefix, d);
+						extended[d - 1] = i;
+						next.add(extended);
+						search.pop();
+					}
+				}
+				for (int j = 0; j < prefix.length; j++) {
+					search.pop();
+				}
+			}
+			prefixes = next;
+		}
+		final List<Shard> shards = Lists.newArrayListWithCapacity(prefixes.size());
+		for (int[] prefix : prefixes) {
+			shards.add(new Shard(problem, prefix));
+		}
+		return shards;
+	}
+
+	/** Constructor. */
+	private Shard(Problem problem, int[] prefix) {
+		this.problem = problem;
+		this.prefix = prefix;
+	}
+
+	/** Returns the problem. */
+	Problem getProblem() {
+		return problem;
+	}
+
+	/** Returns the number of pieces whose placements are fixed. */
+	int getPlaced() {
+		return prefix.length;
+	}
+
+	/**
+	 * Returns the position index of the first piece.
+	 * @throws IllegalStateException if no placement is fixed.
+	 */
+	int getFirst() {
+		checkState(prefix.length > 0, "No placement is fixed");
+		return prefix[0];
+	}
+
+	/**
+	 * Counts the solutions of the shard.
+	 * @throws IllegalArgumentException if the fixed placements are not valid.
+	 * @throws CancellationException if the job is cancelled during the search.
+	 */
+	long count(Job job) {
+		final BitboardSearch search = BitboardSearch.of(problem).setJob(job);
+		checkArgument(prefix.length < search.getPieces(), "Too many placed pieces");
+		for (int index : prefix) {
+			checkArgument(search.push(index), "Invalid placement %s at depth %s", index, search.getDepth());
+		}
+		return search.count();
+	}
+
+	/**
+	 * Writes the shard as a frame: its length followed by the board size, the number of pieces of each
+	 * kind in enum order and the prefix.
+	 */
+	void write(DataOutput out) throws IOException {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final DataOutputStream frame = new DataOutputStream(bytes);
+		frame.writeInt(problem.getSize().getRows());
+		frame.writeInt(problem.getSize().getColumns());
+		for (Piece p : Piece.values()) {
+			frame.writeInt(problem.getPieces().count(p));
+		}
+		frame.writeInt(prefix.length);
+		for (int index : prefix) {
+			frame.writeInt(index);
+		}
+		out.writeInt(bytes.size());
+		out.write(bytes.toByteArray());
+	}
+
+	/**
+	 * Reads a shard written by {@link #write(DataOutput)}. The whole frame is read before validating
+	 * it, so the stream stays aligned if it is not valid.
+	 * @throws IllegalArgumentException if the frame does not represent a valid shard.
+	 * @throws IOException if the frame cannot be read, or its length is not valid (as the stream cannot
+	 *           be realigned).
+	 */
+	static Shard read(DataInput in) throws IOException {
+		final int length = in.readInt();
+		if (length < 0 || length > MAX_FRAME) {
+			throw new IOException(String.format("Invalid shard frame length %d", length));
+		}
+		final byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		try {
+			return parse(new DataInputStream(new ByteArrayInputStream(bytes)));
+		} catch (EOFException e) {
+			throw new IllegalArgumentException("Truncated shard frame");
+		}
+	}
+
+	/** Parses the contents of a shard frame. */
+	private static Shard parse(DataInput in) throws IOException {
+		final int rows = in.readInt();
+		final int columns = in.readInt();
+		final Problem.Builder b = Problem.builder(Size.of(rows, columns));
+		for (Piece p : Piece.values()) {
+			b.addPieces(p, in.readInt());
+		}
+		final Problem problem = b.build();
+		final int n = in.readInt();
+		checkArgument(n >= 0 && n < problem.getPieces().size(), "Invalid number of placed pieces %s", n);
+		final int[] prefix = new int[n];
+		for (int i = 0; i < n; i++) {
+			prefix[i] = in.readInt();
+		}
+		return new Shard(problem, prefix);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("Shard[%s]%s", problem, Arrays.toString(prefix));
+	}
+}
@@ -0,0 +1,338 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.tcus.chess.solver;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.Arrays;
+
+/**
+ * Dynamic programming engine for problems with only kings and knights. These pieces only threaten
+ * positions up to two lines away, so the positions of the canonical board are filled in turn, line
+ * by line along its longest dimension, and the placements of the filled positions are summarized by
+ * the profile of the last two lines (plus one position) that the next positions may threaten. For
+ * each profile, the number of partial placements is kept by number of kings and knights placed, so
+ * the cost is polynomial in the length of the board and the number of pieces.
+ * <p>
+ * At the start of every line a profile and its mirror image have the same completions, as the rest
+ * of the board is symmetric, so they are merged.
+ * @author Andres Rodriguez
+ */
+final class ShortRangeEngine implements CountingEngine {
+	/** Maximum width (shortest dimension) of the board, so that a profile fits in a word. */
+	static final int MAX_WIDTH = (Long.SIZE / 2 - 1) / 2;
+	/** Empty position in a profile. */
+	private static final int EMPTY = 0;
+	/** King in a profile. */
+	private static final int KING = 1;
+	/** Knight in a profile. */
+	private static final int KNIGHT = 2;
+
+	/** Constructor. */
+	ShortRangeEngine() {
+	}
+
+	@Override
+	public boolean supports(Problem problem) {
+		final int n = problem.getPieces().size();
+		return n > 0 && problem.getPieces().count(Piece.KING) + problem.getPieces().count(Piece.KNIGHT) == n
+				&& problem.getCanonical().getSize().getRows() <= MAX_WIDTH;
+	}
+
+	@Override
+	public long count(Problem problem, Job job) {
+		checkArgument(supports(problem), "Unsupported problem %s", problem);
+		final Size size = problem.getCanonical().getSize();
+		return new Count(size.getRows(), size.getColumns(), problem.getPieces().count(Piece.KING), problem.getPieces()
+				.count(Piece.KNIGHT), job).run();
+	}
+
+	@Override
+	public String toString() {
+		return "ShortRangeEngine";
+	}
+
+	/**
+	 * State of a single count. Profiles hold two bits per position, the last filled one in the lowest
+	 * bits, and are kept sorted, with their partial placement counts in a flat array, by profile and
+	 * index kings * (knights + 1) + knights.
+	 * <p>
+	 * Filling a position shifts the oldest one out of the profile, so the profiles sharing the rest
+	 * are merged. Visiting the profiles by their remaining positions (merging the sorted runs of each
+	 * value of the oldest one) the next profiles are produced in order, so no hashing is needed and
+	 * the counts arrays are accessed sequentially.
+	 */
+	private static final class Count {
+		/** Number of bounds per profile. */
+		private static final int BOUNDS = 4;
+
+		/** Width of the lines. */
+		private final int width;
+		/** Number of lines. */
+		private final int length;
+		/** Number of kings. */
+		private final int kings;
+		/** Number of knights. */
+		private final int knights;
+		/** Job the count belongs to. */
+		private final Job job;
+		/** Counts per profile. */
+		private final int stride;
+		/** Number of bits of a profile. */
+		private final int bits;
+		/** Profile positions a king may not be placed next to, by position in the line. */
+		private final long[] kingConflicts;
+		/** Profile positions a knight may not be placed next to, by position in the line. */
+		private final long[] knightConflicts;
+		/** Current profiles. */
+		private long[] profiles = new long[1];
+		/** Current counts. */
+		private long[] counts;
+		/**
+		 * Bounds of the non-zero current counts, by profile: lowest and highest number of kings and
+		 * lowest and highest number of knights.
+		 */
+		private int[] bounds = new int[BOUNDS];
+		/** Number of current profiles. */
+		private int size = 0;
+		/** Next profiles. */
+		private long[] nextProfiles = new long[1];
+		/** Next counts. */
+		private long[] nextCounts;
+		/** Bounds of the non-zero next counts. */
+		private int[] nextBounds = new int[BOUNDS];
+		/** Number of next profiles. */
+		private int nextSize = 0;
+
+		/** Constructor. */
+		Count(int width, int length, int kings, int knights, Job job) {
+			this.width = width;
+			this.length = length;
+			this.kings = kings;
+			this.knights = knights;
+			this.job = job;
+			this.stride = (kings + 1) * (knights + 1);
+			this.bits = 2 * (2 * width + 1);
+			this.kingConflicts = new long[width];
+			this.knightConflicts = new long[width];
+			for (int i = 0; i < width; i++) {
+				// Neighbours: previous in the line and the three adjacent in the previous line
+				long adjacent = field(1, i > 0) | field(width - 1, i + 1 < width) | field(width, true)
+						| field(width + 1, i > 0);
+				// Knight moves: two positions away in the previous line, one in the line before
+				long jumps = field(width - 2, i + 2 < width) | field(width + 2, i >= 2) | field(2 * width - 1, i + 1 < width)
+						| field(2 * width + 1, i > 0);
+				// Kings threaten and are threatened by knights
+				kingConflicts[i] = adjacent | (jumps & mask(KNIGHT));
+				knightConflicts[i] = (adjacent & mask(KING)) | jumps;
+			}
+			this.counts = new long[stride];
+			this.nextCounts = new long[stride];
+		}
+
+		/** Returns the mask of both bits of the position at the provided distance, if it exists. */
+		private static long field(int distance, boolean exists) {
+			return exists && distance > 0 ? 3L << 2 * (distance - 1) : 0L;
+		}
+
+		/** Returns the mask of the provided piece code in every position. */
+		private static long mask(int code) {
+			return 0x5555555555555555L * code;
+		}
+
+		/** Runs the count. */
+		long run() {
+			profiles[0] = 0L;
+			counts[0] = 1L;
+			size = 1;
+			for (int l = 0; l < length; l++) {
+				if (l > 0) {
+					merge();
+				}
+				for (int i = 0; i < width; i++) {
+					job.checkNotCancelled();
+					fill(i);
+				}
+			}
+			long count = 0L;
+			for (int s = 0; s < size; s++) {
+				count = Math.addExact(count, counts[s * stride + stride - 1]);
+			}
+			return count;
+		}
+
+		/** Fills the position of the provided index in the line. */
+		private void fill(int i) {
+			prepare(3 * size);
+			// Sorted runs of profiles by value of the oldest position
+			final int shift = bits - 2;
+			final int[] run = new int[4];
+			final int[] end = new int[4];
+			for (int s = 0, v = 0; v < 4; v++) {
+				run[v] = s;
+				while (s < size && profiles[s] >>> shift == v) {
+					s++;
+				}
+				end[v] = s;
+			}
+			final long rest = (1L << shift) - 1;
+			final int[] group = new int[4];
+			while (true) {
+				// Profiles with the lowest remaining positions
+				long lowest = Long.MAX_VALUE;
+				for (int v = 0; v < 4; v++) {
+					if (run[v] < end[v]) {
+						lowest = Math.min(lowest, profiles[run[v]] & rest);
+					}
+				}
+				if (lowest == Long.MAX_VALUE) {
+					break;
+				}
+				int members = 0;
+				for (int v = 0; v < 4; v++) {
+					if (run[v] < end[v] && (profiles[run[v]] & rest) == lowest) {
+						group[members++] = run[v]++;
+					}
+				}
+				final long profile = lowest << 2;
+				emit(group, members, profile | EMPTY, 0L, 0, 0);
+				emit(group, members, profile | KING, kingConflicts[i], 1, 0);
+				emit(group, members, profile | KNIGHT, knightConflicts[i], 0, 1);
+			}
+			swap();
+		}
+
+		/**
+		 * Adds the next profile for the current profiles of a group, for those that may be followed by
+		 * the provided pieces.
+		 */
+		private void emit(int[] group, int members, long profile, long conflicts, int king, int knight) {
+			if ((king > 0 && kings == 0) || (knight > 0 && knights == 0)) {
+				return;
+			}
+			boolean added = false;
+			for (int m = 0; m < members; m++) {
+				final int s = group[m];
+				if ((profiles[s] & conflicts) != 0L) {
+					continue;
+				}
+				if (bounds[s * BOUNDS] + king > kings || bounds[s * BOUNDS + 2] + knight > knights) {
+					continue;
+				}
+				if (!added) {
+					append(profile);
+					added = true;
+				}
+				add(s, nextSize - 1, king, knight);
+			}
+		}
+
+		/** Merges the profiles that are mirror images at the start of a line. */
+		private void merge() {
+			prepare(size);
+			// The oldest position is not needed by the first one of the line
+			final long lines = (1L << 4 * width) - 1;
+			final long[] keys = new long[size];
+			final Integer[] order = new Integer[size];
+			for (int s = 0; s < size; s++) {
+				final long profile = profiles[s] & lines;
+				keys[s] = Math.min(profile, mirror(profile));
+				order[s] = s;
+			}
+			Arrays.sort(order, (a, b) -> Long.compare(keys[a], keys[b]));
+			for (int s : order) {
+				if (nextSize == 0 || nextProfiles[nextSize - 1] != keys[s]) {
+					append(keys[s]);
+				}
+				add(s, nextSize - 1, 0, 0);
+			}
+			swap();
+		}
+
+		/**
+		 * Adds the non-zero counts of a current profile to those of a next one, placing the provided
+		 * pieces, unless the number of pieces of the problem is exceeded.
+		 * @throws ArithmeticException if a count overflows.
+		 */
+		private void add(int s, int t, int king, int knight) {
+			final int base = s * stride;
+			final int target = t * stride + king * (knights + 1) + knight;
+			final int b = s * BOUNDS;
+			final int minKings = bounds[b];
+			final int lastKings = Math.min(bounds[b + 1], kings - king);
+			final int minKnights = bounds[b + 2];
+			final int lastKnights = Math.min(bounds[b + 3], knights - knight);
+			for (int k = minKings; k <= lastKings; k++) {
+				final int offset = k * (knights + 1);
+				for (int n = minKnights; n <= lastKnights; n++) {
+					nextCounts[target + offset + n] = Math.addExact(nextCounts[target + offset + n], counts[base + offset + n]);
+				}
+			}
+			final int nb = t * BOUNDS;
+			nextBounds[nb] = Math.min(nextBounds[nb], minKings + king);
+			nextBounds[nb + 1] = Math.max(nextBounds[nb + 1], lastKings + king);
+			nextBounds[nb + 2] = Math.min(nextBounds[nb + 2], minKnights + knight);
+			nextBounds[nb + 3] = Math.max(nextBounds[nb + 3], lastKnights + knight);
+		}
+
+		/** Returns the mirror image of a profile of two whole lines. */
+		private long mirror(long profile) {
+			long mirror = 0L;
+			for (int l = 0; l < 2; l++) {
+				for (int i = 0; i < width; i++) {
+					final long code = profile >>> 2 * (l * width + i) & 3L;
+					mirror |= code << 2 * (l * width + width - 1 - i);
+				}
+			}
+			return mirror;
+		}
+
+		/** Prepares the next profiles for up to the provided number of profiles. */
+		private void prepare(int capacity) {
+			if (nextProfiles.length < capacity) {
+				nextProfiles = new long[capacity];
+				nextCounts = new long[capacity * stride];
+				nextBounds = new int[capacity * BOUNDS];
+			}
+			nextSize = 0;
+		}
+
+		/** Appends a next profile, with no placements. */
+		private void append(long profile) {
+			Arrays.fill(nextCounts, nextSize * stride, (nextSize + 1) * stride, 0L);
+			final int b = nextSize * BOUNDS;
+			nextBounds[b] = kings;
+			nextBounds[b + 1] = 0;
+			nextBounds[b + 2] = knights;
+			nextBounds[b + 3] = 0;
+			nextProfiles[nextSize++] = profile;
+		}
+
+		/** Makes the next profiles the current ones. */
+		private void swap() {
+			final long[] p = profiles;
+			final long[] c = counts;
+			final int[] b = bounds;
+			profiles = nextProfiles;
+			counts = nextCounts;
+			bounds = nextBounds;
+			size = nextSize;
+			nextProfiles = p;
+			nextCounts = c;
+			nextBounds = b;
+		}
+	}
+}
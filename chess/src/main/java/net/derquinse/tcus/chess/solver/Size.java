@@ -73,6 +73,11 @@ public final class Size implements Iterable<Position> {
 		return columns;
 	}
 
+	/** Returns the transposed size (rows and columns swapped). */
+	public Size transpose() {
+		return isSquare() ? this : new Size(columns, rows);
+	}
+
 	/** Returns the numbers of positions. */
 	public int getPositions() {
 		return positions;
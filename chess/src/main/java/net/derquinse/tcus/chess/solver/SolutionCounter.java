@@ -15,13 +15,14 @@
  */
 package net.derquinse.tcus.chess.solver;
 
-import java.util.function.Consumer;
+import java.util.function.LongConsumer;
 
 /**
- * Interface for solution counter.
+ * Interface for solution counter. Counts are 64-bit primitives, so no boxing happens when
+ * aggregating them.
  * @author Andres Rodriguez
  */
-interface SolutionCounter extends Consumer<Integer> {
+interface SolutionCounter extends LongConsumer {
 	/** Returns the aggregated count. */
-	int getCount();
+	long getCount();
 }
@@ -0,0 +1,350 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.tcus.chess.solver;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableMultiset;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Multiset;
+
+/**
+ * Memory-mapped file of solutions in a compact fixed-width binary format, providing random access
+ * to the solutions. Each solution is encoded as the position indexes of the placed pieces (one byte
+ * per piece for boards up to 256 positions, two otherwise), grouped by piece kind in search order
+ * and sorted within each kind. The file starts with a header containing the board size, the
+ * pieces and the number of solutions.
+ * @author Andres Rodriguez
+ */
+public final class SolutionFile implements Closeable {
+	/** Magic number. */
+	private static final int MAGIC = 0x54435346;
+	/** Format version. */
+	private static final short VERSION = 1;
+	/** Approximate size of each mapped region. */
+	private static final int CHUNK_BYTES = 1 << 26;
+
+	/**
+	 * Creates a new solution file, that must be closed after all solutions have been written.
+	 * @param path File to create (overwritten if it exists).
+	 * @param problem Problem the solutions belong to.
+	 * @return A writer that can be used as a solution sink.
+	 */
+	public static Writer create(Path path, Problem problem) throws IOException {
+		checkNotNull(path, "The file must be provided");
+		checkNotNull(problem, "The problem must be provided");
+		return new Writer(path, new Layout(problem.getSize(), problem.getPieces()));
+	}
+
+	/**
+	 * Opens an existing solution file.
+	 * @param path File to open.
+	 * @return The opened file.
+	 * @throws IOException if an I/O error occurs or the file is not a valid solution file.
+	 */
+	public static SolutionFile open(Path path) throws IOException {
+		checkNotNull(path, "The file must be provided");
+		return new SolutionFile(FileChannel.open(path, StandardOpenOption.READ));
+	}
+
+	/** File layout. */
+	private final Layout layout;
+	/** Number of solutions. */
+	private final long count;
+	/** Mapped regions. */
+	private final List<MappedByteBuffer> chunks = Lists.newArrayList();
+
+	/** Constructor. The channel is closed after mapping the file. */
+	private SolutionFile(FileChannel channel) throws IOException {
+		try (FileChannel c = channel) {
+			final ByteBuffer fixed = read(c, 0L, Integer.BYTES + Short.BYTES + 2 * Integer.BYTES + 1);
+			if (fixed.getInt() != MAGIC || fixed.getShort() != VERSION) {
+				throw new IOException("Not a solution file");
+			}
+			final Size size = Size.of(fixed.getInt(), fixed.getInt());
+			final int kinds = fixed.get();
+			final ByteBuffer variable = read(c, fixed.capacity(), kinds * (1 + Integer.BYTES) + Long.BYTES);
+			final ImmutableMultiset.Builder<Piece> pieces = ImmutableMultiset.builder();
+			for (int i = 0; i < kinds; i++) {
+				final int ordinal = variable.get();
+				if (ordinal < 0 || ordinal >= Piece.values().length) {
+					throw new IOException("Invalid piece in solution file");
+				}
+				pieces.addCopies(Piece.values()[ordinal], variable.getInt());
+			}
+			this.layout = new Layout(size, pieces.build());
+			this.count = variable.getLong();
+			if (c.size() < layout.header + count * layout.recordSize) {
+				throw new IOException("Truncated solution file");
+			}
+			for (long first = 0; first < count; first += layout.recordsPerChunk) {
+				final long records = Math.min(layout.recordsPerChunk, count - first);
+				chunks.add(c.map(MapMode.READ_ONLY, layout.header + first * layout.recordSize, records * layout.recordSize));
+			}
+		}
+	}
+
+	/** Reads a header section. */
+	private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+		final ByteBuffer buffer = ByteBuffer.allocate(length);
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position + buffer.position()) < 0) {
+				throw new IOException("Truncated solution file header");
+			}
+		}
+		buffer.flip();
+		return buffer;
+	}
+
+	/** Returns the board size. */
+	public Size getSize() {
+		return layout.size;
+	}
+
+	/** Returns the placed pieces. */
+	public ImmutableMultiset<Piece> getPieces() {
+		return layout.pieces;
+	}
+
+	/** Returns the number of solutions in the file. */
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * Decodes a solution.
+	 * @param index Solution index.
+	 * @return The requested solution.
+	 * @throws IndexOutOfBoundsException if the index is not valid.
+	 */
+	public Solution get(long index) {
+		if (index < 0 || index >= count) {
+			throw new IndexOutOfBoundsException(String.format("Invalid solution index %d", index));
+		}
+		final ByteBuffer chunk = chunks.get((int) (index / layout.recordsPerChunk));
+		final int offset = (int) (index % layout.recordsPerChunk) * layout.recordSize;
+		final AttackTable table = AttackTable.of(layout.size);
+		final ImmutableMap.Builder<Position, Piece> b = ImmutableMap.builder();
+		for (int i = 0; i < layout.order.length; i++) {
+			b.put(table.getPosition(layout.getIndex(chunk, offset + i * layout.width)), layout.order[i]);
+		}
+		return Solution.of(layout.size, b.build());
+	}
+
+	/** Mapped regions are released when garbage collected. */
+	@Override
+	public void close() {
+		chunks.clear();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("SolutionFile[%s][%s](%d)", layout.size, layout.pieces, count);
+	}
+
+	/** File layout for a problem. */
+	private static final class Layout {
+		/** Board size. */
+		private final Size size;
+		/** Pieces. */
+		private final ImmutableMultiset<Piece> pieces;
+		/** Piece kinds, in search order. */
+		private final Piece[] kinds;
+		/** Piece of each index of a record. */
+		private final Piece[] order;
+		/** Bytes per position index. */
+		private final int width;
+		/** Bytes per record. */
+		private final int recordSize;
+		/** Header size. */
+		private final int header;
+		/** Records per mapped region. */
+		private final long recordsPerChunk;
+
+		Layout(Size size, Multiset<Piece> pieces) {
+			this.size = size;
+			this.pieces = ImmutableMultiset.copyOf(pieces);
+			this.kinds = pieces.elementSet().stream().sorted(Comparator.comparing(p -> p.getSearchOrder()))
+					.toArray(Piece[]::new);
+			this.order = Arrays.stream(kinds).flatMap(p -> Collections.nCopies(pieces.count(p), p).stream())
+					.toArray(Piece[]::new);
+			this.width = size.getPositions() <= 256 ? 1 : 2;
+			this.recordSize = order.length * width;
+			this.header = Integer.BYTES + Short.BYTES + 2 * Integer.BYTES + 1 + kinds.length * (1 + Integer.BYTES)
+					+ Long.BYTES;
+			this.recordsPerChunk = Math.max(1, CHUNK_BYTES / Math.max(1, recordSize));
+		}
+
+		/** Returns the header with the provided count. */
+		ByteBuffer getHeader(long count) {
+			final ByteBuffer b = ByteBuffer.allocate(header);
+			b.putInt(MAGIC).putShort(VERSION).putInt(size.getRows()).putInt(size.getColumns()).put((byte) kinds.length);
+			for (Piece p : kinds) {
+				b.put((byte) p.ordinal()).putInt(pieces.count(p));
+			}
+			b.putLong(count).flip();
+			return b;
+		}
+
+		/** Reads a position index. */
+		int getIndex(ByteBuffer b, int offset) {
+			return width == 1 ? b.get(offset) & 0xFF : b.getShort(offset) & 0xFFFF;
+		}
+
+		/** Writes a position index. */
+		void putIndex(ByteBuffer b, int index) {
+			if (width == 1) {
+				b.put((byte) index);
+			} else {
+				b.putShort((short) index);
+			}
+		}
+	}
+
+	/**
+	 * Sequential solution file writer. As a solution sink it is meant to be used from a single thread
+	 * and I/O errors are reported as {@link UncheckedIOException}.
+	 */
+	public static final class Writer implements SolutionSink, Closeable {
+		/** File layout. */
+		private final Layout layout;
+		/** File channel. */
+		private final FileChannel channel;
+		/** Scratch array of encoded indexes. */
+		private final int[] indexes;
+		/** Offset of each piece kind in the record. */
+		private final int[] offsets;
+		/** Current mapped region. */
+		private MappedByteBuffer chunk = null;
+		/** Number of written solutions. */
+		private long count = 0L;
+		/** Whether the writer is closed. */
+		private boolean closed = false;
+
+		/** Constructor. */
+		private Writer(Path path, Layout layout) throws IOException {
+			this.layout = layout;
+			this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+					StandardOpenOption.READ, StandardOpenOption.WRITE);
+			this.indexes = new int[layout.order.length];
+			this.offsets = new int[Piece.values().length];
+			channel.write(layout.getHeader(0L), 0L);
+		}
+
+		/**
+		 * Writes a solution in raw form. When the pieces are in the file order, as placed by a fixed order
+		 * search engine, the placed indexes are the record itself. Otherwise, e.g. in dynamic mode, where
+		 * kinds may be interleaved, the solution is encoded as a {@link Solution}.
+		 */
+		void accept(Piece[] pieces, int[] placed) {
+			checkState(!closed, "The writer is closed");
+			if (!Arrays.equals(pieces, layout.order)) {
+				final ImmutableMap.Builder<Position, Piece> b = ImmutableMap.builder();
+				final AttackTable table = AttackTable.of(layout.size);
+				for (int i = 0; i < pieces.length; i++) {
+					b.put(table.getPosition(placed[i]), pieces[i]);
+				}
+				accept(Solution.of(layout.size, b.build()));
+				return;
+			}
+			write(placed);
+		}
+
+		/** Returns the number of written solutions. */
+		public long getCount() {
+			return count;
+		}
+
+		@Override
+		public void accept(Solution solution) {
+			checkState(!closed, "The writer is closed");
+			checkArgument(layout.size.equals(solution.getSize()), "The solution must be of the file board size");
+			final Map<Position, Piece> positions = solution.getPositions();
+			checkArgument(positions.size() == indexes.length, "The solution must have the file pieces");
+			// Offsets of each kind in the record
+			int offset = 0;
+			for (Piece p : layout.kinds) {
+				offsets[p.ordinal()] = offset;
+				offset += layout.pieces.count(p);
+			}
+			for (Map.Entry<Position, Piece> e : positions.entrySet()) {
+				final int i = offsets[e.getValue().ordinal()]++;
+				checkArgument(i < indexes.length && layout.order[i] == e.getValue(), "The solution must have the file pieces");
+				indexes[i] = e.getKey().getIndex();
+			}
+			offset = 0;
+			for (Piece p : layout.kinds) {
+				final int n = layout.pieces.count(p);
+				Arrays.sort(indexes, offset, offset + n);
+				offset += n;
+			}
+			write(indexes);
+		}
+
+		/** Writes a record. */
+		private void write(int[] indexes) {
+			try {
+				if (chunk == null || !chunk.hasRemaining()) {
+					final long first = count;
+					chunk = channel.map(MapMode.READ_WRITE, layout.header + first * layout.recordSize,
+							layout.recordsPerChunk * layout.recordSize);
+				}
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			for (int index : indexes) {
+				layout.putIndex(chunk, index);
+			}
+			count++;
+		}
+
+		/** Writes the final solution count and trims the file to its actual size. */
+		@Override
+		public void close() throws IOException {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			try (FileChannel c = channel) {
+				if (chunk != null) {
+					chunk.force();
+					chunk = null;
+				}
+				c.write(layout.getHeader(count), 0L);
+				c.truncate(layout.header + count * layout.recordSize);
+			}
+		}
+	}
+
+}
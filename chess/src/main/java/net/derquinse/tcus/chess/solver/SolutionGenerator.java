@@ -0,0 +1,202 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.tcus.chess.solver;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Generator of uniformly random solutions of a problem, obtained from {@link Solver#generator}.
+ * Solutions are drawn descending the search tree of the {@link BitboardSearch} engine, choosing at
+ * every node a child with probability proportional to the number of solutions of its subtree. The
+ * counts of the subtrees rooted at each placement of the first piece are computed by the solver
+ * when the generator is created. Deeper nodes are counted when first visited, and kept in a count
+ * tree shared by the following draws, up to a maximum number of nodes. Nodes whose children are
+ * solutions are never kept, as choosing among them only takes a pass over the positions.
+ * <p>
+ * Generators are thread-safe, so solutions may be drawn concurrently with different sources of
+ * randomness.
+ * @author Andres Rodriguez
+ */
+public final class SolutionGenerator {
+	/** Default maximum number of nodes of the count tree. */
+	static final int MAX_NODES = 1 << 20;
+
+	/** Problem. */
+	private final Problem problem;
+	/** Search engine with no pieces placed, copied for each draw ({@code null} if there are no solutions). */
+	private final BitboardSearch search;
+	/** Root of the count tree. */
+	private final Node root;
+	/** Maximum number of nodes of the count tree. */
+	private final int maxNodes;
+	/** Number of nodes of the count tree. */
+	private final AtomicInteger nodes = new AtomicInteger(1);
+
+	/**
+	 * Constructor.
+	 * @param problem Problem.
+	 * @param counts Solution counts of the subtrees, by position index of the first piece.
+	 */
+	SolutionGenerator(Problem problem, long[] counts) {
+		this(problem, counts, MAX_NODES);
+	}
+
+	/**
+	 * Constructor.
+	 * @param problem Problem.
+	 * @param counts Solution counts of the subtrees, by position index of the first piece.
+	 * @param maxNodes Maximum number of nodes of the count tree.
+	 */
+	SolutionGenerator(Problem problem, long[] counts, int maxNodes) {
+		this.problem = checkNotNull(problem, "The problem must be provided");
+		checkArgument(counts.length == problem.getSize().getPositions(), "A count per position expected");
+		checkArgument(maxNodes > 0, "The maximum number of nodes must be > 0");
+		this.root = Node.of(counts);
+		this.search = root.getCount() > 0 ? BitboardSearch.of(problem) : null;
+		this.maxNodes = maxNodes;
+	}
+
+	/** Returns the problem. */
+	public Problem getProblem() {
+		return problem;
+	}
+
+	/** Returns the number of solutions of the problem. */
+	public long getCount() {
+		return root.getCount();
+	}
+
+	/** Returns the number of nodes of the count tree. */
+	public int getNodes() {
+		return nodes.get();
+	}
+
+	/**
+	 * Draws a uniformly random solution.
+	 * @param random Source of randomness.
+	 * @return The drawn solution.
+	 * @throws NoSuchElementException if the problem has no solutions.
+	 */
+	public Solution next(Random random) {
+		checkNotNull(random, "The source of randomness must be provided");
+		if (search == null) {
+			throw new NoSuchElementException("The problem has no solutions");
+		}
+		final BitboardSearch s = search.copy();
+		final int last = s.getPieces() - 1;
+		Node node = root;
+		while (true) {
+			final int child = node.choose(nextLong(random, node.getCount()));
+			s.push(node.positions[child]);
+			if (s.getDepth() > last) {
+				return s.getSolution();
+			}
+			Node next = node.children.get(child);
+			if (next == null) {
+				next = Node.of(s);
+				// The count is exact, so a concurrent draw may have kept an equal node
+				if (s.getDepth() < last && nodes.get() < maxNodes) {
+					if (node.children.compareAndSet(child, null, next)) {
+						nodes.incrementAndGet();
+					} else {
+						next = node.children.get(child);
+					}
+				}
+			}
+			node = next;
+		}
+	}
+
+	/** Returns a uniformly random long between 0 (inclusive) and the provided bound (exclusive). */
+	private static long nextLong(Random random, long bound) {
+		long bits;
+		long value;
+		do {
+			bits = random.nextLong() >>> 1;
+			value = bits % bound;
+		} while (bits - value + (bound - 1) < 0L);
+		return value;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("SolutionGenerator[%s, %d solutions, %d nodes]", problem, getCount(), getNodes());
+	}
+
+	/** Node of the count tree. Only children with solutions are kept. */
+	private static final class Node {
+		/** Position index of the piece placed in each child. */
+		private final int[] positions;
+		/** Cumulative solution counts, up to each child (inclusive). */
+		private final long[] cumulative;
+		/** Children nodes, when counted and kept. */
+		private final AtomicReferenceArray<Node> children;
+
+		/** Creates a node from the solution counts of its children, by position index. */
+		static Node of(long[] counts) {
+			final int[] positions = new int[counts.length];
+			final long[] cumulative = new long[counts.length];
+			int n = 0;
+			long total = 0L;
+			for (int i = 0; i < counts.length; i++) {
+				if (counts[i] > 0L) {
+					total += counts[i];
+					positions[n] = i;
+					cumulative[n++] = total;
+				}
+			}
+			return new Node(Arrays.copyOf(positions, n), Arrays.copyOf(cumulative, n));
+		}
+
+		/** Creates the node of the current depth of a search, counting the subtrees of its children. */
+		static Node of(BitboardSearch search) {
+			final long[] counts = new long[search.getPositions()];
+			for (int i = 0; i < counts.length; i++) {
+				if (search.push(i)) {
+					counts[i] = search.count();
+					search.pop();
+				}
+			}
+			return of(counts);
+		}
+
+		/** Constructor. */
+		private Node(int[] positions, long[] cumulative) {
+			this.positions = positions;
+			this.cumulative = cumulative;
+			this.children = new AtomicReferenceArray<>(positions.length);
+		}
+
+		/** Returns the number of solutions of the subtree. */
+		long getCount() {
+			return cumulative.length > 0 ? cumulative[cumulative.length - 1] : 0L;
+		}
+
+		/** Returns the child the solution with the provided rank belongs to. */
+		int choose(long rank) {
+			final int i = Arrays.binarySearch(cumulative, rank);
+			// The first child with a cumulative count greater than the rank
+			return i >= 0 ? i + 1 : -i - 1;
+		}
+	}
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.tcus.chess.solver;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * Bounded pipe between the solver threads, that feed it with solutions, and the thread that
+ * requested them, that drains it into a {@link SolutionSink}. Producers block while the pipe is
+ * full, so memory use is bounded and the search proceeds at the pace of the sink.
+ * @author Andres Rodriguez
+ */
+final class SolutionPipe implements Consumer<Solution> {
+	/** Pipe capacity. */
+	private static final int CAPACITY = 1024;
+	/** Polling interval (ms) to check for completion or closing. */
+	private static final long POLL_MILLIS = 10L;
+
+	/** Solution queue. */
+	private final BlockingQueue<Solution> queue = new ArrayBlockingQueue<>(CAPACITY);
+	/** Whether the pipe has been closed by the consumer side. */
+	private volatile boolean closed = false;
+
+	/** Constructor. */
+	SolutionPipe() {
+	}
+
+	/**
+	 * Feeds a solution, waiting while the pipe is full. The closing is checked before offering the
+	 * solution, as the queue is cleared on close and would otherwise accept solutions again.
+	 * @throws CancellationException if the consumer side has been closed or the thread is interrupted.
+	 */
+	@Override
+	public void accept(Solution solution) {
+		try {
+			do {
+				if (closed) {
+					throw new CancellationException("Solution pipe closed");
+				}
+			} while (!queue.offer(solution, POLL_MILLIS, MILLISECONDS));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new CancellationException("Interrupted while feeding a solution");
+		}
+	}
+
+	/**
+	 * Drains the pipe into a sink until the producers are done. The pipe is closed on return.
+	 * @param done Returns whether all producers are done.
+	 * @param sink Solution sink.
+	 * @throws CancellationException if the thread is interrupted.
+	 */
+	void drain(BooleanSupplier done, SolutionSink sink) {
+		checkNotNull(sink, "The solution sink must be provided");
+		try {
+			while (true) {
+				final Solution s = queue.poll(POLL_MILLIS, MILLISECONDS);
+				if (s != null) {
+					sink.accept(s);
+				} else if (done.getAsBoolean()) {
+					// Producers are done, so what is in the queue is all there is.
+					for (Solution r = queue.poll(); r != null; r = queue.poll()) {
+						sink.accept(r);
+					}
+					return;
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new CancellationException("Interrupted while draining solutions");
+		} finally {
+			closed = true;
+			queue.clear();
+		}
+	}
+
+}
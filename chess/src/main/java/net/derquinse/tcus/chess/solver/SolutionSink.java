@@ -0,0 +1,31 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.tcus.chess.solver;
+
+/**
+ * Interface for a destination of solutions as they are found. Solvers always call the sink from
+ * the thread that requested the solution, so implementations need not be thread-safe. A slow sink
+ * slows down the search instead of making solutions pile up in memory.
+ * @author Andres Rodriguez
+ */
+@FunctionalInterface
+public interface SolutionSink {
+	/**
+	 * Receives a found solution. If an unchecked exception is thrown the search is abandoned and the
+	 * exception is propagated to the caller of the solver.
+	 */
+	void accept(Solution solution);
+}
@@ -15,19 +15,69 @@
  */
 package net.derquinse.tcus.chess.solver;
 
+import java.io.UncheckedIOException;
 import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
- * Interface for a challenge solver.
+ * Interface for a challenge solver. Solvers own their threads, that are released when the solver is
+ * closed. Once closed, a solver cannot be used anymore.
  * @author Andres Rodriguez
  */
-public interface Solver {
+public interface Solver extends AutoCloseable {
 	/**
 	 * Solves a problem
 	 * @param problem Problem to solve.
 	 * @return The number of found solutions.
 	 */
-	int solve(Problem problem);
+	long solve(Problem problem);
+
+	/**
+	 * Solves a problem, abandoning the search if it takes longer than the provided timeout.
+	 * @param problem Problem to solve.
+	 * @param timeout Maximum time to wait.
+	 * @param unit Time unit of the timeout.
+	 * @return The number of found solutions.
+	 * @throws TimeoutException if the timeout expires. The search is cancelled.
+	 */
+	long solve(Problem problem, long timeout, TimeUnit unit) throws TimeoutException;
+
+	/**
+	 * Starts solving a problem in the background.
+	 * @param problem Problem to solve.
+	 * @return A future for the number of found solutions. Cancelling it stops the search.
+	 */
+	Future<Long> submit(Problem problem);
+
+	/**
+	 * Solves a problem, recording its progress in a checkpoint, so that the solve can be resumed with
+	 * a checkpoint read from the same file. The search tree is split into the subtrees rooted at each
+	 * placement of the first piece: those already completed in the checkpoint are skipped, and the
+	 * rest are recorded as they are completed. The checkpoint is written periodically and when the
+	 * solve finishes in any way. Problems solved without searching do not record subtrees.
+	 * @param problem Problem to solve.
+	 * @param checkpoint Checkpoint of the problem.
+	 * @return The number of found solutions, including those of the subtrees already completed.
+	 * @throws IllegalArgumentException if the checkpoint belongs to another problem.
+	 * @throws UncheckedIOException if the checkpoint cannot be written.
+	 */
+	long solve(Problem problem, Checkpoint checkpoint);
+
+	/**
+	 * Starts solving a problem in the background, reporting its progress periodically to a listener:
+	 * completed subtrees (those rooted at each placement of the first piece), visited nodes,
+	 * solutions found so far and estimated remaining time. Solvers that do not track their search
+	 * only report the elapsed time until finished.
+	 * @param problem Problem to solve.
+	 * @param listener Progress listener, called once more with the final progress.
+	 * @param period Time between reports.
+	 * @param unit Time unit of the period.
+	 * @return A future for the number of found solutions. Cancelling it stops the search.
+	 * @throws IllegalArgumentException if the period is not positive.
+	 */
+	Future<Long> submit(Problem problem, ProgressListener listener, long period, TimeUnit unit);
 
 	/**
 	 * Solves a problem, returning the found solution.
@@ -36,4 +86,58 @@ public interface Solver {
 	 */
 	List<Solution> solveAndGet(Problem problem);
 
+	/**
+	 * Solves a problem, feeding the found solutions to a sink as they are found. The sink is called
+	 * from the calling thread, and the search waits for it if it falls behind, so memory use is
+	 * bounded regardless of the number of solutions.
+	 * @param problem Problem to solve.
+	 * @param sink Solution sink.
+	 * @return The number of found solutions.
+	 */
+	long solve(Problem problem, SolutionSink sink);
+
+	/**
+	 * Returns whether a problem has any solution. The search stops as soon as a solution is found.
+	 * @param problem Problem to solve.
+	 * @return Whether the problem has solutions.
+	 */
+	boolean exists(Problem problem);
+
+	/**
+	 * Returns the first solutions found of a problem. The search stops as soon as enough solutions
+	 * are found, so which ones are returned may depend on the scheduling of the solver threads.
+	 * @param problem Problem to solve.
+	 * @param k Maximum number of solutions to return.
+	 * @return The first {@code k} found solutions, or all of them if there are fewer.
+	 * @throws IllegalArgumentException if {@code k} is negative.
+	 */
+	List<Solution> first(Problem problem, int k);
+
+	/**
+	 * Returns a uniform random sample of the solutions of a problem, without repetitions. All the
+	 * solutions are enumerated, but only the sample is kept. The sample only depends on the problem,
+	 * the size and the seed, not on the solver used.
+	 * @param problem Problem to solve.
+	 * @param k Sample size.
+	 * @param seed Random seed.
+	 * @return The sampled solutions in random order, or all of them if there are {@code k} or fewer.
+	 * @throws IllegalArgumentException if {@code k} is negative.
+	 */
+	List<Solution> sample(Problem problem, int k, long seed);
+
+	/**
+	 * Creates a generator of uniformly random solutions of a problem. The solutions of the subtrees
+	 * rooted at each placement of the first piece are counted before returning, so it takes about as
+	 * long as counting the solutions. Solutions are then drawn without enumerating them.
+	 * @param problem Problem to solve.
+	 * @return The generator of solutions.
+	 */
+	SolutionGenerator generator(Problem problem);
+
+	/**
+	 * Closes the solver, stopping any search in progress and releasing its threads.
+	 */
+	@Override
+	void close();
+
 }
@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.tcus.chess.solver;
+
+/**
+ * Management interface of the solver metrics exposed through JMX (see {@link JmxSolverMetrics}).
+ * Histograms have a bucket per power of two: bucket 0 counts the values less than 1, and bucket
+ * {@code i} those between 2<sup>i-1</sup> (inclusive) and 2<sup>i</sup> (exclusive).
+ * @author Andres Rodriguez
+ */
+public interface SolverMXBean {
+	/** Returns the number of solves in progress. */
+	int getActiveSolves();
+
+	/** Returns the number of completed solves. */
+	long getCompletedSolves();
+
+	/** Returns the number of cancelled or failed solves. */
+	long getAbandonedSolves();
+
+	/** Returns the number of threads of the pool. */
+	int getPoolSize();
+
+	/** Returns the approximate number of threads executing tasks. */
+	int getActiveThreads();
+
+	/** Returns the approximate number of tasks waiting for a thread. */
+	int getQueuedTasks();
+
+	/** Returns the fraction of the threads of the pool executing tasks. */
+	double getPoolUtilization();
+
+	/** Returns the number of nodes visited per second by the last finished solve. */
+	double getNodesPerSecond();
+
+	/** Returns the number of solutions found per second by the last finished solve. */
+	double getSolutionsPerSecond();
+
+	/** Returns the number of finished search tasks. */
+	long getTasks();
+
+	/** Returns the histogram of the number of nodes visited by the search tasks. */
+	long[] getTaskNodesHistogram();
+
+	/** Returns the histogram of the duration of the search tasks (µs). */
+	long[] getTaskTimeHistogram();
+
+	/** Returns the histogram of the duration of the finished solves (ms). */
+	long[] getSolveTimeHistogram();
+
+	/** Resets the counters and histograms. */
+	void reset();
+}
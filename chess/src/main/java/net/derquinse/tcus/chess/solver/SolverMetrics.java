@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.tcus.chess.solver;
+
+/**
+ * Interface for a receiver of the metrics of a solver. Methods are called from the solver threads,
+ * so implementations must be thread-safe, cheap and must not allocate memory. All methods do
+ * nothing by default. An instance should only be used by a single solver.
+ * @author Andres Rodriguez
+ */
+public interface SolverMetrics {
+	/** Metrics that are discarded. */
+	SolverMetrics NONE = new SolverMetrics() {
+		@Override
+		public String toString() {
+			return "SolverMetrics.NONE";
+		}
+	};
+
+	/** Called once, when the solver is created, with a view of its thread pool. */
+	default void attach(Pool pool) {
+	}
+
+	/** Called when a solve starts. */
+	default void solveStarted() {
+	}
+
+	/**
+	 * Called when a search task finishes.
+	 * @param nanos Duration of the task (ns).
+	 * @param nodes Number of nodes visited by the task.
+	 */
+	default void taskFinished(long nanos, long nodes) {
+	}
+
+	/**
+	 * Called when a solve finishes in any way.
+	 * @param nanos Duration of the solve (ns).
+	 * @param nodes Number of nodes visited.
+	 * @param solutions Number of solutions found.
+	 * @param completed Whether the solve was completed (not cancelled nor failed).
+	 */
+	default void solveFinished(long nanos, long nodes, long solutions, boolean completed) {
+	}
+
+	/**
+	 * Live view of the thread pool of a solver.
+	 */
+	interface Pool {
+		/** Returns the number of threads of the pool. */
+		int getPoolSize();
+
+		/** Returns the approximate number of threads executing tasks. */
+		int getActiveThreads();
+
+		/** Returns the approximate number of tasks waiting for a thread. */
+		int getQueuedTasks();
+	}
+}
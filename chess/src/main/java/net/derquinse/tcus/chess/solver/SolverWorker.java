@@ -0,0 +1,268 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.tcus.chess.solver;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.base.Objects;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Worker process of the cluster solver (see {@link Solvers#clusterSolver(java.util.List)}). It
+ * listens on a socket (of the loopback address unless another one is provided) and counts the
+ * solutions of the shards (subproblems with the placements of the first pieces fixed) sent by
+ * coordinators. The shards of each connection are solved in turn in a thread of their own, so a
+ * coordinator may open several connections to use several cores.
+ * <p>
+ * Protocol: the coordinator starts every connection with a magic number, the protocol version and
+ * the keep-alive interval in milliseconds, and then sends requests (a request tag followed by the
+ * shard), waiting for the response to each before sending the next one. Shards are sent as
+ * length-prefixed frames. While a shard is being solved, the worker sends a keep-alive tag every
+ * interval, so that the coordinator can tell a long search from a hung worker. The response is a
+ * result tag followed by the solution count, or an error tag followed by a message. If the
+ * connection is closed while a shard is being solved, the search is abandoned.
+ * @author Andres Rodriguez
+ */
+public final class SolverWorker implements AutoCloseable {
+	/** Magic number at the start of a connection. */
+	static final int MAGIC = 0x54435553;
+	/** Protocol version. */
+	static final int VERSION = 3;
+	/** Request tag. */
+	static final int REQUEST = 1;
+	/** Result tag. */
+	static final int RESULT = 1;
+	/** Error tag. */
+	static final int ERROR = 2;
+	/** Keep-alive tag. */
+	static final int KEEP_ALIVE = 3;
+
+	/** Server socket. */
+	private final ServerSocket server;
+	/** Executor for the acceptor, connections and searches. */
+	private final ExecutorService executor = Executors.newCachedThreadPool(new ThreadFactoryBuilder().setDaemon(true)
+			.build());
+	/** Scheduler of the keep-alives. */
+	private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+			new ThreadFactoryBuilder().setDaemon(true).build());
+	/** Open connections. */
+	private final Set<Socket> connections = Sets.newConcurrentHashSet();
+	/** Number of solved shards. */
+	private final AtomicLong shards = new AtomicLong();
+
+	/**
+	 * Starts a worker listening on the provided port of the loopback address. As the protocol is not
+	 * authenticated, workers only accept connections from other hosts if started with an explicit
+	 * address.
+	 * @param port Port to listen on, 0 for an ephemeral one.
+	 * @throws IOException if the socket cannot be bound.
+	 */
+	public static SolverWorker start(int port) throws IOException {
+		return start(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+	}
+
+	/**
+	 * Starts a worker listening on the provided address. The protocol is not authenticated, so the
+	 * address should only be reachable from trusted hosts.
+	 * @throws IOException if the socket cannot be bound.
+	 */
+	public static SolverWorker start(InetSocketAddress address) throws IOException {
+		checkNotNull(address, "The address must be provided");
+		final ServerSocket server = new ServerSocket();
+		try {
+			server.bind(address);
+		} catch (IOException e) {
+			server.close();
+			throw e;
+		}
+		final SolverWorker worker = new SolverWorker(server);
+		worker.executor.execute(worker::accept);
+		return worker;
+	}
+
+	/** Constructor. */
+	private SolverWorker(ServerSocket server) {
+		this.server = server;
+	}
+
+	/** Returns the address the worker is listening on. */
+	public InetSocketAddress getAddress() {
+		return (InetSocketAddress) server.getLocalSocketAddress();
+	}
+
+	/** Returns the port the worker is listening on. */
+	public int getPort() {
+		return server.getLocalPort();
+	}
+
+	/** Returns the number of shards solved so far. */
+	public long getShards() {
+		return shards.get();
+	}
+
+	/** Accepts connections until the worker is closed. */
+	private void accept() {
+		while (!server.isClosed()) {
+			try {
+				final Socket socket = server.accept();
+				executor.execute(() -> serve(socket));
+			} catch (IOException e) {
+				// Closed or failed accept
+			}
+		}
+	}
+
+	/** Serves the requests of a connection until it is closed. */
+	private void serve(Socket socket) {
+		Job job = null;
+		connections.add(socket);
+		try (Socket s = socket) {
+			s.setTcpNoDelay(true);
+			final DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+			final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()));
+			if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+				return;
+			}
+			final int keepAlive = in.readInt();
+			if (keepAlive <= 0) {
+				return;
+			}
+			// The next request arrives after the response, so the read only returns early if the
+			// coordinator is gone.
+			while (in.read() == REQUEST) {
+				final Shard shard;
+				try {
+					shard = Shard.read(in);
+				} catch (IllegalArgumentException e) {
+					fail(out, e.getMessage());
+					continue;
+				}
+				final Job current = new Job();
+				job = current;
+				executor.execute(() -> solve(shard, current, out, keepAlive));
+			}
+		} catch (IOException e) {
+			// Connection lost
+		} finally {
+			connections.remove(socket);
+			if (job != null) {
+				job.cancel();
+			}
+		}
+	}
+
+	/** Solves a shard, writing keep-alives every provided interval (ms) and then the response. */
+	private void solve(Shard shard, Job job, DataOutputStream out, int keepAlive) {
+		final ScheduledFuture<?> keepAlives = scheduler.scheduleAtFixedRate(() -> keepAlive(out), keepAlive, keepAlive,
+				TimeUnit.MILLISECONDS);
+		try {
+			final long count;
+			try {
+				count = shard.count(job);
+			} finally {
+				// Cancelled before responding, so that no keep-alive follows the response
+				keepAlives.cancel(false);
+			}
+			shards.incrementAndGet();
+			respond(out, count);
+		} catch (CancellationException e) {
+			// Coordinator gone
+		} catch (RuntimeException e) {
+			fail(out, e.getMessage());
+		}
+	}
+
+	/** Writes a keep-alive, ignoring failures as the connection is closed by the reading thread. */
+	private static void keepAlive(DataOutputStream out) {
+		synchronized (out) {
+			try {
+				out.writeByte(KEEP_ALIVE);
+				out.flush();
+			} catch (IOException e) {
+				// Connection lost
+			}
+		}
+	}
+
+	/** Writes a result, ignoring failures as the connection is closed by the reading thread. */
+	private static void respond(DataOutputStream out, long count) {
+		synchronized (out) {
+			try {
+				out.writeByte(RESULT);
+				out.writeLong(count);
+				out.flush();
+			} catch (IOException e) {
+				// Connection lost
+			}
+		}
+	}
+
+	/** Writes an error, ignoring failures as the connection is closed by the reading thread. */
+	private static void fail(DataOutputStream out, String message) {
+		synchronized (out) {
+			try {
+				out.writeByte(ERROR);
+				out.writeUTF(String.valueOf(message));
+				out.flush();
+			} catch (IOException e) {
+				// Connection lost
+			}
+		}
+	}
+
+	/** Stops listening and abandons the connections. */
+	@Override
+	public void close() {
+		try {
+			server.close();
+		} catch (IOException e) {
+			// Nothing to do
+		}
+		for (Socket socket : connections) {
+			try {
+				socket.close();
+			} catch (IOException e) {
+				// Nothing to do
+			}
+		}
+		executor.shutdownNow();
+		scheduler.shutdownNow();
+	}
+
+	@Override
+	public String toString() {
+		return Objects.toStringHelper(this).add("port", getPort()).add("shards", shards.get()).toString();
+	}
+}
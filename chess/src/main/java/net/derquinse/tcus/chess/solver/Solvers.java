@@ -15,6 +15,13 @@
  */
 package net.derquinse.tcus.chess.solver;
 
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
 /**
  * Utility class to obtain challenge solvers.
  * @author Andres Rodriguez
@@ -34,4 +41,173 @@ public final class Solvers {
 	public static Solver defaultSolver(int numThreads) {
 		return new DefaultSolver(numThreads);
 	}
+
+	/**
+	 * Returns an instance of the default solver that reports its metrics.
+	 * @param numThreads Number of threads used by the solver for calculations.
+	 * @param metrics Receiver of the metrics of the solver, not shared with other solvers.
+	 * @return The requested solver.
+	 * @throws IllegalArgumentException if the number of threads is less than 1.
+	 */
+	public static Solver defaultSolver(int numThreads, SolverMetrics metrics) {
+		return new DefaultSolver(numThreads, metrics);
+	}
+
+	/**
+	 * Returns an instance of the single-threaded solver based on an allocation-free search engine.
+	 * @return The requested solver.
+	 */
+	public static Solver bitboardSolver() {
+		return new BitboardSolver();
+	}
+
+	/**
+	 * Returns an instance of the single-threaded solver based on an allocation-free search engine,
+	 * placing the pieces in the provided order.
+	 * @param order Piece order.
+	 * @return The requested solver.
+	 */
+	public static Solver bitboardSolver(PieceOrder order) {
+		return new BitboardSolver(order);
+	}
+
+	/**
+	 * Returns an instance of the work-stealing solver, that splits the search adaptively at any depth.
+	 * @param numThreads Number of threads used by the solver for calculations.
+	 * @return The requested solver.
+	 * @throws IllegalArgumentException if the number of threads is less than 1.
+	 */
+	public static Solver forkJoinSolver(int numThreads) {
+		return new ForkJoinSolver(numThreads, false);
+	}
+
+	/**
+	 * Returns an instance of the work-stealing solver, placing the pieces in the provided order.
+	 * @param numThreads Number of threads used by the solver for calculations.
+	 * @param order Piece order.
+	 * @return The requested solver.
+	 * @throws IllegalArgumentException if the number of threads is less than 1.
+	 */
+	public static Solver forkJoinSolver(int numThreads, PieceOrder order) {
+		return new ForkJoinSolver(numThreads, false, null, order);
+	}
+
+	/**
+	 * Returns an instance of the work-stealing solver that counts solutions using the symmetries of
+	 * the board. Solution lists are obtained by full enumeration.
+	 * @param numThreads Number of threads used by the solver for calculations.
+	 * @return The requested solver.
+	 * @throws IllegalArgumentException if the number of threads is less than 1.
+	 */
+	public static Solver symmetricSolver(int numThreads) {
+		return new ForkJoinSolver(numThreads, true);
+	}
+
+	/**
+	 * Returns an instance of the work-stealing solver that memoizes subtree counts when counting
+	 * solutions, which avoids searching again identical subproblems reached through different
+	 * placements. Specially useful for problems with many kings and knights.
+	 * @param numThreads Number of threads used by the solver for calculations.
+	 * @param table Transposition table, that may be inspected for statistics and shared among solvers.
+	 * @return The requested solver.
+	 * @throws IllegalArgumentException if the number of threads is less than 1.
+	 */
+	public static Solver memoizingSolver(int numThreads, TranspositionTable table) {
+		return memoizingSolver(numThreads, table, PieceOrder.FIXED);
+	}
+
+	/**
+	 * Returns an instance of the work-stealing solver that memoizes subtree counts when counting
+	 * solutions, placing the pieces in the provided order. Memoization is not available for the
+	 * {@link PieceOrder#MOST_CONSTRAINED} order.
+	 * @param numThreads Number of threads used by the solver for calculations.
+	 * @param table Transposition table, that may be inspected for statistics and shared among solvers.
+	 * @param order Piece order.
+	 * @return The requested solver.
+	 * @throws IllegalArgumentException if the number of threads is less than 1.
+	 */
+	public static Solver memoizingSolver(int numThreads, TranspositionTable table, PieceOrder order) {
+		checkNotNull(table, "The transposition table must be provided");
+		return new ForkJoinSolver(numThreads, false, table, order);
+	}
+
+	/**
+	 * Returns an instance of the single-threaded solver for problems with only kings and knights, that
+	 * counts solutions with a line by line dynamic programming over the placements of the last two
+	 * lines and the number of pieces of each kind placed. Solution lists are obtained by full
+	 * enumeration.
+	 * @return The requested solver, that throws {@link IllegalArgumentException} when asked to solve
+	 *         a problem with other pieces or whose board has more than 15 rows and columns.
+	 */
+	public static Solver profileSolver() {
+		return new ProfileSolver();
+	}
+
+	/**
+	 * Returns a solver that counts solutions in a cluster of worker processes (see {@link SolverWorker}),
+	 * splitting the problem into subproblems with the placements of the first pieces fixed. Failed
+	 * subproblems are retried in other connections. Solution lists are obtained by local enumeration.
+	 * @param workers Worker addresses. An address may be repeated to open several connections to the
+	 *          same worker, that solves the subproblems of each connection in its own thread.
+	 * @return The requested solver.
+	 * @throws IllegalArgumentException if no address is provided.
+	 */
+	public static Solver clusterSolver(List<InetSocketAddress> workers) {
+		return new ClusterSolver(workers);
+	}
+
+	/**
+	 * Returns a solver that counts solutions in a cluster of worker processes, failing the connections
+	 * whose worker is silent for too long while solving a subproblem (see {@link #clusterSolver(List)},
+	 * where the timeout is one minute). Workers send keep-alives while solving, so the timeout does
+	 * not limit the time a subproblem may take.
+	 * @param workers Worker addresses.
+	 * @param readTimeout Maximum time to wait for a worker solving a subproblem to send anything.
+	 * @param unit Time unit of the timeout.
+	 * @return The requested solver.
+	 * @throws IllegalArgumentException if no address is provided or the timeout is not positive.
+	 */
+	public static Solver clusterSolver(List<InetSocketAddress> workers, long readTimeout, TimeUnit unit) {
+		return new ClusterSolver(workers, readTimeout, unit);
+	}
+
+	/**
+	 * Returns an instance of the batch solver, that counts the solutions of batches of problems
+	 * concurrently in a single pool of threads.
+	 * @param numThreads Number of threads used by the solver for calculations.
+	 * @return The requested solver.
+	 * @throws IllegalArgumentException if the number of threads is less than 1.
+	 */
+	public static BatchSolver batchSolver(int numThreads) {
+		return new ForkJoinBatchSolver(numThreads);
+	}
+
+	/**
+	 * Returns a solver that counts the solutions of simple problems with specialized engines instead of
+	 * searching: a closed form for rooks only, a bitwise search for queens only and a row by row
+	 * dynamic programming for kings and knights only. Other problems, and solution enumeration, are
+	 * handled by the provided solver.
+	 * @param solver Solver to use for the rest of problems. Must have been provided by this class.
+	 * @return The requested solver, that closes the provided one when closed.
+	 * @throws IllegalArgumentException if the solver has not been provided by this class.
+	 */
+	public static Solver specializedSolver(Solver solver) {
+		checkNotNull(solver, "The solver must be provided");
+		checkArgument(solver instanceof AbstractSolver, "Unsupported solver %s", solver);
+		return new SpecializedSolver((AbstractSolver) solver, CountingEngines.DEFAULT);
+	}
+
+	/**
+	 * Returns a solver that looks up solution counts in a result cache before using the provided
+	 * solver, storing the counts it finds.
+	 * @param solver Solver to use on cache misses. Must have been provided by this class.
+	 * @param cache Result cache.
+	 * @return The requested solver, that closes the provided one when closed.
+	 * @throws IllegalArgumentException if the solver has not been provided by this class.
+	 */
+	public static Solver cachingSolver(Solver solver, ResultCache cache) {
+		checkNotNull(solver, "The solver must be provided");
+		checkArgument(solver instanceof AbstractSolver, "Unsupported solver %s", solver);
+		return new CachingSolver((AbstractSolver) solver, cache);
+	}
 }
@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.tcus.chess.solver;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Solver decorator that counts the solutions of the problems supported by a registry of specialized
+ * engines with them, falling back to the underlying solver otherwise. Solutions are always
+ * enumerated by the underlying solver. Blocking counts run in the calling thread, and background
+ * ones in the provided executor or, if none, in threads owned by the solver, created when needed.
+ * @author Andres Rodriguez
+ */
+final class SpecializedSolver extends AbstractSolver {
+	/** Underlying solver. */
+	private final AbstractSolver solver;
+	/** Engine registry. */
+	private final CountingEngines engines;
+	/** Executor for background counts. */
+	private final ExecutorService executor;
+	/** Whether the executor is owned by this solver. */
+	private final boolean ownsExecutor;
+
+	/** Constructor. */
+	SpecializedSolver(AbstractSolver solver, CountingEngines engines) {
+		this(solver, engines, Executors.newCachedThreadPool(new ThreadFactoryBuilder().setDaemon(true).build()), true);
+	}
+
+	/**
+	 * Constructor.
+	 * @param executor Executor for background counts, owned by the underlying solver (usually its own
+	 *          pool, so that searches and counts share the same threads).
+	 */
+	SpecializedSolver(AbstractSolver solver, CountingEngines engines, ExecutorService executor) {
+		this(solver, engines, executor, false);
+	}
+
+	/** Constructor. */
+	private SpecializedSolver(AbstractSolver solver, CountingEngines engines, ExecutorService executor,
+			boolean ownsExecutor) {
+		this.solver = checkNotNull(solver, "The solver must be provided");
+		this.engines = checkNotNull(engines, "The engine registry must be provided");
+		this.executor = checkNotNull(executor, "The executor must be provided");
+		this.ownsExecutor = ownsExecutor;
+	}
+
+	@Override
+	public long solve(Problem problem) {
+		if (isDegenerate(problem)) {
+			return 0L;
+		}
+		final Optional<CountingEngine> engine = engines.find(problem);
+		if (engine.isPresent()) {
+			return engine.get().count(problem, new Job());
+		}
+		return solver.solve(problem);
+	}
+
+	@Override
+	public CompletableFuture<Long> submit(Problem problem) {
+		if (isDegenerate(problem)) {
+			return CompletableFuture.completedFuture(0L);
+		}
+		final Optional<CountingEngine> engine = engines.find(problem);
+		if (engine.isPresent()) {
+			final Job job = new Job();
+			return bind(CompletableFuture.supplyAsync(() -> engine.get().count(problem, job), executor), job);
+		}
+		return solver.submit(problem);
+	}
+
+	@Override
+	public CompletableFuture<Long> submit(Problem problem, ProgressListener listener, long period, TimeUnit unit) {
+		if (isDegenerate(problem) || engines.find(problem).isPresent()) {
+			return super.submit(problem, listener, period, unit);
+		}
+		return solver.submit(problem, listener, period, unit);
+	}
+
+	/**
+	 * {@inheritDoc} Counts of the specialized engines are not checkpointed: they count the whole
+	 * problem at once, so no subtree is recorded. Other problems are checkpointed by the underlying
+	 * solver.
+	 */
+	@Override
+	public long solve(Problem problem, Checkpoint checkpoint) {
+		check(problem, checkpoint);
+		if (isDegenerate(problem)) {
+			return 0L;
+		}
+		final Optional<CountingEngine> engine = engines.find(problem);
+		if (engine.isPresent()) {
+			return engine.get().count(problem, new Job());
+		}
+		return solver.solve(problem, checkpoint);
+	}
+
+	@Override
+	public List<Solution> solveAndGet(Problem problem) {
+		return solver.solveAndGet(problem);
+	}
+
+	@Override
+	public long solve(Problem problem, SolutionSink sink) {
+		return solver.solve(problem, sink);
+	}
+
+	@Override
+	public boolean exists(Problem problem) {
+		return solver.exists(problem);
+	}
+
+	@Override
+	public List<Solution> first(Problem problem, int k) {
+		return solver.first(problem, k);
+	}
+
+	@Override
+	public List<Solution> sample(Problem problem, int k, long seed) {
+		return solver.sample(problem, k, seed);
+	}
+
+	@Override
+	public SolutionGenerator generator(Problem problem) {
+		return solver.generator(problem);
+	}
+
+	@Override
+	public void close() {
+		if (ownsExecutor) {
+			executor.shutdownNow();
+		}
+		solver.close();
+	}
+
+}
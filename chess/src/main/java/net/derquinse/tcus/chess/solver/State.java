@@ -45,9 +45,18 @@ abstract class State implements Iterable<Position> {
 	 * @return the requested state.
 	 */
 	static State of(Size size, BitSet unavailable) {
-		if (checkNotNull(unavailable, "The availability set must be provided").length() == 0) {
+		final int length = checkNotNull(unavailable, "The availability set must be provided").length();
+		if (length == 0) {
 			return new Empty(size);
 		}
+		checkArgument(length <= size.getPositions(), "The availability set exceeds the board size");
+		final int n = size.getPositions();
+		if (n <= Long.SIZE) {
+			return new Small(size, unavailable.toLongArray()[0]);
+		} else if (n <= 2 * Long.SIZE) {
+			final long[] words = unavailable.toLongArray();
+			return new Medium(size, words[0], words.length > 1 ? words[1] : 0L);
+		}
 		return new Regular(size, unavailable);
 	}
 
@@ -78,8 +87,38 @@ abstract class State implements Iterable<Position> {
 	/** Internal merge method. Do not call externally. */
 	abstract State doMerge(State other);
 
+	/**
+	 * Returns the number of positions on or after the provided index that are available in both
+	 * states, without merging them.
+	 * @throws IllegalArgumentException if the other state is not the same size.
+	 */
+	final int countAvailable(State other, int from) {
+		final Size otherSize = checkNotNull(other, "The other state must be provided").getSize();
+		checkArgument(size.equals(otherSize), "The other state must be of the same size");
+		return from >= size.getPositions() ? 0 : doCountAvailable(other, from);
+	}
+
+	/** Internal count method. Do not call externally. */
+	abstract int doCountAvailable(State other, int from);
+
 	/** Method to check if a position is available. */
-	abstract boolean isAvailable(Position p);
+	final boolean isAvailable(Position p) {
+		return isAvailable(p.getIndex());
+	}
+
+	/** Method to check if the position with the provided index is available. */
+	abstract boolean isAvailable(int index);
+
+	/**
+	 * Returns the index of the first available position that occurs on or after the provided index.
+	 * @return The requested index or the number of positions of the board if there is none.
+	 */
+	abstract int nextAvailable(int from);
+
+	@Override
+	public final Iterator<Position> iterator() {
+		return new Availables();
+	}
 
 	/**
 	 * Empty board state.
@@ -89,11 +128,6 @@ abstract class State implements Iterable<Position> {
 			super(size);
 		}
 
-		@Override
-		public Iterator<Position> iterator() {
-			return getSize().iterator();
-		}
-
 		@Override
 		State doMerge(State other) {
 			return other;
@@ -105,10 +139,20 @@ abstract class State implements Iterable<Position> {
 		}
 
 		@Override
-		boolean isAvailable(Position p) {
+		int doCountAvailable(State other, int from) {
+			return other instanceof Empty ? getSize().getPositions() - from : other.doCountAvailable(this, from);
+		}
+
+		@Override
+		boolean isAvailable(int index) {
 			return true;
 		}
 
+		@Override
+		int nextAvailable(int from) {
+			return Math.min(from, getSize().getPositions());
+		}
+
 		@Override
 		public String toString() {
 			return "EmptyState";
@@ -116,7 +160,141 @@ abstract class State implements Iterable<Position> {
 	}
 
 	/**
-	 * Regular board state (at least one unavailable position).
+	 * Board state for boards up to 64 positions (at least one unavailable position), backed by a
+	 * single word.
+	 */
+	private static final class Small extends State {
+		/** Board state as a word. Zero bits mean available. */
+		private final long unavailable;
+
+		private Small(Size size, long unavailable) {
+			super(size);
+			this.unavailable = unavailable;
+		}
+
+		@Override
+		State doMerge(State other) {
+			if (other instanceof Small) {
+				final long merged = unavailable | ((Small) other).unavailable;
+				return merged == unavailable ? this : new Small(getSize(), merged);
+			}
+			return this; // the other is empty
+		}
+
+		@Override
+		int getAvailablePositions() {
+			return getSize().getPositions() - Long.bitCount(unavailable);
+		}
+
+		@Override
+		int doCountAvailable(State other, int from) {
+			final long merged = other instanceof Small ? unavailable | ((Small) other).unavailable : unavailable;
+			final int n = getSize().getPositions();
+			final long valid = n == Long.SIZE ? -1L : (1L << n) - 1L;
+			return Long.bitCount(~merged & valid & (-1L << from));
+		}
+
+		@Override
+		boolean isAvailable(int index) {
+			return (unavailable & (1L << index)) == 0;
+		}
+
+		@Override
+		int nextAvailable(int from) {
+			final int n = getSize().getPositions();
+			if (from >= n) {
+				return n;
+			}
+			final long available = ~unavailable & (-1L << from);
+			return available == 0 ? n : Math.min(Long.numberOfTrailingZeros(available), n);
+		}
+
+		@Override
+		public String toString() {
+			return String.format("State[%s]", BitSet.valueOf(new long[] { unavailable }));
+		}
+	}
+
+	/**
+	 * Board state for boards up to 128 positions (at least one unavailable position), backed by two
+	 * words.
+	 */
+	private static final class Medium extends State {
+		/** Board state for the first 64 positions. Zero bits mean available. */
+		private final long low;
+		/** Board state for the rest of the positions. Zero bits mean available. */
+		private final long high;
+
+		private Medium(Size size, long low, long high) {
+			super(size);
+			this.low = low;
+			this.high = high;
+		}
+
+		@Override
+		State doMerge(State other) {
+			if (other instanceof Medium) {
+				final Medium m = (Medium) other;
+				final long mergedLow = low | m.low;
+				final long mergedHigh = high | m.high;
+				return mergedLow == low && mergedHigh == high ? this : new Medium(getSize(), mergedLow, mergedHigh);
+			}
+			return this; // the other is empty
+		}
+
+		@Override
+		int getAvailablePositions() {
+			return getSize().getPositions() - Long.bitCount(low) - Long.bitCount(high);
+		}
+
+		@Override
+		int doCountAvailable(State other, int from) {
+			long mergedLow = low;
+			long mergedHigh = high;
+			if (other instanceof Medium) {
+				mergedLow |= ((Medium) other).low;
+				mergedHigh |= ((Medium) other).high;
+			}
+			final int n = getSize().getPositions() - Long.SIZE;
+			final long valid = n == Long.SIZE ? -1L : (1L << n) - 1L;
+			if (from >= Long.SIZE) {
+				return Long.bitCount(~mergedHigh & valid & (-1L << from));
+			}
+			return Long.bitCount(~mergedLow & (-1L << from)) + Long.bitCount(~mergedHigh & valid);
+		}
+
+		@Override
+		boolean isAvailable(int index) {
+			final long word = index < Long.SIZE ? low : high;
+			return (word & (1L << index)) == 0;
+		}
+
+		@Override
+		int nextAvailable(int from) {
+			final int n = getSize().getPositions();
+			if (from >= n) {
+				return n;
+			}
+			if (from < Long.SIZE) {
+				final long available = ~low & (-1L << from);
+				if (available != 0) {
+					return Long.numberOfTrailingZeros(available);
+				}
+				from = Long.SIZE;
+			}
+			final long available = ~high & (-1L << from);
+			return available == 0 ? n : Math.min(Long.SIZE + Long.numberOfTrailingZeros(available), n);
+		}
+
+		@Override
+		public String toString() {
+			return String.format("State[%s]", BitSet.valueOf(new long[] { low, high }));
+		}
+	}
+
+	/**
+	 * Regular board state (at least one unavailable position), used for boards of more than 128
+	 * positions.
 	 */
 	private static final class Regular extends State {
 		/**
@@ -127,16 +305,9 @@ abstract class State implements Iterable<Position> {
 
 		private Regular(Size size, BitSet unavailable) {
 			super(size);
-			final int last = unavailable.length() - 1;
-			checkArgument(last >= 0 && last < size.getPositions());
 			this.unavailable = unavailable;
 		}
 
-		@Override
-		public Iterator<Position> iterator() {
-			return new Availables();
-		}
-
 		@Override
 		State doMerge(State other) {
 			if (other instanceof Regular) {
@@ -154,40 +325,56 @@ abstract class State implements Iterable<Position> {
 		}
 
 		@Override
-		boolean isAvailable(Position p) {
-			return !unavailable.get(p.getIndex());
+		int doCountAvailable(State other, int from) {
+			final State merged = doMerge(other);
+			final int n = getSize().getPositions();
+			int count = 0;
+			for (int i = merged.nextAvailable(from); i < n; i = merged.nextAvailable(i + 1)) {
+				count++;
+			}
+			return count;
+		}
+
+		@Override
+		boolean isAvailable(int index) {
+			return !unavailable.get(index);
+		}
+
+		@Override
+		int nextAvailable(int from) {
+			return Math.min(unavailable.nextClearBit(from), getSize().getPositions());
 		}
 
 		@Override
 		public String toString() {
 			return String.format("State[%s]", unavailable);
 		}
+	}
 
-		private final class Availables implements Iterator<Position> {
-			/** Current index. */
-			private int current;
+	/** Iterator through the available positions. */
+	private final class Availables implements Iterator<Position> {
+		/** Current index. */
+		private int current;
 
-			/** Constructor. */
-			Availables() {
-				this.current = unavailable.nextClearBit(0);
-			}
+		/** Constructor. */
+		Availables() {
+			this.current = nextAvailable(0);
+		}
 
-			@Override
-			public boolean hasNext() {
-				return current < getSize().getPositions();
-			}
+		@Override
+		public boolean hasNext() {
+			return current < size.getPositions();
+		}
 
-			@Override
-			public Position next() {
-				if (!hasNext()) {
-					throw new NoSuchElementException();
-				}
-				final int value = current;
-				current = unavailable.nextClearBit(current + 1);
-				return getSize().getPosition(value);
+		@Override
+		public Position next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
 			}
+			final int value = current;
+			current = nextAvailable(current + 1);
+			return size.getPosition(value);
 		}
-
 	}
 
 }
@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.tcus.chess.solver;
+
+import java.util.Arrays;
+
+/**
+ * Recorder of the statistics of the default search (see {@link SearchStatistics}). Each thread
+ * records into its own array, indexed by depth, piece and counter, that is merged into the global
+ * totals (and cleared) when the thread finishes a task. Calls must be guarded by {@link #ENABLED},
+ * a constant, so that the JIT compiler removes them when statistics are disabled.
+ * @author Andres Rodriguez
+ */
+final class StatsRecorder {
+	/** Whether statistics are enabled. */
+	static final boolean ENABLED = Boolean.getBoolean(SearchStatistics.PROPERTY);
+	/** Nodes expanded counter. */
+	static final int NODES = 0;
+	/** Rejected candidates counter. */
+	static final int REJECTED = 1;
+	/** Pruned nodes counter. */
+	static final int PRUNED = 2;
+	/** Found solutions counter. */
+	static final int SOLUTIONS = 3;
+	/** Number of counters. */
+	static final int COUNTERS = 4;
+	/** Number of counters per depth. */
+	static final int STRIDE = COUNTERS * Piece.values().length;
+	/** Number of depths the counts of a thread are initially sized for (grown on demand). */
+	private static final int INITIAL_DEPTHS = 8;
+
+	/** Recorder of each thread. */
+	private static final ThreadLocal<StatsRecorder> LOCAL = ThreadLocal.withInitial(StatsRecorder::new);
+	/** Global totals (guarded by the class lock). */
+	private static long[] totals = new long[0];
+
+	/** Counts of the thread, by depth, piece and counter. */
+	private long[] counts = new long[INITIAL_DEPTHS * STRIDE];
+	/** Whether there are counts not merged yet. */
+	private boolean dirty = false;
+
+	/** Constructor. */
+	private StatsRecorder() {
+	}
+
+	/** Returns the index of a counter. */
+	static int index(int depth, Piece piece, int counter) {
+		return depth * STRIDE + piece.ordinal() * COUNTERS + counter;
+	}
+
+	/** Adds to a counter of the current thread. */
+	static void add(int depth, Piece piece, int counter, long n) {
+		final StatsRecorder r = LOCAL.get();
+		final int i = index(depth, piece, counter);
+		if (i >= r.counts.length) {
+			r.counts = Arrays.copyOf(r.counts, Math.max(2 * r.counts.length, (depth + 1) * STRIDE));
+		}
+		r.counts[i] += n;
+		r.dirty = true;
+	}
+
+	/** Merges the counts of the current thread into the global totals. */
+	static void flush() {
+		final StatsRecorder r = LOCAL.get();
+		if (r.dirty) {
+			merge(r.counts);
+			Arrays.fill(r.counts, 0L);
+			r.dirty = false;
+		}
+	}
+
+	/** Merges counts into the global totals. */
+	private static synchronized void merge(long[] counts) {
+		if (totals.length < counts.length) {
+			totals = Arrays.copyOf(totals, counts.length);
+		}
+		for (int i = 0; i < counts.length; i++) {
+			totals[i] += counts[i];
+		}
+	}
+
+	/** Returns a copy of the global totals, after merging the counts of the current thread. */
+	static long[] totals() {
+		flush();
+		synchronized (StatsRecorder.class) {
+			return totals.clone();
+		}
+	}
+
+	/** Clears the global totals and the counts of the current thread. */
+	static void reset() {
+		final StatsRecorder r = LOCAL.get();
+		Arrays.fill(r.counts, 0L);
+		r.dirty = false;
+		synchronized (StatsRecorder.class) {
+			totals = new long[0];
+		}
+	}
+}
@@ -20,6 +20,8 @@ import static com.google.common.base.Preconditions.checkNotNull;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 import com.google.common.collect.ImmutableList;
@@ -29,40 +31,105 @@ import com.google.common.collect.Lists;
 /**
  * Value representing a solver step. Even though is not immutable, it is safely published by the
  * blocking queue backing the executor service.
+ * <p>
+ * Besides the board state, each step carries, for each kind left to place, the state of the
+ * positions from which the kind would threaten a placed piece (as threats are symmetric, those
+ * threatened by the kind from the placed pieces positions), so legal positions are found merging it
+ * with the board state instead of checking every placed piece. Before descending, the branch is
+ * abandoned if any kind has fewer legal positions left than pieces to place (forward checking).
  * @author Andres Rodriguez
  */
 final class Step {
+	/**
+	 * Minimum number of pieces left to place for forward checking. With a single piece the check is
+	 * the search itself.
+	 */
+	private static final int FORWARD_PIECES = 2;
+
 	/** Problem pieces. */
 	private final ImmutableList<Piece> pieces;
+	/** Attack table for the board size. */
+	private final AttackTable table;
+	/** Kind of each piece, as an index in the forbidden states. Shared, never modified. */
+	private final int[] kinds;
+	/** Number of pieces up to the last one of each kind. Shared, never modified. */
+	private final int[] ends;
+	/** Job the step belongs to. */
+	private final Job job;
 	/** Current board state. */
 	private final State state;
+	/**
+	 * Positions from which each kind would threaten a placed piece of a different kind, by kind (those
+	 * threatening a piece of the same kind are already unavailable). Only kept for kinds left to place.
+	 */
+	private final State[] forbidden;
 	/** Placed pieces positions. */
 	private final Position[] positions;
 
-	/** Creates the inital step for a problem. */
+	/** Creates the inital step for a problem, that cannot be cancelled. */
 	static Step initial(Problem problem) {
+		return initial(problem, new Job());
+	}
+
+	/** Creates the inital step for a problem, belonging to the provided job. */
+	static Step initial(Problem problem, Job job) {
 		checkNotNull(problem, "The problem must be provided");
+		checkNotNull(job, "The job must be provided");
 		List<Piece> pieces = problem.getPieces().stream().sorted(Comparator.comparing(p -> p.getSearchOrder()))
 				.collect(Collectors.toList());
-		return new Step(ImmutableList.copyOf(pieces), State.empty(problem.getSize()));
+		final Size size = problem.getSize();
+		return new Step(ImmutableList.copyOf(pieces), AttackTable.of(size), job, State.empty(size));
 	}
 
 	/** Constructor for initial state. */
-	private Step(ImmutableList<Piece> pieces, State state) {
+	private Step(ImmutableList<Piece> pieces, AttackTable table, Job job, State state) {
 		this.pieces = pieces;
+		this.table = table;
+		this.kinds = new int[pieces.size()];
+		for (int i = 1; i < kinds.length; i++) {
+			kinds[i] = pieces.get(i).equals(pieces.get(i - 1)) ? kinds[i - 1] : kinds[i - 1] + 1;
+		}
+		this.ends = new int[kinds.length == 0 ? 0 : kinds[kinds.length - 1] + 1];
+		for (int i = 0; i < kinds.length; i++) {
+			ends[kinds[i]] = i + 1;
+		}
+		this.job = job;
 		this.state = state;
+		this.forbidden = new State[ends.length];
+		Arrays.fill(forbidden, state);
 		this.positions = new Position[0];
 	}
 
 	/** Constructor for incremental step. */
 	private Step(Step current, Position p, State s) {
 		this.pieces = current.pieces;
+		this.table = current.table;
+		this.kinds = current.kinds;
+		this.ends = current.ends;
+		this.job = current.job;
 		this.state = current.state.merge(s);
 		int n = current.positions.length;
+		this.forbidden = current.forbidden.clone();
+		// Only kinds left to place other than the placed one are needed
+		for (int i = n + 1; i < kinds.length; i++) {
+			if (kinds[i] != kinds[i - 1]) {
+				forbidden[kinds[i]] = forbidden[kinds[i]].merge(table.getState(pieces.get(i), p));
+			}
+		}
 		this.positions = Arrays.copyOf(current.positions, n + 1);
 		this.positions[n] = p;
 	}
 
+	/** Returns the number of placed pieces. */
+	int getDepth() {
+		return positions.length;
+	}
+
+	/** Returns the index of the position of the first placed piece. Assumes a piece is placed. */
+	int getFirstPlaced() {
+		return positions[0].getIndex();
+	}
+
 	/** Returns whether this step represents a solution. */
 	private boolean isSolution() {
 		return positions.length == pieces.size();
@@ -97,15 +164,32 @@ final class Step {
 	/**
 	 * Computes the next steps in the search.
 	 * @param counter Solution counter.
-	 * @param aggregator Solution aggregator (may be {@code null}).
+	 * @param solutions Found solutions consumer (may be {@code null}).
 	 * @return The next steps to search. Empty if the search through this path must end.
 	 * @throws IllegalStateException if the step is a solution.
+	 * @throws CancellationException if the job is cancelled during the search.
 	 */
-	List<Step> nextSteps(SolutionCounter counter, SolutionAggregator aggregator) {
+	List<Step> nextSteps(SolutionCounter counter, Consumer<? super Solution> solutions) {
+		return nextSteps(counter, solutions, null);
+	}
+
+	/**
+	 * Computes the next steps in the search, recording the visited nodes and found solutions below
+	 * the first placement.
+	 * @param counter Solution counter.
+	 * @param solutions Found solutions consumer (may be {@code null}).
+	 * @param meter Meter of the current thread (may be {@code null}).
+	 * @return The next steps to search. Empty if the search through this path must end.
+	 * @throws CancellationException if the job is cancelled during the search.
+	 */
+	List<Step> nextSteps(SolutionCounter counter, Consumer<? super Solution> solutions, ProgressTracker.Meter meter) {
 		if (isSolution()) {
-			counter.accept(1);
-			if (aggregator != null) {
-				aggregator.accept(ImmutableList.of(getSolution()));
+			if (StatsRecorder.ENABLED) {
+				StatsRecorder.add(positions.length - 1, getLastPiece(), StatsRecorder.SOLUTIONS, 1L);
+			}
+			counter.accept(1L);
+			if (solutions != null) {
+				solutions.accept(getSolution());
 			}
 			return ImmutableList.of();
 		}
@@ -113,66 +197,107 @@ final class Step {
 		final int n = state.getAvailablePositions();
 		if (n < 1 || n < pieces.size() - positions.length) {
 			// No room left for remaining pieces
+			if (StatsRecorder.ENABLED) {
+				StatsRecorder.add(positions.length, getNextPiece(), StatsRecorder.PRUNED, 1L);
+			}
 			return ImmutableList.of();
 		}
 		// Initial state
 		if (positions.length == 0) {
+			if (StatsRecorder.ENABLED) {
+				StatsRecorder.add(0, getNextPiece(), StatsRecorder.NODES, 1L);
+			}
 			final Piece nextPiece = getNextPiece();
 			final List<Step> steps = Lists.newArrayListWithCapacity(n);
 			// All positions are available.
 			for (Position p : state) {
-				final State pieceState = nextPiece.getState(p);
+				final State pieceState = table.getState(nextPiece, p);
 				steps.add(new Step(this, p, pieceState));
 			}
 			return steps;
 		} else {
 			// Only one piece placed
-			final List<Solution> solutions = aggregator != null ? Lists.newLinkedList() : null;
-			final int count = recurse(solutions);
+			final long count = recurse(solutions, meter);
 			// Aggregate into global
 			counter.accept(count);
-			if (aggregator != null) {
-				aggregator.accept(solutions);
-			}
 			return ImmutableList.of();
 		}
 	}
 
-	private int recurse(List<Solution> solutions) {
+	private long recurse(Consumer<? super Solution> solutions, ProgressTracker.Meter meter) {
+		if (meter != null) {
+			meter.node();
+		}
 		if (isSolution()) {
+			if (meter != null) {
+				meter.solution();
+			}
+			if (StatsRecorder.ENABLED) {
+				StatsRecorder.add(positions.length - 1, getLastPiece(), StatsRecorder.SOLUTIONS, 1L);
+			}
 			if (solutions != null) {
-				solutions.add(getSolution());
+				solutions.accept(getSolution());
 			}
-			return 1;
+			return 1L;
 		}
+		// A volatile read per node is negligible compared with the node allocation.
+		job.checkNotCancelled();
 		final Piece nextPiece = getNextPiece();
 		final boolean samePiece = nextPiece.equals(getLastPiece());
-		final Position lastPos = positions[positions.length - 1];
-		int count = 0;
-		for (Position p : state) {
-			// If two pieces are the same kind, only look forward
-			if (!samePiece || p.compareTo(lastPos) > 0) {
-				final State pieceState = nextPiece.getState(p);
-				if (validState(pieceState)) {
-					final Step next = new Step(this, p, pieceState);
-					// Recurse
-					count += next.recurse(solutions);
-				}
+		// If two pieces are the same kind, only look forward
+		final int first = samePiece ? positions[positions.length - 1].getIndex() + 1 : 0;
+		final int last = state.getSize().getPositions();
+		if (pieces.size() - positions.length >= FORWARD_PIECES && !isFeasible(first)) {
+			if (StatsRecorder.ENABLED) {
+				StatsRecorder.add(positions.length, nextPiece, StatsRecorder.PRUNED, 1L);
 			}
+			return 0L;
+		}
+		// Available positions from which the piece does not threaten any placed one
+		final State legal = state.merge(forbidden[kinds[positions.length]]);
+		long count = 0L;
+		for (int i = legal.nextAvailable(first); i < last; i = legal.nextAvailable(i + 1)) {
+			final Step next = new Step(this, table.getPosition(i), table.getState(nextPiece, i));
+			// Recurse
+			count += next.recurse(solutions, meter);
+		}
+		if (StatsRecorder.ENABLED) {
+			record(first, last, legal);
 		}
 		return count;
 	}
 
-	/** Checks that the provided state does not threaten any of the current step positions. */
-	private boolean validState(State s) {
-		for (Position p : positions) {
-			if (!s.isAvailable(p)) {
+	/**
+	 * Returns whether every kind left to place has at least as many legal positions left as pieces of
+	 * the kind to place.
+	 * @param first First position of the next piece (positions before it are left for the same kind).
+	 */
+	private boolean isFeasible(int first) {
+		final int k = kinds[positions.length];
+		if (state.countAvailable(forbidden[k], first) < ends[k] - positions.length) {
+			return false;
+		}
+		for (int kk = k + 1; kk < ends.length; kk++) {
+			if (state.countAvailable(forbidden[kk], 0) < ends[kk] - ends[kk - 1]) {
 				return false;
 			}
 		}
 		return true;
 	}
 
+	/** Records the statistics of an expanded node. */
+	private void record(int first, int last, State legal) {
+		final Piece nextPiece = getNextPiece();
+		long rejected = 0L;
+		for (int i = state.nextAvailable(first); i < last; i = state.nextAvailable(i + 1)) {
+			if (!legal.isAvailable(table.getPosition(i))) {
+				rejected++;
+			}
+		}
+		StatsRecorder.add(positions.length, nextPiece, StatsRecorder.NODES, 1L);
+		StatsRecorder.add(positions.length, nextPiece, StatsRecorder.REJECTED, rejected);
+	}
+
 	@Override
 	public String toString() {
 		return String.format("Step[%s]%s[%s]", state, Arrays.toString(positions),
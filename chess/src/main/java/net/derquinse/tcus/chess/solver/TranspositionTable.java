@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.tcus.chess.solver;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.Arrays;
+import java.util.List;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
+/**
+ * Bounded concurrent table of subtree solution counts, used to avoid searching again identical
+ * subproblems reached through different placements. A subproblem is identified by value: the board
+ * size, the pieces left to place (in search order) and the positions where each remaining kind may
+ * still be placed, which summarize the unavailable and occupied masks. So a table may be shared by
+ * several solves, that find the subproblems of the previous ones. The table is segmented to reduce
+ * contention, and the least recently used entries are evicted when full. Only counting searches use
+ * the table.
+ * @author Andres Rodriguez
+ */
+public final class TranspositionTable {
+	/** Estimated memory used by an entry, not including the masks. */
+	private static final int ENTRY_BYTES = 128;
+
+	/** Counts by subproblem. */
+	private final Cache<Key, Long> counts;
+
+	/**
+	 * Creates a new table.
+	 * @param maximumEntries Maximum number of entries.
+	 * @param concurrencyLevel Estimated number of threads using the table.
+	 * @throws IllegalArgumentException if any argument is less than 1.
+	 */
+	public static TranspositionTable create(long maximumEntries, int concurrencyLevel) {
+		checkArgument(maximumEntries > 0, "The maximum number of entries must be at least 1");
+		checkArgument(concurrencyLevel > 0, "The concurrency level must be at least 1");
+		return new TranspositionTable(maximumEntries, concurrencyLevel);
+	}
+
+	/** Constructor. */
+	private TranspositionTable(long maximumEntries, int concurrencyLevel) {
+		this.counts = CacheBuilder.newBuilder().maximumSize(maximumEntries).concurrencyLevel(concurrencyLevel)
+				.recordStats().build();
+	}
+
+	/** Returns the count of a subproblem, or {@code null} if not found. */
+	Long get(Key key) {
+		return counts.getIfPresent(key);
+	}
+
+	/** Stores the count of a subproblem. */
+	void put(Key key, long count) {
+		counts.put(key, count);
+	}
+
+	/** Returns the number of lookups that found the subproblem. */
+	public long getHits() {
+		return counts.stats().hitCount();
+	}
+
+	/** Returns the number of lookups that did not find the subproblem. */
+	public long getMisses() {
+		return counts.stats().missCount();
+	}
+
+	/** Returns the ratio of lookups that found the subproblem (1.0 if there were no lookups). */
+	public double getHitRate() {
+		return counts.stats().hitRate();
+	}
+
+	/** Returns the number of evicted entries. */
+	public long getEvictions() {
+		return counts.stats().evictionCount();
+	}
+
+	/** Returns the approximate number of entries. */
+	public long getEntries() {
+		return counts.size();
+	}
+
+	/** Returns the estimated memory used by the entries, in bytes. */
+	public long getEstimatedBytes() {
+		long bytes = 0L;
+		for (Key k : counts.asMap().keySet()) {
+			bytes += ENTRY_BYTES + k.masks.length * Long.BYTES;
+		}
+		return bytes;
+	}
+
+	/** Removes all the entries. Statistics are kept. */
+	public void clear() {
+		counts.invalidateAll();
+	}
+
+	@Override
+	public String toString() {
+		final CacheStats s = counts.stats();
+		return String.format("TranspositionTable[%d entries, %d hits, %d misses, %.1f%% hit rate, ~%d KiB]",
+				counts.size(), s.hitCount(), s.missCount(), 100.0 * s.hitRate(), getEstimatedBytes() / 1024);
+	}
+
+	/** Subproblem key, compared by value. */
+	static final class Key {
+		/** Board size. */
+		private final Size size;
+		/** Pieces left to place, in search order. */
+		private final List<Piece> pieces;
+		/** Masks of the positions available to each remaining kind. */
+		private final long[] masks;
+		/** Hash code. */
+		private final int hash;
+
+		/** Constructor. */
+		Key(Size size, List<Piece> pieces, long[] masks) {
+			this.size = size;
+			this.pieces = pieces;
+			this.masks = masks;
+			this.hash = 31 * (31 * size.hashCode() + pieces.hashCode()) + Arrays.hashCode(masks);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (obj instanceof Key) {
+				final Key other = (Key) obj;
+				return hash == other.hash && size.equals(other.size) && pieces.equals(other.pieces)
+						&& Arrays.equals(masks, other.masks);
+			}
+			return false;
+		}
+	}
+
+}
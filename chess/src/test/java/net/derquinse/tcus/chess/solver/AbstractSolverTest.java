@@ -0,0 +1,249 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.tcus.chess.solver;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotEquals;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Base class for solver tests.
+ * @author Andres Rodriguez
+ */
+public abstract class AbstractSolverTest {
+	private final Solver solver;
+
+	/** Constructor. */
+	protected AbstractSolverTest(Solver solver) {
+		this.solver = solver;
+	}
+
+	private long check(Problem p, long expectedSolutions) {
+		long solutions = solver.solve(p);
+		assertEquals(solutions, expectedSolutions);
+		return solutions;
+	}
+
+	private long check(Problem.Builder b, long expectedSolutions) {
+		return check(b.build(), expectedSolutions);
+	}
+
+	private List<Solution> checkAndGet(Problem p, int expectedSolutions) {
+		List<Solution> solutions = solver.solveAndGet(p);
+		assertEquals(solutions.size(), expectedSolutions);
+		return solutions;
+	}
+
+	private List<Solution> checkAndGet(Problem.Builder b, int expectedSolutions) {
+		return checkAndGet(b.build(), expectedSolutions);
+	}
+
+	/** Streaming solutions. */
+	@Test
+	public void streaming() {
+		final Problem p = Problem.builder(Size.of(7, 7)).addPieces(Piece.KING, 2).addPieces(Piece.QUEEN, 3)
+				.addPieces(Piece.BISHOP, 2).addPieces(Piece.KNIGHT, 1).build();
+		final Thread caller = Thread.currentThread();
+		final long[] received = new long[1];
+		final long count = solver.solve(p, s -> {
+			assertSame(Thread.currentThread(), caller);
+			received[0]++;
+		});
+		assertEquals(count, 169464L);
+		assertEquals(received[0], count);
+	}
+
+	/** Existence checks. */
+	@Test
+	public void exists() {
+		assertTrue(solver.exists(Problem.builder(Size.of(8, 8)).addPieces(Piece.QUEEN, 8).build()));
+		assertFalse(solver.exists(Problem.builder(Size.of(3, 3)).addPieces(Piece.QUEEN, 3).build()));
+		assertFalse(solver.exists(Problem.builder(Size.of(15, 15)).build()));
+		// Stops at the first solution
+		assertTrue(solver.exists(Problem.builder(Size.of(20, 20)).addPieces(Piece.KING, 5).addPieces(Piece.QUEEN, 5)
+				.addPieces(Piece.BISHOP, 5).addPieces(Piece.KNIGHT, 5).build()));
+	}
+
+	/** First solutions. */
+	@Test
+	public void first() throws Exception {
+		final Problem p = Problem.builder(Size.of(4, 4)).addPieces(Piece.ROOK, 2).addPieces(Piece.KNIGHT, 4).build();
+		final Set<Solution> all = ImmutableSet.copyOf(solver.solveAndGet(p));
+		final List<Solution> first = solver.first(p, 3);
+		assertEquals(first.size(), 3);
+		assertEquals(ImmutableSet.copyOf(first).size(), 3);
+		assertTrue(all.containsAll(first));
+		assertEquals(ImmutableSet.copyOf(solver.first(p, 10)), all);
+		assertTrue(solver.first(p, 0).isEmpty());
+		// Stops when enough solutions are found, releasing the solver threads
+		assertEquals(solver.first(Problem.builder(Size.of(14, 14)).addPieces(Piece.QUEEN, 14).build(), 5).size(), 5);
+		assertEquals(solver.solve(Problem.builder(Size.of(8, 8)).addPieces(Piece.QUEEN, 8).build(), 30, TimeUnit.SECONDS),
+				92L);
+	}
+
+	/** Random samples. */
+	@Test
+	public void sample() {
+		final Problem p = Problem.builder(Size.of(8, 8)).addPieces(Piece.QUEEN, 8).build();
+		final Set<Solution> all = ImmutableSet.copyOf(solver.solveAndGet(p));
+		final List<Solution> sample = solver.sample(p, 5, 1L);
+		assertEquals(sample.size(), 5);
+		assertEquals(ImmutableSet.copyOf(sample).size(), 5);
+		assertTrue(all.containsAll(sample));
+		// The sample depends only on the seed
+		try (Solver other = new BitboardSolver()) {
+			assertEquals(sample, other.sample(p, 5, 1L));
+		}
+		assertNotEquals(sample, solver.sample(p, 5, 2L));
+		assertEquals(ImmutableSet.copyOf(solver.sample(p, 100, 1L)), all);
+		assertTrue(solver.sample(p, 0, 1L).isEmpty());
+	}
+
+	/** Random solution generators. */
+	@Test
+	public void generator() {
+		final Problem p = Problem.builder(Size.of(8, 8)).addPieces(Piece.QUEEN, 8).build();
+		final Set<Solution> all = ImmutableSet.copyOf(solver.solveAndGet(p));
+		final SolutionGenerator g = solver.generator(p);
+		assertEquals(g.getCount(), 92L);
+		final Random random = new Random(1L);
+		for (int i = 0; i < 100; i++) {
+			assertTrue(all.contains(g.next(random)));
+		}
+		assertEquals(solver.generator(Problem.builder(Size.of(3, 3)).addPieces(Piece.QUEEN, 3).build()).getCount(), 0L);
+	}
+
+	/** Background solve. */
+	@Test
+	public void submit() throws Exception {
+		final Problem p = Problem.builder(Size.of(4, 4)).addPieces(Piece.ROOK, 2).addPieces(Piece.KNIGHT, 4).build();
+		assertEquals(solver.submit(p).get(30, TimeUnit.SECONDS).longValue(), 8L);
+	}
+
+	/** Cancelled solves release the solver threads. */
+	@Test
+	public void cancel() throws Exception {
+		final Future<Long> f = solver.submit(Problem.builder(Size.of(14, 14)).addPieces(Piece.QUEEN, 14).build());
+		Thread.sleep(20L);
+		f.cancel(true);
+		assertTrue(f.isCancelled());
+		assertEquals(solver.solve(Problem.builder(Size.of(8, 8)).addPieces(Piece.QUEEN, 8).build(), 30, TimeUnit.SECONDS),
+				92L);
+	}
+
+	/** Timed out solves release the solver threads. */
+	@Test
+	public void timeout() throws Exception {
+		try {
+			solver.solve(Problem.builder(Size.of(14, 14)).addPieces(Piece.QUEEN, 14).build(), 20, TimeUnit.MILLISECONDS);
+			fail("Timeout expected");
+		} catch (TimeoutException e) {
+			// ok
+		}
+		assertEquals(solver.solve(Problem.builder(Size.of(8, 8)).addPieces(Piece.QUEEN, 8).build(), 30, TimeUnit.SECONDS),
+				92L);
+	}
+
+	/** Base case. */
+	@Test
+	public void base() {
+		check(Problem.builder(Size.of(2, 2)).addPieces(Piece.QUEEN, 1), 4);
+	}
+
+	/** Example 1. */
+	@Test
+	public void example1() {
+		for (Solution s : checkAndGet(Problem.builder(Size.of(3, 3)).addPieces(Piece.KING, 2).addPieces(Piece.ROOK, 1), 4)) {
+			System.out.println(s.draw());
+		}
+	}
+
+	/** Example 2. */
+	@Test
+	public void example2() {
+		for (Solution s : checkAndGet(Problem.builder(Size.of(4, 4)).addPieces(Piece.KNIGHT, 4).addPieces(Piece.ROOK, 2), 8)) {
+			System.out.println(s.draw());
+		}
+	}
+
+	/** Empty. */
+	@Test
+	public void empty() {
+		check(Problem.builder(Size.of(15, 15)), 0);
+	}
+
+	/** One piece. */
+	@Test
+	public void onePiece() {
+		check(Problem.builder(Size.of(8, 8)).addPieces(Piece.QUEEN, 1), 64);
+	}
+
+	private void queens(int n, int sols) {
+		check(Problem.builder(Size.of(n, n)).addPieces(Piece.QUEEN, n), sols);
+	}
+
+	/** Four queens. */
+	@Test
+	public void fourQueens() {
+		queens(4, 2);
+	}
+
+	/** Five queens. */
+	@Test
+	public void fiveQueens() {
+		queens(5, 10);
+	}
+
+	/** Six queens. */
+	@Test
+	public void sixQueens() {
+		queens(6, 4);
+	}
+
+	/** Eight queens. */
+	@Test
+	public void eightQueens() {
+		check(Problem.builder(Size.of(8, 8)).addPieces(Piece.QUEEN, 8), 92);
+	}
+
+	/** Simplified Challenge (1 more queen). */
+	@Test
+	public void simplifiedChallenge() {
+		check(Problem.builder(Size.of(7, 7)).addPieces(Piece.KING, 2).addPieces(Piece.QUEEN, 3).addPieces(Piece.BISHOP, 2)
+				.addPieces(Piece.KNIGHT, 1), 169464);
+	}
+
+	/** Challenge. */
+	@Test
+	public void challenge() {
+		check(Problem.builder(Size.of(7, 7)).addPieces(Piece.KING, 2).addPieces(Piece.QUEEN, 2).addPieces(Piece.BISHOP, 2)
+				.addPieces(Piece.KNIGHT, 1), 3063828);
+	}
+}
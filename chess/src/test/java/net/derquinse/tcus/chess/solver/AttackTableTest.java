@@ -0,0 +1,55 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.tcus.chess.solver;
+
+import static com.google.common.collect.Sets.newHashSet;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+
+import org.testng.annotations.Test;
+
+/**
+ * Tests for AttackTable.
+ * @author Andres Rodriguez
+ */
+public final class AttackTableTest {
+	/** Tables are cached by size. */
+	@Test
+	public void cached() {
+		assertSame(AttackTable.of(Size.of(5, 6)), AttackTable.of(Size.of(5, 6)));
+	}
+
+	/** Table states are the ones built by the pieces. */
+	@Test
+	public void states() {
+		final Size size = Size.of(5, 6);
+		final AttackTable table = AttackTable.of(size);
+		for (Piece piece : Piece.values()) {
+			for (Position p : size) {
+				assertEquals(table.getPosition(p.getIndex()), p);
+				assertEquals(newHashSet(table.getState(piece, p)), newHashSet(piece.getState(p)));
+				assertSame(table.getState(piece, p.getIndex()), table.getState(piece, p));
+			}
+		}
+	}
+
+	/** Positions of other sizes are rejected. */
+	@Test(expectedExceptions = IllegalArgumentException.class)
+	public void invalidSize() {
+		AttackTable.of(Size.of(5, 6)).getState(Piece.KING, Size.of(6, 5).getPosition(0));
+	}
+
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.tcus.chess.solver;
+
+import static com.google.common.collect.Sets.newHashSet;
+import static org.testng.Assert.assertEquals;
+
+import org.testng.annotations.Test;
+
+/**
+ * Tests for Bitboard Solver.
+ * @author Andres Rodriguez
+ */
+public final class BitboardSolverTest extends AbstractSolverTest {
+	/** Constructor. */
+	public BitboardSolverTest() {
+		super(new BitboardSolver());
+	}
+
+	/** Found solutions are the same as the default solver ones. */
+	@Test
+	public void sameSolutions() {
+		final Problem p = Problem.builder(Size.of(5, 5)).addPieces(Piece.KING, 2).addPieces(Piece.ROOK, 1)
+				.addPieces(Piece.KNIGHT, 2).build();
+		assertEquals(newHashSet(new BitboardSolver().solveAndGet(p)), newHashSet(new DefaultSolver(1).solveAndGet(p)));
+	}
+
+	/** Forward checking does not lose solutions. */
+	@Test
+	public void forwardChecking() {
+		final Problem[] problems = { Problem.builder(Size.of(5, 5)).addPieces(Piece.ROOK, 4).addPieces(Piece.KING, 1).build(),
+				Problem.builder(Size.of(4, 5)).addPieces(Piece.ROOK, 3).addPieces(Piece.KNIGHT, 3).build(),
+				Problem.builder(Size.of(4, 4)).addPieces(Piece.ROOK, 4).addPieces(Piece.KNIGHT, 1).build(),
+				Problem.builder(Size.of(5, 5)).addPieces(Piece.QUEEN, 2).addPieces(Piece.BISHOP, 3).build() };
+		for (Problem p : problems) {
+			assertEquals(new BitboardSolver().solve(p), new DefaultSolver(1).solve(p), p.toString());
+		}
+	}
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.tcus.chess.solver;
+
+import static org.testng.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Tests for Checkpoint.
+ * @author Andres Rodriguez
+ */
+public final class CheckpointTest {
+	private static Problem problem() {
+		return Problem.builder(Size.of(6, 6)).addPieces(Piece.KING, 3).addPieces(Piece.KNIGHT, 3).addPieces(Piece.ROOK, 2)
+				.build();
+	}
+
+	private static Path file() throws IOException {
+		return Files.createTempDirectory("checkpoint").resolve("problem.checkpoint");
+	}
+
+	/** Checks a solver records and resumes checkpoints, closing it. */
+	static void check(Solver solver) throws IOException {
+		try (Solver s = solver) {
+			final Problem p = problem();
+			final long expected = BitboardSearch.of(p).count();
+			final Path file = file();
+			final Checkpoint c = Checkpoint.create(file, p);
+			assertEquals(s.solve(p, c), expected);
+			assertEquals(c.getCompleted(), 36);
+			assertEquals(c.getCount(), expected);
+			// Resumes from a partial checkpoint
+			final List<String> lines = Files.readAllLines(file, StandardCharsets.US_ASCII);
+			assertEquals(lines.size(), 37);
+			Files.write(file, lines.subList(0, 20), StandardCharsets.US_ASCII);
+			final Checkpoint partial = Checkpoint.resume(file, p);
+			assertEquals(partial.getCompleted(), 19);
+			assertEquals(s.solve(p, partial), expected);
+			assertEquals(partial.getCompleted(), 36);
+			// Completed subtrees are not searched again
+			Files.write(file, ImmutableList.of("checkpoint 6x6-K3R2N3", "0 1000000"), StandardCharsets.US_ASCII);
+			final Checkpoint fake = Checkpoint.resume(file, p, 0, TimeUnit.SECONDS);
+			assertEquals(s.solve(p, fake), expected - subtree(p, 0) + 1000000L);
+		}
+	}
+
+	/** Count of the subtree with the first piece in the provided position. */
+	private static long subtree(Problem p, int index) {
+		final BitboardSearch search = BitboardSearch.of(p);
+		search.push(index);
+		return search.count();
+	}
+
+	/** Default solver. */
+	@Test
+	public void defaultSolver() throws IOException {
+		check(Solvers.defaultSolver(2));
+	}
+
+	/** Fork-join solver, which ignores the piece order. */
+	@Test
+	public void forkJoinSolver() throws IOException {
+		check(Solvers.forkJoinSolver(2, PieceOrder.ATTACKS));
+	}
+
+	/** Symmetric solver, which does not use symmetry reduction. */
+	@Test
+	public void symmetricSolver() throws IOException {
+		check(Solvers.symmetricSolver(2));
+	}
+
+	/** Memoizing solver. */
+	@Test
+	public void memoizingSolver() throws IOException {
+		check(Solvers.memoizingSolver(2, TranspositionTable.create(1 << 12, 2)));
+	}
+
+	/** Generic implementation. */
+	@Test
+	public void bitboardSolver() throws IOException {
+		check(Solvers.bitboardSolver());
+	}
+
+	/** Resuming a missing file. */
+	@Test
+	public void missing() throws IOException {
+		final Checkpoint c = Checkpoint.resume(file(), problem());
+		assertEquals(c.getCompleted(), 0);
+		assertEquals(c.getCount(), 0L);
+	}
+
+	/** Files of other problems are rejected. */
+	@Test(expectedExceptions = IllegalArgumentException.class)
+	public void otherProblem() throws IOException {
+		final Path file = file();
+		final Checkpoint c = Checkpoint.create(file, problem(), 0, TimeUnit.SECONDS);
+		c.complete(3, 4L);
+		Checkpoint.resume(file, Problem.builder(Size.of(6, 6)).addPieces(Piece.KING, 3).build());
+	}
+
+	/** Invalid files are rejected. */
+	@Test(expectedExceptions = IllegalArgumentException.class)
+	public void invalid() throws IOException {
+		final Path file = file();
+		Files.write(file, ImmutableList.of("checkpoint 6x6-K3R2N3", "36 1"), StandardCharsets.US_ASCII);
+		Checkpoint.resume(file, problem());
+	}
+
+	/** Checkpoints of other problems are rejected by solvers. */
+	@Test(expectedExceptions = IllegalArgumentException.class)
+	public void solverCheck() throws IOException {
+		try (Solver s = Solvers.bitboardSolver()) {
+			s.solve(Problem.builder(Size.of(6, 6)).addPieces(Piece.KING, 3).build(), Checkpoint.create(file(), problem()));
+		}
+	}
+}
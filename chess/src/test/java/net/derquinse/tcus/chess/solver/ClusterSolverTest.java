@@ -0,0 +1,294 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.tcus.chess.solver;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.Test;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+/**
+ * Tests for the cluster solver and its workers.
+ * @author Andres Rodriguez
+ */
+public final class ClusterSolverTest extends AbstractSolverTest {
+	/** Workers shared by the tests. */
+	private static final List<SolverWorker> WORKERS = start(2);
+
+	/** Starts local workers on ephemeral ports. */
+	private static List<SolverWorker> start(int n) {
+		final List<SolverWorker> workers = Lists.newArrayList();
+		try {
+			for (int i = 0; i < n; i++) {
+				workers.add(SolverWorker.start(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0)));
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return workers;
+	}
+
+	/** Returns the loopback address of a port. */
+	private static InetSocketAddress local(int port) {
+		return new InetSocketAddress(InetAddress.getLoopbackAddress(), port);
+	}
+
+	/** Returns a free port. */
+	private static int freePort() throws IOException {
+		try (ServerSocket s = new ServerSocket(0)) {
+			return s.getLocalPort();
+		}
+	}
+
+	/** Constructor. */
+	public ClusterSolverTest() {
+		super(new ClusterSolver(ImmutableList.of(local(WORKERS.get(0).getPort()), local(WORKERS.get(1).getPort()),
+				local(WORKERS.get(1).getPort()))));
+	}
+
+	@AfterClass
+	public void stop() {
+		for (SolverWorker w : WORKERS) {
+			w.close();
+		}
+	}
+
+	private static Problem problem() {
+		return Problem.builder(Size.of(6, 6)).addPieces(Piece.KING, 3).addPieces(Piece.KNIGHT, 3).addPieces(Piece.ROOK, 2)
+				.build();
+	}
+
+	/** The shard counts add up to the problem count. */
+	@Test
+	public void partition() {
+		final Problem p = problem();
+		final List<Shard> shards = Shard.partition(p, 100);
+		assertTrue(shards.size() >= 100);
+		long count = 0L;
+		for (Shard s : shards) {
+			count += s.count(new Job());
+		}
+		assertEquals(count, BitboardSearch.of(p).count());
+		assertEquals(Shard.partition(Problem.builder(Size.of(3, 3)).addPieces(Piece.QUEEN, 1).build(), 100).size(), 1);
+		assertEquals(Shard.partition(Problem.builder(Size.of(2, 2)).addPieces(Piece.QUEEN, 3).build(), 100).size(), 0);
+	}
+
+	/** Shards of failed connections are retried in the rest. */
+	@Test
+	public void retry() throws Exception {
+		// Reads the start of the first request and closes the connection, refusing new ones
+		try (ServerSocket flaky = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+				Solver solver = new ClusterSolver(ImmutableList.of(local(flaky.getLocalPort()), local(freePort()),
+						local(WORKERS.get(0).getPort())))) {
+			final Thread t = new Thread(() -> {
+				try (Socket s = flaky.accept()) {
+					flaky.close();
+					s.getInputStream().read(new byte[16]);
+				} catch (IOException e) {
+					// Test failure
+				}
+			});
+			t.start();
+			final Problem p = problem();
+			assertEquals(solver.solve(p), BitboardSearch.of(p).count());
+			t.join();
+		}
+	}
+
+	/** Shards of workers that do not respond in time are retried in the rest. */
+	@Test
+	public void timeout() throws Exception {
+		// Accepts the connection and never responds
+		try (ServerSocket hung = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+				Solver solver = new ClusterSolver(ImmutableList.of(local(hung.getLocalPort()), local(WORKERS.get(0)
+						.getPort())), 200, TimeUnit.MILLISECONDS)) {
+			final Thread t = new Thread(() -> {
+				try (Socket s = hung.accept()) {
+					while (s.getInputStream().read() >= 0) {
+						// Ignored
+					}
+				} catch (IOException e) {
+					// Connection closed by the solver
+				}
+			});
+			t.start();
+			final Problem p = problem();
+			assertEquals(solver.solve(p), BitboardSearch.of(p).count());
+			t.join();
+		}
+	}
+
+	/** Keep-alives allow shards to take longer than the read timeout. */
+	@Test
+	public void longShards() throws Exception {
+		// Several shards take over 100 ms
+		try (Solver solver = new ClusterSolver(ImmutableList.of(local(WORKERS.get(0).getPort())), 50,
+				TimeUnit.MILLISECONDS)) {
+			assertEquals(solver.solve(Problem.builder(Size.of(7, 7)).addPieces(Piece.KING, 4).addPieces(Piece.KNIGHT, 4)
+					.build()), 71001032L);
+		}
+	}
+
+	/** Connections that time out are opened again. */
+	@Test
+	public void reconnect() throws Exception {
+		// Hangs the first connection and forwards the rest to a worker
+		try (ServerSocket proxy = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+				Solver solver = new ClusterSolver(ImmutableList.of(local(proxy.getLocalPort())), 200,
+						TimeUnit.MILLISECONDS)) {
+			final Thread t = new Thread(() -> {
+				try (Socket hung = proxy.accept()) {
+					while (true) {
+						final Socket s = proxy.accept();
+						final Socket w = new Socket(InetAddress.getLoopbackAddress(), WORKERS.get(0).getPort());
+						forward(s.getInputStream(), w.getOutputStream(), w);
+						forward(w.getInputStream(), s.getOutputStream(), s);
+					}
+				} catch (IOException e) {
+					// Proxy closed
+				}
+			});
+			t.start();
+			final Problem p = problem();
+			assertEquals(solver.solve(p), BitboardSearch.of(p).count());
+		}
+	}
+
+	/** Forwards a stream in a thread of its own, closing the destination socket at the end. */
+	private static void forward(InputStream in, OutputStream out, Socket destination) {
+		new Thread(() -> {
+			try (Socket s = destination) {
+				final byte[] buffer = new byte[4096];
+				for (int n = in.read(buffer); n >= 0; n = in.read(buffer)) {
+					out.write(buffer, 0, n);
+					out.flush();
+				}
+			} catch (IOException e) {
+				// Connection closed
+			}
+		}).start();
+	}
+
+	/** Invalid shard frames are consumed entirely. */
+	@Test
+	public void invalidFrame() throws Exception {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final DataOutputStream out = new DataOutputStream(bytes);
+		// Invalid board size, followed by data of the frame
+		out.writeInt(12);
+		out.writeInt(-1);
+		out.writeInt(3);
+		out.writeInt(7);
+		final Shard shard = Shard.partition(problem(), 10).get(3);
+		shard.write(out);
+		final DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+		try {
+			Shard.read(in);
+			fail("Invalid frame expected");
+		} catch (IllegalArgumentException e) {
+			// ok
+		}
+		final Shard read = Shard.read(in);
+		assertEquals(read.getProblem(), shard.getProblem());
+		assertEquals(read.count(new Job()), shard.count(new Job()));
+		assertEquals(in.read(), -1);
+	}
+
+	/** Checkpointed solves record the subtrees as their shards are solved. */
+	@Test
+	public void checkpoint() throws IOException {
+		CheckpointTest.check(new ClusterSolver(ImmutableList.of(local(WORKERS.get(0).getPort()), local(WORKERS.get(1)
+				.getPort()))));
+	}
+
+		/** Workers listen on the loopback address unless another one is provided. */
+	@Test
+	public void loopback() throws Exception {
+		try (SolverWorker w = SolverWorker.start(0)) {
+			assertTrue(w.getAddress().getAddress().isLoopbackAddress());
+			assertTrue(w.getPort() > 0);
+		}
+	}
+
+	/** Solves fail if no worker is left. */
+	@Test(expectedExceptions = UncheckedIOException.class)
+	public void noWorkers() throws Exception {
+		try (Solver solver = new ClusterSolver(ImmutableList.of(local(freePort())))) {
+			solver.solve(problem());
+		}
+	}
+
+	/** Checkpointed solves are distributed too. */
+	@Test(expectedExceptions = UncheckedIOException.class)
+	public void checkpointNoWorkers() throws Exception {
+		try (Solver solver = new ClusterSolver(ImmutableList.of(local(freePort())))) {
+			solver.solve(problem(), Checkpoint.create(Files.createTempFile("cluster", ".checkpoint"), problem()));
+		}
+	}
+
+		/** Worker processes. */
+	@Test
+	public void processes() throws Exception {
+		final String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+		final List<Process> processes = Lists.newArrayList();
+		final List<InetSocketAddress> addresses = Lists.newArrayList();
+		try {
+			for (int i = 0; i < 2; i++) {
+				final int port = freePort();
+				final Process process = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+						"net.derquinse.tcus.chess.ChessChallenge", "-worker", Integer.toString(port)).redirectErrorStream(true)
+						.start();
+				processes.add(process);
+				// Waits for the worker to listen
+				new BufferedReader(new InputStreamReader(process.getInputStream(), Charsets.UTF_8)).readLine();
+				addresses.add(local(port));
+			}
+			try (Solver solver = Solvers.clusterSolver(addresses)) {
+				assertEquals(solver.solve(Problem.builder(Size.of(7, 7)).addPieces(Piece.KING, 2).addPieces(Piece.QUEEN, 2)
+						.addPieces(Piece.BISHOP, 2).addPieces(Piece.KNIGHT, 1).build()), 3063828L);
+			}
+		} finally {
+			for (Process p : processes) {
+				p.destroy();
+			}
+		}
+	}
+}
@@ -15,9 +15,16 @@
  */
 package net.derquinse.tcus.chess.solver;
 
-import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
 
-import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
 import org.testng.annotations.Test;
 
@@ -25,103 +32,45 @@ import org.testng.annotations.Test;
  * Tests for Default Solver.
  * @author Andres Rodriguez
  */
-public final class DefaultSolverTest {
-	private final DefaultSolver solver = new DefaultSolver(1);
-
-	private int check(Problem p, int expectedSolutions) {
-		int solutions = solver.solve(p);
-		assertEquals(solutions, expectedSolutions);
-		return solutions;
-	}
-
-	private int check(Problem.Builder b, int expectedSolutions) {
-		return check(b.build(), expectedSolutions);
-	}
-
-	private List<Solution> checkAndGet(Problem p, int expectedSolutions) {
-		List<Solution> solutions = solver.solveAndGet(p);
-		assertEquals(solutions.size(), expectedSolutions);
-		return solutions;
+public final class DefaultSolverTest extends AbstractSolverTest {
+	/** Constructor. */
+	public DefaultSolverTest() {
+		super(new DefaultSolver(1));
 	}
 
-	private List<Solution> checkAndGet(Problem.Builder b, int expectedSolutions) {
-		return checkAndGet(b.build(), expectedSolutions);
+	/** Closed solvers reject new solves. */
+	@Test(expectedExceptions = RejectedExecutionException.class)
+	public void closed() {
+		final Solver solver = new DefaultSolver(1);
+		solver.close();
+		solver.solve(Problem.builder(Size.of(4, 4)).addPieces(Piece.QUEEN, 4).build());
 	}
 
-	/** Base case. */
+	/** Closing the solver cancels the solves other threads are waiting for. */
 	@Test
-	public void base() {
-		check(Problem.builder(Size.of(2, 2)).addPieces(Piece.QUEEN, 1), 4);
-	}
-
-	/** Example 1. */
-	@Test
-	public void example1() {
-		for (Solution s : checkAndGet(Problem.builder(Size.of(3, 3)).addPieces(Piece.KING, 2).addPieces(Piece.ROOK, 1), 4)) {
-			System.out.println(s.draw());
+	public void closeWhileSolving() throws Exception {
+		final Problem p = Problem.builder(Size.of(13, 13)).addPieces(Piece.QUEEN, 13).build();
+		final Solver solver = new DefaultSolver(2);
+		final ExecutorService waiters = Executors.newFixedThreadPool(2);
+		try {
+			final Future<Long> count = waiters.submit(() -> solver.solve(p));
+			final Future<Long> stream = waiters.submit(() -> solver.solve(p, s -> {
+			}));
+			Thread.sleep(200L);
+			solver.close();
+			checkCancelled(count);
+			checkCancelled(stream);
+		} finally {
+			waiters.shutdownNow();
 		}
 	}
 
-	/** Example 2. */
-	@Test
-	public void example2() {
-		for (Solution s : checkAndGet(Problem.builder(Size.of(4, 4)).addPieces(Piece.KNIGHT, 4).addPieces(Piece.ROOK, 2), 8)) {
-			System.out.println(s.draw());
+	private static void checkCancelled(Future<Long> f) throws Exception {
+		try {
+			f.get(10, TimeUnit.SECONDS);
+			fail("Cancellation expected");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof CancellationException, e.getCause().toString());
 		}
 	}
-
-	/** Empty. */
-	@Test
-	public void empty() {
-		check(Problem.builder(Size.of(15, 15)), 0);
-	}
-
-	/** One piece. */
-	@Test
-	public void onePiece() {
-		check(Problem.builder(Size.of(8, 8)).addPieces(Piece.QUEEN, 1), 64);
-	}
-
-	private void queens(int n, int sols) {
-		check(Problem.builder(Size.of(n, n)).addPieces(Piece.QUEEN, n), sols);
-	}
-
-	/** Four queens. */
-	@Test
-	public void fourQueens() {
-		queens(4, 2);
-	}
-
-	/** Five queens. */
-	@Test
-	public void fiveQueens() {
-		queens(5, 10);
-	}
-
-	/** Six queens. */
-	@Test
-	public void sixQueens() {
-		queens(6, 4);
-	}
-
-	/** Eight queens. */
-	@Test
-	public void eightQueens() {
-		check(Problem.builder(Size.of(8, 8)).addPieces(Piece.QUEEN, 8), 92);
-	}
-
-	/** Simplified Challenge (1 more queen). */
-	@Test
-	public void simplifiedChallenge() {
-		check(Problem.builder(Size.of(7, 7)).addPieces(Piece.KING, 2).addPieces(Piece.QUEEN, 3).addPieces(Piece.BISHOP, 2)
-				.addPieces(Piece.KNIGHT, 1), 169464);
-	}
-
-	/** Challenge. */
-	@Test
-	public void challenge() {
-		check(Problem.builder(Size.of(7, 7)).addPieces(Piece.KING, 2).addPieces(Piece.QUEEN, 2).addPieces(Piece.BISHOP, 2)
-				.addPieces(Piece.KNIGHT, 1), 3063828);
-	}
-	
 }
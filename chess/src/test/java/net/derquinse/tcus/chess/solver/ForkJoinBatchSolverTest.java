@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.tcus.chess.solver;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Sets;
+
+/**
+ * Tests for the batch solver.
+ * @author Andres Rodriguez
+ */
+public final class ForkJoinBatchSolverTest {
+	private final BatchSolver solver = new ForkJoinBatchSolver(2);
+
+	@AfterClass
+	public void close() {
+		solver.close();
+	}
+
+	private static Problem queens(int n) {
+		return Problem.builder(Size.of(n, n)).addPieces(Piece.QUEEN, n).build();
+	}
+
+	/** Batch with repeated sizes and degenerate problems. */
+	@Test
+	public void batch() {
+		final List<Problem> problems = ImmutableList.of(queens(4), queens(5), queens(6), queens(8),
+				Problem.builder(Size.of(3, 3)).addPieces(Piece.KING, 2).addPieces(Piece.ROOK, 1).build(),
+				Problem.builder(Size.of(4, 4)).addPieces(Piece.ROOK, 2).addPieces(Piece.KNIGHT, 4).build(),
+				Problem.builder(Size.of(2, 2)).addPieces(Piece.KING, 5).build(), queens(7), queens(8));
+		final long[] expected = { 2, 10, 4, 92, 4, 8, 0, 40, 92 };
+		final long[] counts = new long[problems.size()];
+		Arrays.fill(counts, -1L);
+		final Thread caller = Thread.currentThread();
+		final long total = solver.solve(problems, (i, p, c) -> {
+			assertSame(Thread.currentThread(), caller);
+			assertSame(p, problems.get(i));
+			assertEquals(counts[i], -1L);
+			counts[i] = c;
+		});
+		assertTrue(Arrays.equals(counts, expected), Arrays.toString(counts));
+		assertEquals(total, Arrays.stream(expected).sum());
+	}
+
+	/** Specialized counts run in the pool of the searches, so no more threads than requested are busy. */
+	@Test
+	public void threads() {
+		final RookEngine rooks = new RookEngine();
+		final Set<ForkJoinPool> pools = Sets.newConcurrentHashSet();
+		final AtomicInteger maxThreads = new AtomicInteger(0);
+		final AtomicInteger maxBusy = new AtomicInteger(0);
+		final CountingEngine engine = new CountingEngine() {
+			@Override
+			public boolean supports(Problem problem) {
+				return rooks.supports(problem);
+			}
+
+			@Override
+			public long count(Problem problem, Job job) {
+				final Thread t = Thread.currentThread();
+				assertTrue(t instanceof ForkJoinWorkerThread, t.getName());
+				final ForkJoinPool pool = ((ForkJoinWorkerThread) t).getPool();
+				pools.add(pool);
+				try {
+					Thread.sleep(5L);
+				} catch (InterruptedException e) {
+					throw new CancellationException();
+				}
+				maxThreads.accumulateAndGet(pool.getPoolSize(), Math::max);
+				maxBusy.accumulateAndGet(pool.getActiveThreadCount(), Math::max);
+				return rooks.count(problem, job);
+			}
+		};
+		final ImmutableList.Builder<Problem> b = ImmutableList.builder();
+		for (int i = 0; i < 8; i++) {
+			b.add(Problem.builder(Size.of(6, 6)).addPieces(Piece.ROOK, 4).build(), queens(8));
+		}
+		try (BatchSolver batch = new ForkJoinBatchSolver(2, CountingEngines.of(engine))) {
+			assertEquals(batch.solve(b.build(), (i, p, c) -> {
+			}), 8L * (15L * 15L * 24L + 92L));
+		}
+		assertEquals(pools.size(), 1);
+		assertTrue(maxThreads.get() <= 2, Integer.toString(maxThreads.get()));
+		assertTrue(maxBusy.get() <= 2, Integer.toString(maxBusy.get()));
+	}
+
+	/** Empty batch. */
+	@Test
+	public void empty() {
+		assertEquals(solver.solve(Collections.emptyList(), (i, p, c) -> {
+			throw new AssertionError();
+		}), 0L);
+	}
+
+	/** Sink exceptions abandon the batch. */
+	@Test
+	public void abandoned() {
+		final List<Problem> problems = ImmutableList.<Problem> builder().add(queens(4))
+				.addAll(Collections.nCopies(10, queens(14))).build();
+		try {
+			solver.solve(problems, (i, p, c) -> {
+				throw new IllegalStateException();
+			});
+			fail("Exception expected");
+		} catch (IllegalStateException e) {
+			// ok
+		}
+		assertEquals(solver.solve(ImmutableList.of(queens(8)), (i, p, c) -> {
+		}), 92L);
+	}
+
+}
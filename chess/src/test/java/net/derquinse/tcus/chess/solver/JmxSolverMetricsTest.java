@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.tcus.chess.solver;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.testng.annotations.Test;
+
+/**
+ * Tests for the solver metrics.
+ * @author Andres Rodriguez
+ */
+public final class JmxSolverMetricsTest {
+	private static Problem problem() {
+		return Problem.builder(Size.of(6, 6)).addPieces(Piece.KING, 2).addPieces(Piece.QUEEN, 2).addPieces(Piece.KNIGHT, 2)
+				.build();
+	}
+
+	/** Waits until there are no active solves, as they are recorded after the result is completed. */
+	private static void await(JmxSolverMetrics metrics) throws InterruptedException {
+		for (int i = 0; i < 100 && metrics.getActiveSolves() > 0; i++) {
+			Thread.sleep(10L);
+		}
+		assertEquals(metrics.getActiveSolves(), 0);
+	}
+
+	private static long sum(long[] histogram) {
+		long sum = 0L;
+		for (long v : histogram) {
+			sum += v;
+		}
+		return sum;
+	}
+
+	/** Histogram buckets. */
+	@Test
+	public void histogram() {
+		final Histogram h = new Histogram();
+		assertEquals(h.getBuckets().length, 0);
+		for (long v : new long[] { -1L, 0L, 1L, 2L, 3L, 4L, 7L, 8L, Long.MAX_VALUE }) {
+			h.record(v);
+		}
+		final long[] buckets = h.getBuckets();
+		assertEquals(buckets.length, 64);
+		assertEquals(buckets[0], 2L);
+		assertEquals(buckets[1], 1L);
+		assertEquals(buckets[2], 2L);
+		assertEquals(buckets[3], 2L);
+		assertEquals(buckets[4], 1L);
+		assertEquals(buckets[63], 1L);
+		assertEquals(h.getCount(), 9L);
+		h.reset();
+		assertEquals(h.getCount(), 0L);
+	}
+
+	/** Metrics of completed solves. */
+	@Test
+	public void solves() throws Exception {
+		final Problem p = problem();
+		final JmxSolverMetrics metrics = JmxSolverMetrics.create();
+		try (Solver solver = Solvers.defaultSolver(2, metrics)) {
+			assertEquals(metrics.getPoolSize(), 2);
+			final long count = solver.solve(p);
+			assertEquals(count, BitboardSearch.of(p).count());
+			assertEquals(solver.solveAndGet(p).size(), count);
+			await(metrics);
+			assertEquals(metrics.getCompletedSolves(), 2L);
+			assertEquals(metrics.getAbandonedSolves(), 0L);
+			// A task per placement of the first piece
+			assertEquals(metrics.getTasks(), 72L);
+			assertEquals(sum(metrics.getTaskNodesHistogram()), 72L);
+			assertEquals(sum(metrics.getTaskTimeHistogram()), 72L);
+			assertEquals(sum(metrics.getSolveTimeHistogram()), 2L);
+			assertTrue(metrics.getNodesPerSecond() > metrics.getSolutionsPerSecond());
+			assertTrue(metrics.getSolutionsPerSecond() > 0.0);
+			metrics.reset();
+			assertEquals(metrics.getCompletedSolves(), 0L);
+			assertEquals(metrics.getTasks(), 0L);
+		}
+	}
+
+	/** Metrics of cancelled solves. */
+	@Test
+	public void cancelled() throws Exception {
+		final Problem p = Problem.builder(Size.of(8, 8)).addPieces(Piece.KING, 2).addPieces(Piece.QUEEN, 2)
+				.addPieces(Piece.BISHOP, 2).addPieces(Piece.KNIGHT, 2).build();
+		final JmxSolverMetrics metrics = JmxSolverMetrics.create();
+		try (Solver solver = Solvers.defaultSolver(1, metrics)) {
+			final Future<Long> result = solver.submit(p);
+			assertEquals(metrics.getActiveSolves(), 1);
+			result.cancel(true);
+			await(metrics);
+			assertEquals(metrics.getCompletedSolves(), 0L);
+			assertEquals(metrics.getAbandonedSolves(), 1L);
+		}
+	}
+
+	/** Registration in the platform MBean server. */
+	@Test
+	public void register() throws Exception {
+		final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		final JmxSolverMetrics metrics = JmxSolverMetrics.create().register("test");
+		try (Solver solver = Solvers.defaultSolver(3, metrics)) {
+			assertTrue(server.isRegistered(metrics.getName()));
+			assertEquals(server.getAttribute(metrics.getName(), "PoolSize"), 3);
+			solver.solve(problem(), 30, TimeUnit.SECONDS);
+			await(metrics);
+			assertEquals(server.getAttribute(metrics.getName(), "CompletedSolves"), 1L);
+		} finally {
+			final ObjectName name = metrics.getName();
+			metrics.unregister();
+			assertNull(metrics.getName());
+			assertFalse(server.isRegistered(name));
+		}
+	}
+
+	/** Metrics cannot be shared between solvers. */
+	@Test(expectedExceptions = IllegalStateException.class)
+	public void shared() {
+		final JmxSolverMetrics metrics = JmxSolverMetrics.create();
+		try (Solver solver = Solvers.defaultSolver(1, metrics)) {
+			Solvers.defaultSolver(1, metrics);
+		}
+	}
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.tcus.chess.solver;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import org.testng.annotations.Test;
+
+/**
+ * Tests for the work-stealing solver with a transposition table.
+ * @author Andres Rodriguez
+ */
+public final class MemoizingSolverTest extends AbstractSolverTest {
+	/** Constructor. */
+	public MemoizingSolverTest() {
+		super(new ForkJoinSolver(2, false, TranspositionTable.create(1 << 16, 2), PieceOrder.FIXED));
+	}
+
+	/** Memoized counts are the same as those of the plain search, with a small table. */
+	@Test
+	public void table() {
+		final TranspositionTable table = TranspositionTable.create(1 << 10, 1);
+		final Problem[] problems = {
+				Problem.builder(Size.of(6, 6)).addPieces(Piece.KING, 4).addPieces(Piece.KNIGHT, 4).build(),
+				Problem.builder(Size.of(5, 7)).addPieces(Piece.KING, 2).addPieces(Piece.KNIGHT, 3).addPieces(Piece.ROOK, 2)
+						.build(),
+				Problem.builder(Size.of(6, 5)).addPieces(Piece.QUEEN, 1).addPieces(Piece.BISHOP, 2).addPieces(Piece.KING, 2)
+						.addPieces(Piece.KNIGHT, 1).build() };
+		for (Problem p : problems) {
+			assertEquals(BitboardSearch.of(p).setMemo(table).count(), BitboardSearch.of(p).count());
+		}
+		assertTrue(table.getHits() > 0L);
+		assertTrue(table.getEvictions() > 0L);
+		assertTrue(table.getEntries() <= 1 << 10);
+		assertTrue(table.getEstimatedBytes() > 0L);
+		table.clear();
+		assertEquals(table.getEntries(), 0L);
+	}
+
+	/** Subproblems are keyed by value, so later solves find the entries of previous ones. */
+	@Test
+	public void shared() {
+		final TranspositionTable table = TranspositionTable.create(1 << 16, 1);
+		final Problem p = Problem.builder(Size.of(6, 6)).addPieces(Piece.KING, 3).addPieces(Piece.KNIGHT, 3).build();
+		final long expected = BitboardSearch.of(p).count();
+		assertEquals(BitboardSearch.of(p).setMemo(table).count(), expected);
+		final long misses = table.getMisses();
+		final long hits = table.getHits();
+		// A new engine (and pieces array) for an equal problem hits the root subproblem
+		assertEquals(BitboardSearch.of(Problem.builder(Size.of(6, 6)).addPieces(Piece.KING, 3)
+				.addPieces(Piece.KNIGHT, 3).build()).setMemo(table).count(), expected);
+		assertEquals(table.getMisses(), misses);
+		assertEquals(table.getHits(), hits + 1L);
+	}
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.tcus.chess.solver;
+
+import static org.testng.Assert.assertEquals;
+
+import java.util.Set;
+
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableMultiset;
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Tests for the piece orders.
+ * @author Andres Rodriguez
+ */
+public final class PieceOrderTest {
+	private static void check(Problem p) {
+		final long expected = BitboardSearch.of(p).count();
+		for (PieceOrder order : PieceOrder.values()) {
+			assertEquals(BitboardSearch.of(p, order).count(), expected, order.name());
+		}
+	}
+
+	/** All orders find the same solutions. */
+	@Test
+	public void counts() {
+		check(Problem.builder(Size.of(6, 6)).addPieces(Piece.KING, 3).addPieces(Piece.KNIGHT, 3).addPieces(Piece.ROOK, 2)
+				.build());
+		check(Problem.builder(Size.of(5, 6)).addPieces(Piece.QUEEN, 1).addPieces(Piece.BISHOP, 2).addPieces(Piece.KING, 2)
+				.addPieces(Piece.KNIGHT, 1).build());
+		// More than one word per mask
+		check(Problem.builder(Size.of(9, 8)).addPieces(Piece.QUEEN, 2).addPieces(Piece.ROOK, 2).addPieces(Piece.KNIGHT, 1)
+				.build());
+		check(Problem.builder(Size.of(2, 40)).addPieces(Piece.ROOK, 2).addPieces(Piece.KING, 3).build());
+	}
+
+	/** Same solutions in dynamic mode. */
+	@Test
+	public void solutions() {
+		final Problem p = Problem.builder(Size.of(5, 5)).addPieces(Piece.KING, 2).addPieces(Piece.KNIGHT, 2)
+				.addPieces(Piece.ROOK, 1).build();
+		final ImmutableMultiset.Builder<Solution> b = ImmutableMultiset.builder();
+		BitboardSearch.of(p, PieceOrder.MOST_CONSTRAINED).collect(b::add);
+		final ImmutableMultiset<Solution> dynamic = b.build();
+		final Set<Solution> fixed = ImmutableSet.copyOf(new BitboardSolver().solveAndGet(p));
+		assertEquals(dynamic.size(), fixed.size());
+		assertEquals(dynamic.elementSet(), fixed);
+	}
+
+	/** Orders computed from the attack table. */
+	@Test
+	public void attacks() {
+		final AttackTable table = AttackTable.of(Size.of(3, 3));
+		// Corner 3, edge 5, center 8
+		assertEquals(table.getAttacks(Piece.KING), 4 * 3 + 4 * 5 + 8);
+		// 4 on every position
+		assertEquals(table.getAttacks(Piece.ROOK), 9 * 4);
+	}
+}
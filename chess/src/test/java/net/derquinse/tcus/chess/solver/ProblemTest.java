@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.tcus.chess.solver;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotEquals;
+import static org.testng.Assert.assertSame;
+
+import org.testng.annotations.Test;
+
+/**
+ * Tests for Problem.
+ * @author Andres Rodriguez
+ */
+public final class ProblemTest {
+	private static Problem problem(int rows, int columns) {
+		return Problem.builder(Size.of(rows, columns)).addPieces(Piece.KING, 2).addPieces(Piece.ROOK, 1).build();
+	}
+
+	/** Value semantics. */
+	@Test
+	public void equality() {
+		final Problem p = problem(3, 4);
+		final Problem q = Problem.builder(Size.of(3, 4)).addPieces(Piece.KING, 1).addPieces(Piece.ROOK, 1)
+				.addPieces(Piece.KING, 1).build();
+		assertEquals(q, p);
+		assertEquals(q.hashCode(), p.hashCode());
+		assertNotEquals(problem(4, 3), p);
+		assertNotEquals(Problem.builder(Size.of(3, 4)).addPieces(Piece.KING, 2).build(), p);
+	}
+
+	/** Transposition and canonical forms. */
+	@Test
+	public void canonical() {
+		final Problem p = problem(3, 4);
+		final Problem t = problem(4, 3);
+		assertEquals(p.transpose(), t);
+		assertEquals(t.transpose(), p);
+		assertSame(p.getCanonical(), p);
+		assertEquals(t.getCanonical(), p);
+		final Problem s = problem(3, 3);
+		assertSame(s.transpose(), s);
+		assertSame(s.getCanonical(), s);
+	}
+
+	/** Transposed problems have the same number of solutions. */
+	@Test
+	public void transposedSolutions() {
+		final Solver solver = new BitboardSolver();
+		final Problem p = Problem.builder(Size.of(4, 6)).addPieces(Piece.KNIGHT, 3).addPieces(Piece.BISHOP, 2)
+				.addPieces(Piece.QUEEN, 1).build();
+		assertEquals(solver.solve(p.transpose()), solver.solve(p));
+	}
+}
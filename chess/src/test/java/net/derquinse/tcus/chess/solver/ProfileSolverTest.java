@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.tcus.chess.solver;
+
+import static org.testng.Assert.assertEquals;
+
+import java.nio.file.Files;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Tests for the profile solver.
+ * @author Andres Rodriguez
+ */
+public final class ProfileSolverTest {
+	private final Solver solver = Solvers.profileSolver();
+
+	@AfterClass
+	public void close() {
+		solver.close();
+	}
+
+	private void check(Problem p) {
+		assertEquals(solver.solve(p), BitboardSearch.of(p).count(), p.toString());
+	}
+
+	/** Counts are the same as the search ones. */
+	@Test
+	public void counts() {
+		check(Problem.builder(Size.of(6, 6)).addPieces(Piece.KING, 4).addPieces(Piece.KNIGHT, 4).build());
+		check(Problem.builder(Size.of(5, 7)).addPieces(Piece.KING, 3).addPieces(Piece.KNIGHT, 5).build());
+		check(Problem.builder(Size.of(9, 2)).addPieces(Piece.KNIGHT, 8).build());
+		check(Problem.builder(Size.of(4, 4)).addPieces(Piece.KING, 4).build());
+		check(Problem.builder(Size.of(2, 2)).addPieces(Piece.KING, 2).build());
+		check(Problem.builder(Size.of(1, 1)).addPieces(Piece.KNIGHT, 1).build());
+	}
+
+	/** Large problems. */
+	@Test
+	public void large() throws Exception {
+		assertEquals(solver.solve(Problem.builder(Size.of(8, 8)).addPieces(Piece.KING, 6).addPieces(Piece.KNIGHT, 6)
+				.build()), 34330165030L);
+		assertEquals(solver.solve(Problem.builder(Size.of(10, 10)).addPieces(Piece.KING, 10).addPieces(Piece.KNIGHT, 10)
+				.build(), 60, TimeUnit.SECONDS), 22651389473878376L);
+	}
+
+	/** Solution lists are the same as the search ones. */
+	@Test
+	public void solutions() {
+		final Problem p = Problem.builder(Size.of(4, 5)).addPieces(Piece.KING, 2).addPieces(Piece.KNIGHT, 3).build();
+		final Set<Solution> expected = ImmutableSet.copyOf(new BitboardSolver().solveAndGet(p));
+		final Set<Solution> found = ImmutableSet.copyOf(solver.solveAndGet(p));
+		assertEquals(found, expected);
+		assertEquals(solver.solve(p), expected.size());
+	}
+
+	/** Checkpointed solves count the whole problem without recording subtrees. */
+	@Test
+	public void checkpoint() throws Exception {
+		final Problem p = Problem.builder(Size.of(6, 6)).addPieces(Piece.KING, 4).addPieces(Piece.KNIGHT, 4).build();
+		final Checkpoint c = Checkpoint.create(Files.createTempFile("profile", ".checkpoint"), p);
+		assertEquals(solver.solve(p, c), BitboardSearch.of(p).count());
+		assertEquals(c.getCompleted(), 0);
+	}
+
+		/** Empty problems have no solutions. */
+	@Test
+	public void empty() {
+		assertEquals(solver.solve(Problem.builder(Size.of(4, 4)).build()), 0L);
+		assertEquals(solver.solve(Problem.builder(Size.of(2, 2)).addPieces(Piece.KNIGHT, 5).build()), 0L);
+	}
+
+	/** Other pieces are not supported. */
+	@Test(expectedExceptions = IllegalArgumentException.class)
+	public void unsupported() {
+		solver.solve(Problem.builder(Size.of(4, 4)).addPieces(Piece.KING, 2).addPieces(Piece.ROOK, 1).build());
+	}
+
+	/** Too wide boards are not supported. */
+	@Test(expectedExceptions = IllegalArgumentException.class)
+	public void tooWide() {
+		solver.submit(Problem.builder(Size.of(16, 16)).addPieces(Piece.KING, 2).build());
+	}
+}
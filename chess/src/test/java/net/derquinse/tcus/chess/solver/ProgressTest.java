@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.tcus.chess.solver;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.Test;
+
+/**
+ * Tests for progress reporting.
+ * @author Andres Rodriguez
+ */
+public final class ProgressTest {
+	private static Problem problem() {
+		return Problem.builder(Size.of(6, 6)).addPieces(Piece.KING, 2).addPieces(Piece.QUEEN, 2).addPieces(Piece.KNIGHT, 2)
+				.build();
+	}
+
+	/** Waits for the final report. */
+	private static Progress last(List<Progress> reports) throws InterruptedException {
+		for (int i = 0; i < 100 && (reports.isEmpty() || !reports.get(reports.size() - 1).isDone()); i++) {
+			Thread.sleep(10L);
+		}
+		return reports.get(reports.size() - 1);
+	}
+
+	/** Tracked search. */
+	@Test
+	public void tracked() throws Exception {
+		final Problem p = problem();
+		final List<Progress> reports = new CopyOnWriteArrayList<>();
+		try (Solver solver = Solvers.defaultSolver(2)) {
+			final long count = solver.submit(p, reports::add, 5, TimeUnit.MILLISECONDS).get(30, TimeUnit.SECONDS);
+			assertEquals(count, BitboardSearch.of(p).count());
+			final Progress last = last(reports);
+			assertEquals(last.getCompleted(), 36);
+			assertEquals(last.getTotal(), 36);
+			assertEquals(last.getSolutions(), count);
+			assertTrue(last.getNodes() > count);
+			for (Progress r : reports.subList(0, reports.size() - 1)) {
+				assertFalse(r.isDone());
+				assertTrue(r.getSolutions() <= count);
+			}
+		}
+	}
+
+	/** Solvers that do not track the search. */
+	@Test
+	public void untracked() throws Exception {
+		final Problem p = problem();
+		final List<Progress> reports = new CopyOnWriteArrayList<>();
+		try (Solver solver = Solvers.bitboardSolver()) {
+			final long count = solver.submit(p, reports::add, 5, TimeUnit.MILLISECONDS).get(30, TimeUnit.SECONDS);
+			final Progress last = last(reports);
+			assertEquals(last.getTotal(), 0);
+			assertEquals(last.getSolutions(), count);
+			assertFalse(last.getRemaining(TimeUnit.SECONDS).isPresent() && !last.isDone());
+		}
+	}
+
+	/** Invalid periods. */
+	@Test(expectedExceptions = IllegalArgumentException.class)
+	public void period() {
+		try (Solver solver = Solvers.defaultSolver(1)) {
+			solver.submit(problem(), r -> {
+			}, 0, TimeUnit.SECONDS);
+		}
+	}
+
+	/** Subtree size estimates are exact for trees with the same number of children at every depth. */
+	@Test
+	public void estimate() {
+		final Problem p = Problem.builder(Size.of(3, 4)).addPieces(Piece.ROOK, 2).build();
+		final double[] estimates = ProgressTracker.estimate(p, 4, new Random(0L));
+		for (int i = 0; i < estimates.length; i++) {
+			final BitboardSearch search = BitboardSearch.of(p);
+			search.push(i);
+			assertEquals(estimates[i], 1.0 + search.count(), 1e-9);
+		}
+	}
+}
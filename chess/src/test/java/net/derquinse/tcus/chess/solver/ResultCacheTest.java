@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.tcus.chess.solver;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.OptionalLong;
+
+import org.testng.annotations.Test;
+
+/**
+ * Tests for ResultCache.
+ * @author Andres Rodriguez
+ */
+public final class ResultCacheTest {
+	private static Problem problem(int rows, int columns) {
+		return Problem.builder(Size.of(rows, columns)).addPieces(Piece.KING, 2).addPieces(Piece.ROOK, 1).build();
+	}
+
+	/** In-memory tier. */
+	@Test
+	public void memory() {
+		final ResultCache cache = ResultCache.inMemory(2);
+		assertFalse(cache.get(problem(3, 4)).isPresent());
+		cache.put(problem(3, 4), 7L);
+		assertEquals(cache.get(problem(3, 4)), OptionalLong.of(7L));
+		// Transposed problems share the entry
+		assertEquals(cache.get(problem(4, 3)), OptionalLong.of(7L));
+		cache.invalidateMemory();
+		assertFalse(cache.get(problem(3, 4)).isPresent());
+	}
+
+	/** On-disk tier. */
+	@Test
+	public void disk() throws IOException {
+		final Path dir = Files.createTempDirectory("results");
+		final ResultCache cache = ResultCache.persistent(1, dir);
+		cache.put(problem(5, 3), 1234567890123L);
+		cache.put(problem(3, 3), 4L);
+		assertEquals(Files.list(dir).count(), 2L);
+		cache.invalidateMemory();
+		assertEquals(cache.get(problem(3, 5)), OptionalLong.of(1234567890123L));
+		// A new cache in the same directory
+		final ResultCache other = ResultCache.persistent(1, dir);
+		assertEquals(other.get(problem(3, 3)), OptionalLong.of(4L));
+		assertFalse(other.get(problem(4, 4)).isPresent());
+	}
+
+	/** Caching solver. */
+	@Test
+	public void solver() throws Exception {
+		final ResultCache cache = ResultCache.inMemory(16);
+		try (Solver solver = Solvers.cachingSolver(Solvers.bitboardSolver(), cache)) {
+			final Problem p = Problem.builder(Size.of(6, 5)).addPieces(Piece.KING, 2).addPieces(Piece.QUEEN, 2).build();
+			final long count = solver.solve(p);
+			assertEquals(cache.get(p), OptionalLong.of(count));
+			assertEquals(solver.solve(p.transpose()), count);
+			assertEquals(solver.submit(p).get().longValue(), count);
+			final Problem q = Problem.builder(Size.of(8, 8)).addPieces(Piece.QUEEN, 8).build();
+			assertEquals(solver.submit(q).get().longValue(), 92L);
+			assertEquals(cache.get(q), OptionalLong.of(92L));
+		}
+	}
+}
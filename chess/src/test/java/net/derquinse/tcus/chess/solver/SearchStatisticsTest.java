@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.tcus.chess.solver;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import org.testng.annotations.Test;
+
+/**
+ * Tests for the search statistics.
+ * @author Andres Rodriguez
+ */
+public final class SearchStatisticsTest {
+	/** Counts recorded by several threads are merged. */
+	@Test
+	public void merge() throws Exception {
+		SearchStatistics.reset();
+		final Thread t = new Thread(() -> {
+			StatsRecorder.add(12, Piece.ROOK, StatsRecorder.NODES, 3L);
+			StatsRecorder.flush();
+		});
+		t.start();
+		t.join();
+		StatsRecorder.add(12, Piece.ROOK, StatsRecorder.NODES, 4L);
+		StatsRecorder.add(0, Piece.QUEEN, StatsRecorder.PRUNED, 1L);
+		StatsRecorder.add(1, Piece.KING, StatsRecorder.REJECTED, 5L);
+		StatsRecorder.add(1, Piece.KING, StatsRecorder.SOLUTIONS, 2L);
+		final SearchStatistics s = SearchStatistics.get();
+		assertEquals(s.getDepths(), 13);
+		assertEquals(s.getNodes(12, Piece.ROOK), 7L);
+		assertEquals(s.getPruned(0, Piece.QUEEN), 1L);
+		assertEquals(s.getRejected(1, Piece.KING), 5L);
+		assertEquals(s.getSolutions(1, Piece.KING), 2L);
+		assertEquals(s.getNodes(20, Piece.KING), 0L);
+		assertTrue(s.toString().contains("ROOK"));
+		SearchStatistics.reset();
+		assertEquals(SearchStatistics.get().getDepths(), 0);
+	}
+
+	/** Searches record statistics only if enabled. */
+	@Test(dependsOnMethods = "merge")
+	public void search() {
+		final Problem p = Problem.builder(Size.of(5, 5)).addPieces(Piece.KING, 2).addPieces(Piece.KNIGHT, 2).build();
+		try (Solver solver = Solvers.defaultSolver(2)) {
+			final long count = solver.solve(p);
+			final SearchStatistics s = SearchStatistics.get();
+			if (SearchStatistics.isEnabled()) {
+				assertEquals(s.getSolutions(3, Piece.KING), count);
+				assertEquals(s.getNodes(0, Piece.KNIGHT), 1L);
+			} else {
+				assertEquals(s.getDepths(), 0);
+			}
+		}
+	}
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.tcus.chess.solver;
+
+import static com.google.common.collect.Sets.newHashSet;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+
+import org.testng.annotations.Test;
+
+/**
+ * Tests for SolutionFile.
+ * @author Andres Rodriguez
+ */
+public final class SolutionFileTest {
+
+	private static void check(Problem p, long expectedSolutions) throws IOException {
+		final Path path = Files.createTempFile("solutions", ".bin");
+		try {
+			final List<Solution> solutions = new BitboardSolver().solveAndGet(p);
+			assertEquals(solutions.size(), expectedSolutions);
+			try (SolutionFile.Writer writer = SolutionFile.create(path, p)) {
+				solutions.forEach(writer::accept);
+				assertEquals(writer.getCount(), expectedSolutions);
+			}
+			// Fixed header, 5 bytes per piece kind and the record of each solution.
+			final int header = 23 + 5 * p.getPieces().elementSet().size();
+			final int record = p.getPieces().size() * (p.getSize().getPositions() > 256 ? 2 : 1);
+			assertEquals(Files.size(path), header + expectedSolutions * record);
+			try (SolutionFile file = SolutionFile.open(path)) {
+				assertEquals(file.getSize(), p.getSize());
+				assertTrue(file.getPieces().equals(p.getPieces()));
+				assertEquals(file.getCount(), expectedSolutions);
+				final Set<Solution> read = newHashSet();
+				for (long i = 0; i < file.getCount(); i++) {
+					read.add(file.get(i));
+				}
+				assertEquals(read, newHashSet(solutions));
+			}
+		} finally {
+			Files.delete(path);
+		}
+	}
+
+	/** Example 2. */
+	@Test
+	public void example2() throws IOException {
+		check(Problem.builder(Size.of(4, 4)).addPieces(Piece.KNIGHT, 4).addPieces(Piece.ROOK, 2).build(), 8);
+	}
+
+	/** Mixed pieces. */
+	@Test
+	public void mixed() throws IOException {
+		check(Problem.builder(Size.of(5, 6)).addPieces(Piece.KING, 2).addPieces(Piece.QUEEN, 1)
+				.addPieces(Piece.KNIGHT, 2).build(), 12026);
+	}
+
+	/** Two bytes per position. */
+	@Test
+	public void large() throws IOException {
+		check(Problem.builder(Size.of(17, 17)).addPieces(Piece.ROOK, 1).addPieces(Piece.BISHOP, 1).build(), 68000);
+	}
+
+	/** Raw placements in dynamic mode, where kinds may be interleaved. */
+	@Test
+	public void dynamic() throws IOException {
+		final Problem p = Problem.builder(Size.of(5, 5)).addPieces(Piece.KING, 2).addPieces(Piece.KNIGHT, 2)
+				.addPieces(Piece.ROOK, 1).build();
+		final Path path = Files.createTempFile("solutions", ".bin");
+		try {
+			final Set<Solution> solutions = newHashSet(new BitboardSolver().solveAndGet(p));
+			try (SolutionFile.Writer writer = SolutionFile.create(path, p)) {
+				assertEquals(BitboardSearch.of(p, PieceOrder.MOST_CONSTRAINED).collectPlacements(writer::accept),
+						solutions.size());
+				assertEquals(writer.getCount(), solutions.size());
+			}
+			try (SolutionFile file = SolutionFile.open(path)) {
+				final Set<Solution> read = newHashSet();
+				for (long i = 0; i < file.getCount(); i++) {
+					read.add(file.get(i));
+				}
+				assertEquals(read, solutions);
+			}
+		} finally {
+			Files.delete(path);
+		}
+	}
+
+	/** Invalid index. */
+	@Test(expectedExceptions = IndexOutOfBoundsException.class)
+	public void invalidIndex() throws IOException {
+		final Problem p = Problem.builder(Size.of(3, 3)).addPieces(Piece.QUEEN, 1).build();
+		final Path path = Files.createTempFile("solutions", ".bin");
+		try {
+			try (SolutionFile.Writer writer = SolutionFile.create(path, p)) {
+				new BitboardSolver().solve(p, writer);
+			}
+			try (SolutionFile file = SolutionFile.open(path)) {
+				assertEquals(file.getCount(), 9L);
+				file.get(9L);
+			}
+		} finally {
+			Files.delete(path);
+		}
+	}
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.tcus.chess.solver;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.Set;
+
+import org.testng.annotations.Test;
+
+import com.google.common.collect.HashMultiset;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Multiset;
+
+/**
+ * Tests for the random solution generator.
+ * @author Andres Rodriguez
+ */
+public final class SolutionGeneratorTest {
+	private static final Problem PROBLEM = Problem.builder(Size.of(4, 4)).addPieces(Piece.KING, 2)
+			.addPieces(Piece.KNIGHT, 1).addPieces(Piece.ROOK, 1).build();
+
+	private static SolutionGenerator generator(Problem p, int maxNodes) {
+		final BitboardSearch search = BitboardSearch.of(p);
+		final long[] counts = new long[search.getPositions()];
+		for (int i = 0; i < counts.length; i++) {
+			if (search.push(i)) {
+				counts[i] = search.count();
+				search.pop();
+			}
+		}
+		return new SolutionGenerator(p, counts, maxNodes);
+	}
+
+	/** Every solution is drawn with the same probability. */
+	private static void uniform(SolutionGenerator g) {
+		final Set<Solution> all = ImmutableSet.copyOf(new BitboardSolver().solveAndGet(g.getProblem()));
+		assertEquals(g.getCount(), all.size());
+		final int perSolution = 200;
+		final Multiset<Solution> drawn = HashMultiset.create();
+		final Random random = new Random(7L);
+		for (int i = 0; i < perSolution * all.size(); i++) {
+			drawn.add(g.next(random));
+		}
+		assertEquals(drawn.elementSet(), all);
+		// Chi-squared statistic, far below its 99.9% quantile
+		double chi = 0.0;
+		for (Solution s : all) {
+			final double d = drawn.count(s) - perSolution;
+			chi += d * d / perSolution;
+		}
+		final double k = all.size() - 1;
+		assertTrue(chi < k + 5.0 * Math.sqrt(2.0 * k), String.format("Chi-squared %f for %d solutions", chi, all.size()));
+	}
+
+	/** Uniform draws with the full count tree. */
+	@Test
+	public void uniform() {
+		final SolutionGenerator g = generator(PROBLEM, SolutionGenerator.MAX_NODES);
+		uniform(g);
+		assertTrue(g.getNodes() > 1);
+	}
+
+	/** Uniform draws keeping only the root of the count tree. */
+	@Test
+	public void bounded() {
+		final SolutionGenerator g = generator(PROBLEM, 1);
+		uniform(g);
+		assertEquals(g.getNodes(), 1);
+	}
+
+	/** Generators of the default solver. */
+	@Test
+	public void parallel() {
+		final Problem p = Problem.builder(Size.of(6, 6)).addPieces(Piece.KING, 2).addPieces(Piece.QUEEN, 2)
+				.addPieces(Piece.KNIGHT, 2).build();
+		try (Solver solver = Solvers.defaultSolver(2)) {
+			final SolutionGenerator g = solver.generator(p);
+			assertEquals(g.getCount(), BitboardSearch.of(p).count());
+			assertEquals(g.getCount(), generator(p, 1).getCount());
+		}
+	}
+
+	/** Problems without solutions. */
+	@Test(expectedExceptions = NoSuchElementException.class)
+	public void none() {
+		final SolutionGenerator g = generator(Problem.builder(Size.of(3, 3)).addPieces(Piece.QUEEN, 3).build(), 1);
+		assertEquals(g.getCount(), 0L);
+		g.next(new Random());
+	}
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.tcus.chess.solver;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.fail;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * Tests for SolutionPipe.
+ * @author Andres Rodriguez
+ */
+public final class SolutionPipeTest {
+	/** Producers stop as soon as the sink fails. */
+	@Test
+	public void closed() {
+		final Size size = Size.of(1, 1);
+		final Solution s = Solution.of(size, ImmutableMap.of(size.getPosition(0), Piece.KING));
+		final SolutionPipe pipe = new SolutionPipe();
+		pipe.accept(s);
+		final AtomicInteger received = new AtomicInteger();
+		try {
+			pipe.drain(() -> false, t -> {
+				received.incrementAndGet();
+				throw new IllegalStateException();
+			});
+			fail("Sink failure expected");
+		} catch (IllegalStateException e) {
+			// ok
+		}
+		assertEquals(received.get(), 1);
+		// The pipe is empty, but closed
+		try {
+			pipe.accept(s);
+			fail("Cancellation expected");
+		} catch (CancellationException e) {
+			// ok
+		}
+	}
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.tcus.chess.solver;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import org.testng.annotations.Test;
+
+/**
+ * Tests for the specialized counting engines and the solver using them.
+ * @author Andres Rodriguez
+ */
+public final class SpecializedSolverTest extends AbstractSolverTest {
+	/** Constructor. */
+	public SpecializedSolverTest() {
+		super(new SpecializedSolver(new BitboardSolver(), CountingEngines.DEFAULT));
+	}
+
+	private static void check(Class<? extends CountingEngine> type, Problem.Builder b) {
+		final Problem p = b.build();
+		final CountingEngine engine = CountingEngines.DEFAULT.find(p).get();
+		assertSame(engine.getClass(), type, p.toString());
+		assertEquals(engine.count(p, new Job()), BitboardSearch.of(p).count(), p.toString());
+	}
+
+	/** Engine counts are the same as the search ones. */
+	@Test
+	public void engines() {
+		check(RookEngine.class, Problem.builder(Size.of(7, 5)).addPieces(Piece.ROOK, 4));
+		check(RookEngine.class, Problem.builder(Size.of(3, 5)).addPieces(Piece.ROOK, 4));
+		check(QueenEngine.class, Problem.builder(Size.of(9, 9)).addPieces(Piece.QUEEN, 9));
+		check(QueenEngine.class, Problem.builder(Size.of(9, 5)).addPieces(Piece.QUEEN, 4));
+		check(QueenEngine.class, Problem.builder(Size.of(3, 3)).addPieces(Piece.QUEEN, 3));
+		check(ShortRangeEngine.class, Problem.builder(Size.of(5, 6)).addPieces(Piece.KING, 3).addPieces(Piece.KNIGHT, 4));
+		check(ShortRangeEngine.class, Problem.builder(Size.of(7, 4)).addPieces(Piece.KNIGHT, 6));
+		check(ShortRangeEngine.class, Problem.builder(Size.of(6, 6)).addPieces(Piece.KING, 5));
+		check(ShortRangeEngine.class, Problem.builder(Size.of(1, 9)).addPieces(Piece.KING, 2).addPieces(Piece.KNIGHT, 2));
+	}
+
+	/** Mixed problems are not supported. */
+	@Test
+	public void unsupported() {
+		final Problem p = Problem.builder(Size.of(4, 4)).addPieces(Piece.ROOK, 2).addPieces(Piece.KNIGHT, 4).build();
+		assertFalse(CountingEngines.DEFAULT.find(p).isPresent());
+		assertFalse(CountingEngines.DEFAULT.find(Problem.builder(Size.of(4, 4)).build()).isPresent());
+		final CountingEngines engines = CountingEngines.of().with(new RookEngine());
+		assertTrue(engines.find(Problem.builder(Size.of(4, 4)).addPieces(Piece.ROOK, 2).build()).isPresent());
+		assertFalse(engines.find(Problem.builder(Size.of(4, 4)).addPieces(Piece.QUEEN, 2).build()).isPresent());
+	}
+
+	/** Counts that do not fit in a long. */
+	@Test(expectedExceptions = ArithmeticException.class)
+	public void overflow() {
+		new RookEngine().count(Problem.builder(Size.of(40, 40)).addPieces(Piece.ROOK, 30).build(), new Job());
+	}
+}
@@ -85,6 +85,31 @@ public final class StateTest {
 		}
 	}
 
+	/** Exercise word-backed and bit set backed states with the same unavailable positions. */
+	@Test
+	public void implementations() {
+		final Set<Integer> unavailable = newHashSet(0, 10, 63, 64, 70, 99);
+		for (Size size : new Size[] { Size.of(8, 8), Size.of(10, 10), Size.of(12, 12) }) {
+			final BitSet set = new BitSet();
+			for (int i : unavailable) {
+				if (i < size.getPositions()) {
+					set.set(i);
+				}
+			}
+			final int expected = size.getPositions() - set.cardinality();
+			final State state = State.of(size, set);
+			assertEquals(state.getAvailablePositions(), expected);
+			assertEquals(newHashSet(state).size(), expected);
+			for (int i = 0; i < size.getPositions(); i++) {
+				assertEquals(state.isAvailable(i), !set.get(i));
+				assertEquals(state.nextAvailable(i), Math.min(set.nextClearBit(i), size.getPositions()));
+			}
+			assertEquals(state.nextAvailable(size.getPositions()), size.getPositions());
+			final State merged = state.merge(state(size, 1, 2, 3));
+			assertEquals(merged.getAvailablePositions(), expected - 3);
+		}
+	}
+
 	/** Invalid regular state. */
 	@Test
 	public void invalidRegular() {
@@ -126,9 +151,47 @@ public final class StateTest {
 		assertSame(empty.merge(empty), empty);
 	}
 
+	/** Merging a subset of the unavailable positions does not create a new state. */
+	@Test
+	public void mergeSubset() {
+		for (Size size : new Size[] { Size.of(7, 8), Size.of(10, 10) }) {
+			final State state = state(size, 10, 20, 30, 70 % size.getPositions());
+			assertSame(state.merge(state(size, 10, 30)), state);
+			assertEquals(state.merge(state(size, 10, 31)).getAvailablePositions(), state.getAvailablePositions() - 1);
+		}
+	}
+
 	/** Invalid merge. */
 	@Test(expectedExceptions = IllegalArgumentException.class)
 	public void invalidMerge() {
 		state(Size.of(3, 4), 4, 6).merge(State.empty(Size.of(3, 5)));
 	}
+
+	/** Counting the positions available in two states gives the size of their merge. */
+	@Test
+	public void countAvailable() {
+		// Small (including a full word), medium (including two full words) and regular
+		for (Size size : new Size[] { Size.of(7, 8), Size.of(8, 8), Size.of(10, 10), Size.of(8, 16), Size.of(12, 12) }) {
+			final int n = size.getPositions();
+			final State empty = State.empty(size);
+			final State s1 = state(size, 0, 10, 20, 63 % n, 70 % n, n - 1);
+			final State s2 = state(size, 10, 31, 64 % n, n - 2);
+			for (int from : new int[] { 0, 1, 11, 63, 64, 65, n - 1, n }) {
+				checkCount(s1, s2, from);
+				checkCount(s1, empty, from);
+				checkCount(empty, s2, from);
+				checkCount(empty, empty, from);
+			}
+		}
+	}
+
+	private static void checkCount(State s1, State s2, int from) {
+		final State merged = s1.merge(s2);
+		final int n = merged.getSize().getPositions();
+		int expected = 0;
+		for (int i = merged.nextAvailable(Math.min(from, n)); i < n; i = merged.nextAvailable(i + 1)) {
+			expected++;
+		}
+		assertEquals(s1.countAvailable(s2, from), expected);
+	}
 }
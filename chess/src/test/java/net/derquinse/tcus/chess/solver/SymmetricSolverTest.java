@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.tcus.chess.solver;
+
+import static org.testng.Assert.assertEquals;
+
+import org.testng.annotations.Test;
+
+/**
+ * Tests for the symmetry-reduced solver.
+ * @author Andres Rodriguez
+ */
+public final class SymmetricSolverTest extends AbstractSolverTest {
+	/** Constructor. */
+	public SymmetricSolverTest() {
+		super(new ForkJoinSolver(2, true));
+	}
+
+	/** Canonical orbit sizes. */
+	@Test
+	public void orbits() {
+		final BoardSymmetry square = BoardSymmetry.of(Size.of(3, 3));
+		assertEquals(square.getOrder(), 8);
+		assertEquals(square.getCanonicalOrbitSize(new int[] { 0 }), 4);
+		assertEquals(square.getCanonicalOrbitSize(new int[] { 1 }), 4);
+		assertEquals(square.getCanonicalOrbitSize(new int[] { 2 }), 0);
+		assertEquals(square.getCanonicalOrbitSize(new int[] { 4 }), 1);
+		assertEquals(square.getCanonicalOrbitSize(new int[] { 0, 1 }), 8);
+		assertEquals(square.getCanonicalOrbitSize(new int[] { 0, 8 }), 2);
+		final BoardSymmetry rectangle = BoardSymmetry.of(Size.of(2, 3));
+		assertEquals(rectangle.getOrder(), 4);
+		assertEquals(rectangle.getCanonicalOrbitSize(new int[] { 0 }), 4);
+		assertEquals(rectangle.getCanonicalOrbitSize(new int[] { 1 }), 2);
+		assertEquals(rectangle.getCanonicalOrbitSize(new int[] { 3 }), 0);
+	}
+
+	/** Rectangular boards give the same counts as the full search. */
+	@Test
+	public void rectangular() {
+		final Problem p = Problem.builder(Size.of(4, 6)).addPieces(Piece.KING, 2).addPieces(Piece.KNIGHT, 2)
+				.addPieces(Piece.ROOK, 1).build();
+		assertEquals(new ForkJoinSolver(2, true).solve(p), new BitboardSolver().solve(p));
+	}
+
+	/** Reduced searches, with up to two anchor pieces, and full searches, with more. */
+	@Test
+	public void anchors() {
+		// One and two anchor pieces
+		check(Problem.builder(Size.of(5, 5)).addPieces(Piece.QUEEN, 1).addPieces(Piece.KNIGHT, 3).build());
+		check(Problem.builder(Size.of(5, 6)).addPieces(Piece.ROOK, 2).addPieces(Piece.KING, 3).build());
+		// Three or more anchor pieces
+		check(Problem.builder(Size.of(5, 5)).addPieces(Piece.KNIGHT, 3).addPieces(Piece.KING, 3).build());
+		check(Problem.builder(Size.of(6, 6)).addPieces(Piece.QUEEN, 6).build());
+	}
+
+	private static void check(Problem p) {
+		assertEquals(new ForkJoinSolver(2, true).solve(p), new BitboardSolver().solve(p));
+	}
+}